@@ -0,0 +1,548 @@
+package hemera.ext.oauth.benchmark;
+
+import hemera.ext.oauth.metrics.EFlowPhase;
+import hemera.ext.oauth.metrics.HistogramMetricsSink;
+import hemera.ext.oauth.metrics.IMetricsSink;
+import hemera.ext.oauth.store.AbstractStoreConsumer;
+import hemera.ext.oauth.store.memory.MemoryTokenStore;
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.token.AccessTokenPair;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>FlowLoadHarness</code> drives a mixed workload of
+ * authorization, access and refresh flows concurrently
+ * against an <code>AbstractConsumer</code> backed by an
+ * in-memory store with simulated storage latency, and
+ * reports the latency distribution of each flow and of
+ * the consumer phases.
+ * <p>
+ * Each worker thread issues operations at a fixed rate
+ * according to a schedule. The response time of an
+ * operation is measured from its scheduled start, so
+ * that operations delayed by a slow predecessor are
+ * charged the time they waited, which corrects the
+ * coordinated omission of measuring only the service
+ * time. Both distributions are reported. If no rate
+ * is given, workers issue operations back to back and
+ * the response time equals the service time.
+ * <p>
+ * Arguments are given as <code>name=value</code> pairs:
+ * <ul>
+ * <li><code>threads</code>: number of worker threads,
+ * defaults to 16.</li>
+ * <li><code>rate</code>: total operations per second
+ * across all threads, or <code>0</code> for unthrottled,
+ * defaults to 20000.</li>
+ * <li><code>mix</code>: relative weights of authorize,
+ * access and refresh flows, defaults to
+ * <code>20:40:40</code>.</li>
+ * <li><code>latency</code>: simulated store latency in
+ * microseconds per store access, defaults to 0.</li>
+ * <li><code>users</code>: number of distinct users,
+ * defaults to 1000.</li>
+ * <li><code>warmup</code> and <code>duration</code>:
+ * unmeasured and measured seconds, default to 5 and
+ * 30.</li>
+ * <li><code>concurrent</code>: whether the consumer
+ * runs independent issuance steps concurrently on a
+ * thread per task, defaults to <code>false</code>.</li>
+ * </ul>
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class FlowLoadHarness {
+	/**
+	 * The <code>String</code> consumer key.
+	 */
+	private static final String Key = "6e591afe5374410b";
+	/**
+	 * The <code>String</code> consumer encryption key.
+	 */
+	private static final String EncryptionKey = "58af94d5c748d8365eb6bf24abde23ef";
+	/**
+	 * The <code>String</code> consumer secret.
+	 */
+	private static final String Secret = "983de8bd221c056d7ab2b723f67a333c94d428e9a74cd0c25b30a868464f739f";
+	/**
+	 * The <code>String</code> permissions.
+	 */
+	private static final String Permissions = "data_read,data_write";
+	/**
+	 * The <code>long</code> token lifetime in milliseconds.
+	 */
+	private static final long Lifetime = 60000;
+	/**
+	 * The <code>String</code> array of flow names.
+	 */
+	private static final String[] Flows = {"authorize", "access", "refresh"};
+
+	public static void main(final String[] args) throws Exception {
+		final Map<String, String> options = new HashMap<String, String>();
+		for (final String arg : args) {
+			final int index = arg.indexOf('=');
+			if (index <= 0) throw new IllegalArgumentException("Invalid argument: " + arg);
+			options.put(arg.substring(0, index), arg.substring(index+1));
+		}
+		final int threads = Integer.parseInt(FlowLoadHarness.option(options, "threads", "16"));
+		final long rate = Long.parseLong(FlowLoadHarness.option(options, "rate", "20000"));
+		final String[] weights = FlowLoadHarness.option(options, "mix", "20:40:40").split(":");
+		final long latency = Long.parseLong(FlowLoadHarness.option(options, "latency", "0"));
+		final int users = Integer.parseInt(FlowLoadHarness.option(options, "users", "1000"));
+		final long warmup = Long.parseLong(FlowLoadHarness.option(options, "warmup", "5"));
+		final long duration = Long.parseLong(FlowLoadHarness.option(options, "duration", "30"));
+		final boolean concurrent = Boolean.parseBoolean(FlowLoadHarness.option(options, "concurrent", "false"));
+		if (weights.length != FlowLoadHarness.Flows.length) throw new IllegalArgumentException("Mix must have three weights.");
+		final int[] mix = new int[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			mix[i] = Integer.parseInt(weights[i]) + ((i > 0) ? mix[i-1] : 0);
+		}
+		if (mix[mix.length-1] <= 0) throw new IllegalArgumentException("Mix must have a positive weight.");
+		// Run.
+		final DelayedStore store = new DelayedStore(latency * 1000);
+		store.enableExpirationSweeper(100);
+		final Consumer consumer = new Consumer(store);
+		final ExecutorService executor = (concurrent) ? Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "load-issuance");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+		if (executor != null) consumer.enableConcurrentExecution(executor);
+		final long interval = (rate > 0) ? (threads * 1000000000L / rate) : 0;
+		final long start = System.nanoTime() + 100000000L;
+		final long measureStart = start + warmup * 1000000000L;
+		final long end = measureStart + duration * 1000000000L;
+		final Worker[] workers = new Worker[threads];
+		final CountDownLatch latch = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			// Stagger the schedules across the interval.
+			final long offset = (interval * i) / threads;
+			workers[i] = new Worker(consumer, mix, users, i, start+offset, measureStart, end, interval, latch);
+			final Thread thread = new Thread(workers[i], "load-worker-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		latch.await();
+		store.disableExpirationSweeper();
+		if (executor != null) executor.shutdown();
+		// Report.
+		System.out.println("Threads:           " + threads);
+		System.out.println("Target rate:       " + ((rate > 0) ? (rate + " ops/s") : "unthrottled"));
+		System.out.println("Store latency:     " + latency + " us");
+		System.out.println("Users:             " + users);
+		System.out.println("Concurrent:        " + concurrent);
+		long total = 0;
+		long errors = 0;
+		for (final Worker worker : workers) {
+			total += worker.completed;
+			errors += worker.errors;
+		}
+		System.out.println("Achieved rate:     " + (total / duration) + " ops/s");
+		System.out.println("Errors:            " + errors);
+		System.out.println("Stored tokens:     " + store.size());
+		System.out.println();
+		System.out.println(String.format("%-10s %-9s %10s %10s %10s %10s %10s %10s", "flow", "time", "count", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)"));
+		for (int f = 0; f < FlowLoadHarness.Flows.length; f++) {
+			final LatencyHistogram response = new LatencyHistogram();
+			final LatencyHistogram service = new LatencyHistogram();
+			for (final Worker worker : workers) {
+				response.add(worker.response[f]);
+				service.add(worker.service[f]);
+			}
+			FlowLoadHarness.print(FlowLoadHarness.Flows[f], "response", response);
+			FlowLoadHarness.print(FlowLoadHarness.Flows[f], "service", service);
+		}
+		System.out.println();
+		System.out.println(String.format("%-20s %10s %10s %10s %10s %10s", "phase", "count", "mean(us)", "p50(us)", "p99(us)", "max(us)"));
+		for (final EFlowPhase phase : EFlowPhase.values()) {
+			final HistogramMetricsSink metrics = consumer.metrics;
+			if (metrics.getCount(phase) == 0) continue;
+			System.out.println(String.format("%-20s %10d %10.1f %10.1f %10.1f %10.1f", phase.name(), metrics.getCount(phase), metrics.getMean(phase) / 1000.0,
+					metrics.getValueAtPercentile(phase, 50) / 1000.0, metrics.getValueAtPercentile(phase, 99) / 1000.0, metrics.getMax(phase) / 1000.0));
+		}
+	}
+
+	/**
+	 * Retrieve the option with the given name.
+	 * @param options The <code>Map</code> of options.
+	 * @param name The <code>String</code> name.
+	 * @param value The <code>String</code> default
+	 * value.
+	 * @return The <code>String</code> value.
+	 */
+	private static String option(final Map<String, String> options, final String name, final String value) {
+		final String option = options.get(name);
+		return (option == null) ? value : option;
+	}
+
+	/**
+	 * Print the percentiles of the given histogram.
+	 * @param flow The <code>String</code> flow name.
+	 * @param time The <code>String</code> time name.
+	 * @param histogram The <code>LatencyHistogram</code>.
+	 */
+	private static void print(final String flow, final String time, final LatencyHistogram histogram) {
+		System.out.println(String.format("%-10s %-9s %10d %10.1f %10.1f %10.1f %10.1f %10.1f", flow, time, histogram.getTotalCount(),
+				histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+				histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0));
+	}
+
+	/**
+	 * <code>Worker</code> defines the load generating
+	 * thread, which keeps its own tokens and histograms.
+	 *
+	 * @author Yi Wang (Neakor)
+	 * @version 1.0.0
+	 */
+	private static class Worker implements Runnable {
+		/**
+		 * The <code>Consumer</code> to drive.
+		 */
+		private final Consumer consumer;
+		/**
+		 * The <code>int</code> array of cumulative flow
+		 * weights.
+		 */
+		private final int[] mix;
+		/**
+		 * The <code>int</code> number of distinct users.
+		 */
+		private final int users;
+		/**
+		 * The <code>Random</code> of the worker.
+		 */
+		private final Random random;
+		/**
+		 * The <code>long</code> scheduled start of the
+		 * first operation in nanoseconds.
+		 */
+		private final long start;
+		/**
+		 * The <code>long</code> start of measurement in
+		 * nanoseconds.
+		 */
+		private final long measureStart;
+		/**
+		 * The <code>long</code> end of the run in
+		 * nanoseconds.
+		 */
+		private final long end;
+		/**
+		 * The <code>long</code> scheduled interval between
+		 * operations in nanoseconds. Or <code>0</code> if
+		 * unthrottled.
+		 */
+		private final long interval;
+		/**
+		 * The <code>CountDownLatch</code> to count down
+		 * on completion.
+		 */
+		private final CountDownLatch latch;
+		/**
+		 * The <code>LatencyHistogram</code> array of
+		 * response times per flow.
+		 */
+		private final LatencyHistogram[] response;
+		/**
+		 * The <code>LatencyHistogram</code> array of
+		 * service times per flow.
+		 */
+		private final LatencyHistogram[] service;
+		/**
+		 * The <code>long</code> number of measured
+		 * operations.
+		 */
+		private long completed;
+		/**
+		 * The <code>long</code> number of failed
+		 * operations.
+		 */
+		private long errors;
+		/**
+		 * The latest <code>AbstractAuthorizationToken</code>.
+		 */
+		private AbstractAuthorizationToken authorizationToken;
+		/**
+		 * The latest <code>AbstractRefreshToken</code>.
+		 */
+		private AbstractRefreshToken refreshToken;
+
+		/**
+		 * Constructor of <code>Worker</code>.
+		 * @param consumer The <code>Consumer</code>.
+		 * @param mix The <code>int</code> array of
+		 * cumulative flow weights.
+		 * @param users The <code>int</code> number of
+		 * users.
+		 * @param seed The <code>long</code> random seed.
+		 * @param start The <code>long</code> scheduled
+		 * start.
+		 * @param measureStart The <code>long</code>
+		 * measurement start.
+		 * @param end The <code>long</code> run end.
+		 * @param interval The <code>long</code> interval.
+		 * @param latch The <code>CountDownLatch</code>.
+		 */
+		private Worker(final Consumer consumer, final int[] mix, final int users, final long seed, final long start, final long measureStart,
+				final long end, final long interval, final CountDownLatch latch) {
+			this.consumer = consumer;
+			this.mix = mix;
+			this.users = users;
+			this.random = new Random(seed);
+			this.start = start;
+			this.measureStart = measureStart;
+			this.end = end;
+			this.interval = interval;
+			this.latch = latch;
+			this.response = new LatencyHistogram[FlowLoadHarness.Flows.length];
+			this.service = new LatencyHistogram[FlowLoadHarness.Flows.length];
+			for (int i = 0; i < FlowLoadHarness.Flows.length; i++) {
+				this.response[i] = new LatencyHistogram();
+				this.service[i] = new LatencyHistogram();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				long scheduled = this.start;
+				while (true) {
+					long now = System.nanoTime();
+					if (this.interval > 0) {
+						while (now < scheduled) {
+							LockSupport.parkNanos(scheduled - now);
+							now = System.nanoTime();
+						}
+					} else {
+						scheduled = now;
+					}
+					if (scheduled >= this.end) break;
+					final int flow = this.nextFlow();
+					final long begin = System.nanoTime();
+					try {
+						this.execute(flow);
+					} catch (final Exception e) {
+						if (scheduled >= this.measureStart) this.errors++;
+						this.authorizationToken = null;
+						this.refreshToken = null;
+					}
+					final long done = System.nanoTime();
+					if (scheduled >= this.measureStart) {
+						this.service[flow].record(done - begin);
+						this.response[flow].record(done - scheduled);
+						this.completed++;
+					}
+					scheduled += this.interval;
+				}
+			} finally {
+				this.latch.countDown();
+			}
+		}
+
+		/**
+		 * Select the next flow by weight.
+		 * @return The <code>int</code> flow index.
+		 */
+		private int nextFlow() {
+			final int value = this.random.nextInt(this.mix[this.mix.length-1]);
+			for (int i = 0; i < this.mix.length; i++) {
+				if (value < this.mix[i]) return i;
+			}
+			return this.mix.length-1;
+		}
+
+		/**
+		 * Execute the given flow. The access flow issues
+		 * an authorization token first if the worker has
+		 * none, and the refresh flow issues a token pair
+		 * first if the worker has no refresh token.
+		 * @param flow The <code>int</code> flow index.
+		 * @throws Exception If the flow failed.
+		 */
+		private void execute(final int flow) throws Exception {
+			final String userid = "user" + this.random.nextInt(this.users);
+			switch (flow) {
+			case 0:
+				this.authorizationToken = this.consumer.newAuthorizationToken(FlowLoadHarness.Permissions, userid);
+				this.consumer.getValidAuthorizationToken(FlowLoadHarness.Permissions, userid);
+				break;
+			case 1:
+				if (this.authorizationToken == null || !this.authorizationToken.isValid()) {
+					this.authorizationToken = this.consumer.newAuthorizationToken(FlowLoadHarness.Permissions, userid);
+				}
+				this.refreshToken = this.consumer.newAccessToken(FlowLoadHarness.Secret, this.authorizationToken).refreshToken;
+				break;
+			default:
+				if (this.refreshToken == null || !this.refreshToken.isValid()) {
+					this.refreshToken = this.consumer.newAccessToken(FlowLoadHarness.Secret, userid, FlowLoadHarness.Permissions).refreshToken;
+				}
+				final AccessTokenPair pair = this.consumer.refreshAccessToken(FlowLoadHarness.Secret, this.refreshToken);
+				this.refreshToken = pair.refreshToken;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * <code>DelayedStore</code> defines the in-memory
+	 * store that parks the calling thread for a fixed
+	 * time on every insertion, retrieval and update, to
+	 * simulate the round trip to a remote store. Removals
+	 * are issued by the expiration sweeper in the
+	 * background and are not delayed.
+	 *
+	 * @author Yi Wang (Neakor)
+	 * @version 1.0.0
+	 */
+	private static class DelayedStore extends MemoryTokenStore {
+		/**
+		 * The <code>long</code> delay in nanoseconds.
+		 */
+		private final long delay;
+
+		/**
+		 * Constructor of <code>DelayedStore</code>.
+		 * @param delay The <code>long</code> delay in
+		 * nanoseconds.
+		 */
+		private DelayedStore(final long delay) {
+			this.delay = delay;
+		}
+
+		/**
+		 * Park the calling thread for the delay.
+		 */
+		private void delay() {
+			if (this.delay <= 0) return;
+			final long deadline = System.nanoTime() + this.delay;
+			for (long remaining = this.delay; remaining > 0; remaining = deadline - System.nanoTime()) {
+				LockSupport.parkNanos(remaining);
+			}
+		}
+
+		@Override
+		public AbstractAuthorizationToken insertAuthorizationToken(final String value, final String consumerKey, final String permissions,
+				final String userid, final long expiration) throws SQLException {
+			this.delay();
+			return super.insertAuthorizationToken(value, consumerKey, permissions, userid, expiration);
+		}
+
+		@Override
+		public AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException {
+			this.delay();
+			return super.insertRefreshToken(value, accessTokenValue, expiration);
+		}
+
+		@Override
+		public AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String consumerKey,
+				final String permissions, final String userid, final long expiration) throws SQLException {
+			this.delay();
+			return super.insertAccessToken(value, refreshToken, consumerKey, permissions, userid, expiration);
+		}
+
+		@Override
+		public AbstractAuthorizationToken getAuthorizationToken(final String value) {
+			this.delay();
+			return super.getAuthorizationToken(value);
+		}
+
+		@Override
+		public AbstractAccessToken getAccessToken(final String value) {
+			this.delay();
+			return super.getAccessToken(value);
+		}
+
+		@Override
+		public AbstractRefreshToken getRefreshToken(final String value) {
+			this.delay();
+			return super.getRefreshToken(value);
+		}
+
+		@Override
+		public AbstractAuthorizationToken getValidAuthorizationToken(final String consumerKey, final String permissions, final String userid) {
+			this.delay();
+			return super.getValidAuthorizationToken(consumerKey, permissions, userid);
+		}
+
+		@Override
+		public void updateExpiration(final String value, final long expiration) {
+			this.delay();
+			super.updateExpiration(value, expiration);
+		}
+	}
+
+	/**
+	 * <code>Consumer</code> defines the driven consumer
+	 * with all the privileges, which records its phases
+	 * in a histogram sink. Phases of the warmup are
+	 * included.
+	 *
+	 * @author Yi Wang (Neakor)
+	 * @version 1.0.0
+	 */
+	private static class Consumer extends AbstractStoreConsumer {
+		/**
+		 * The <code>HistogramMetricsSink</code> of phases.
+		 */
+		private final HistogramMetricsSink metrics;
+
+		/**
+		 * Constructor of <code>Consumer</code>.
+		 * @param store The <code>MemoryTokenStore</code>.
+		 */
+		private Consumer(final MemoryTokenStore store) {
+			super(FlowLoadHarness.Key, "localhost", FlowLoadHarness.EncryptionKey, store);
+			this.metrics = new HistogramMetricsSink();
+		}
+
+		@Override
+		protected IMetricsSink getMetricsSink() {
+			return this.metrics;
+		}
+
+		@Override
+		protected long getAccessTokenLifetime() {
+			return FlowLoadHarness.Lifetime;
+		}
+
+		@Override
+		protected long getRefreshTokenLifetime() {
+			return FlowLoadHarness.Lifetime;
+		}
+
+		@Override
+		protected long getAuthorizationTokenLifetime() {
+			return FlowLoadHarness.Lifetime;
+		}
+
+		@Override
+		public boolean hasUserAuthorizationPrivilege() {
+			return true;
+		}
+
+		@Override
+		public boolean hasUserAuthenticationPrivilege() {
+			return true;
+		}
+
+		@Override
+		public boolean hasResourceOwnerCredentialsFlowPrivilege() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package hemera.ext.oauth.benchmark;
+
+/**
+ * <code>LatencyHistogram</code> defines the fixed size
+ * log-linear histogram of latencies in nanoseconds, in
+ * the style of HdrHistogram. Values below 128 are
+ * counted exactly, and larger values are counted in
+ * buckets of 64 sub-buckets per power of two, which
+ * bounds the relative error to under two percent.
+ * <p>
+ * Recording never allocates, so histograms can be kept
+ * per thread and merged once the run completes.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class LatencyHistogram {
+	/**
+	 * The <code>int</code> number of exactly counted
+	 * values.
+	 */
+	private static final int LinearCount = 128;
+	/**
+	 * The <code>int</code> number of sub-buckets per
+	 * power of two.
+	 */
+	private static final int SubBucketCount = 64;
+	/**
+	 * The <code>int</code> number of powers of two above
+	 * the linear range, which covers all positive
+	 * <code>long</code> values.
+	 */
+	private static final int BucketCount = 57;
+
+	/**
+	 * The <code>long</code> array of counts.
+	 */
+	private final long[] counts;
+	/**
+	 * The <code>long</code> total count.
+	 */
+	private long totalCount;
+	/**
+	 * The <code>long</code> maximum value.
+	 */
+	private long max;
+	/**
+	 * The <code>double</code> sum of values.
+	 */
+	private double sum;
+
+	/**
+	 * Constructor of <code>LatencyHistogram</code>.
+	 */
+	public LatencyHistogram() {
+		this.counts = new long[LatencyHistogram.LinearCount + LatencyHistogram.BucketCount*LatencyHistogram.SubBucketCount];
+	}
+
+	/**
+	 * Record the given value.
+	 * @param value The <code>long</code> value in
+	 * nanoseconds. Negative values are recorded as zero.
+	 */
+	public void record(final long value) {
+		final long clamped = (value < 0) ? 0 : value;
+		this.counts[LatencyHistogram.indexOf(clamped)]++;
+		this.totalCount++;
+		this.sum += clamped;
+		if (clamped > this.max) this.max = clamped;
+	}
+
+	/**
+	 * Add all the values of the given histogram.
+	 * @param histogram The <code>LatencyHistogram</code>
+	 * to add.
+	 */
+	public void add(final LatencyHistogram histogram) {
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] += histogram.counts[i];
+		}
+		this.totalCount += histogram.totalCount;
+		this.sum += histogram.sum;
+		if (histogram.max > this.max) this.max = histogram.max;
+	}
+
+	/**
+	 * Retrieve the value at the given percentile, which
+	 * is the highest value equivalent to the bucket that
+	 * contains it.
+	 * @param percentile The <code>double</code>
+	 * percentile between <code>0</code> and
+	 * <code>100</code>.
+	 * @return The <code>long</code> value in nanoseconds.
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (this.totalCount == 0) return 0;
+		final long target = Math.max(1, (long)Math.ceil(this.totalCount * percentile / 100.0));
+		long cumulative = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			cumulative += this.counts[i];
+			if (cumulative >= target) return Math.min(LatencyHistogram.highestValueOf(i), this.max);
+		}
+		return this.max;
+	}
+
+	/**
+	 * Retrieve the total number of recorded values.
+	 * @return The <code>long</code> count.
+	 */
+	public long getTotalCount() {
+		return this.totalCount;
+	}
+
+	/**
+	 * Retrieve the maximum recorded value.
+	 * @return The <code>long</code> value in nanoseconds.
+	 */
+	public long getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Retrieve the mean of the recorded values.
+	 * @return The <code>double</code> mean in
+	 * nanoseconds.
+	 */
+	public double getMean() {
+		return (this.totalCount == 0) ? 0 : this.sum/this.totalCount;
+	}
+
+	/**
+	 * Retrieve the count index of the given value.
+	 * @param value The <code>long</code> non-negative
+	 * value.
+	 * @return The <code>int</code> index.
+	 */
+	private static int indexOf(final long value) {
+		if (value < LatencyHistogram.LinearCount) return (int)value;
+		// Keep the 7 most significant bits.
+		final int shift = 57 - Long.numberOfLeadingZeros(value);
+		final int sub = (int)(value >>> shift) - LatencyHistogram.SubBucketCount;
+		return LatencyHistogram.LinearCount + (shift-1)*LatencyHistogram.SubBucketCount + sub;
+	}
+
+	/**
+	 * Retrieve the highest value counted at the given
+	 * index.
+	 * @param index The <code>int</code> index.
+	 * @return The <code>long</code> value.
+	 */
+	private static long highestValueOf(final int index) {
+		if (index < LatencyHistogram.LinearCount) return index;
+		final int offset = index - LatencyHistogram.LinearCount;
+		final int shift = offset/LatencyHistogram.SubBucketCount + 1;
+		final long sub = offset%LatencyHistogram.SubBucketCount + LatencyHistogram.SubBucketCount;
+		return ((sub+1) << shift) - 1;
+	}
+}
@@ -0,0 +1,114 @@
+package hemera.ext.oauth.benchmark;
+
+import hemera.ext.oauth.util.RedirectMatcher;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>RedirectMatcherBenchmark</code> compares the
+ * redirect URL verification using the precompiled
+ * <code>RedirectMatcher</code> with the previous
+ * approach of parsing the URL with <code>java.net.URL</code>
+ * and comparing its host against the registered domains.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectMatcherBenchmark {
+	/**
+	 * The <code>int</code> number of registered domains.
+	 */
+	@Param({"1", "100", "1000"})
+	public int domainCount;
+	/**
+	 * The <code>RedirectMatcher</code> of the registered
+	 * domains.
+	 */
+	private RedirectMatcher matcher;
+	/**
+	 * The <code>Set</code> of lower case registered
+	 * domains.
+	 */
+	private Set<String> domains;
+	/**
+	 * The <code>String</code> matching URL.
+	 */
+	private String validURL;
+	/**
+	 * The <code>String</code> non-matching URL.
+	 */
+	private String invalidURL;
+
+	@Setup
+	public void setup() {
+		final String[] registered = new String[this.domainCount];
+		this.domains = new HashSet<String>();
+		for (int i = 0; i < this.domainCount; i++) {
+			registered[i] = "client" + i + ".example.com";
+			this.domains.add(registered[i]);
+		}
+		this.matcher = new RedirectMatcher(registered);
+		this.validURL = "https://client" + (this.domainCount-1) + ".example.com:8443/oauth/callback?state=abc";
+		this.invalidURL = "https://attacker.example.org/oauth/callback?state=abc";
+	}
+
+	@Benchmark
+	public boolean matcherValid() {
+		return this.matcher.matches(this.validURL);
+	}
+
+	@Benchmark
+	public boolean matcherInvalid() {
+		return this.matcher.matches(this.invalidURL);
+	}
+
+	@Benchmark
+	public boolean urlValid() {
+		return this.verifyWithURL(this.validURL);
+	}
+
+	@Benchmark
+	public boolean urlInvalid() {
+		return this.verifyWithURL(this.invalidURL);
+	}
+
+	/**
+	 * Verify the given URL by parsing it.
+	 * @param redirectURL The <code>String</code> URL.
+	 * @return <code>true</code> if the URL host is
+	 * registered. <code>false</code> otherwise.
+	 */
+	private boolean verifyWithURL(final String redirectURL) {
+		try {
+			final URL url = new URL(redirectURL);
+			final String host = url.getHost();
+			if (host == null) return false;
+			else return this.domains.contains(host.toLowerCase(Locale.ENGLISH));
+		} catch (final MalformedURLException e) {
+			return false;
+		}
+	}
+}
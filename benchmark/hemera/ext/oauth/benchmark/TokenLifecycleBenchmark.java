@@ -0,0 +1,242 @@
+package hemera.ext.oauth.benchmark;
+
+import hemera.ext.oauth.store.AbstractStoreConsumer;
+import hemera.ext.oauth.store.memory.MemoryTokenStore;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.token.AccessTokenPair;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <code>TokenLifecycleBenchmark</code> measures the
+ * operations of the OAuth token lifecycle performed
+ * by <code>AbstractConsumer</code>, against a consumer
+ * backed by the in-memory <code>MemoryTokenStore</code>.
+ * <p>
+ * The permissions string length is parameterized, since
+ * it is part of the seed encrypted into every token. The
+ * thread counts cannot be parameterized by annotations,
+ * so <code>main</code> runs the benchmark once for each
+ * given thread count, with the GC profiler reporting the
+ * allocation rate per operation, for instance:
+ * <code>java TokenLifecycleBenchmark 1 4 16</code>.
+ * <p>
+ * Tokens are issued with short lifetimes and the store's
+ * expiration sweeper is enabled, so the store size stays
+ * bounded during long runs.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenLifecycleBenchmark {
+	/**
+	 * The <code>String</code> consumer key.
+	 */
+	private static final String Key = "6e591afe5374410b";
+	/**
+	 * The <code>String</code> consumer encryption key.
+	 */
+	private static final String EncryptionKey = "58af94d5c748d8365eb6bf24abde23ef";
+	/**
+	 * The <code>String</code> consumer secret, which is
+	 * the consumer key encrypted with the encryption key.
+	 */
+	private static final String Secret = "983de8bd221c056d7ab2b723f67a333c94d428e9a74cd0c25b30a868464f739f";
+	/**
+	 * The <code>long</code> token lifetime in milliseconds,
+	 * which exceeds the iteration time.
+	 */
+	private static final long Lifetime = 2000;
+
+	/**
+	 * The <code>int</code> approximate length of the
+	 * permissions string.
+	 */
+	@Param({"16", "128", "1024"})
+	public int permissionLength;
+	/**
+	 * The <code>MemoryTokenStore</code> of the consumer.
+	 */
+	private MemoryTokenStore store;
+	/**
+	 * The benchmarked <code>Consumer</code>.
+	 */
+	private Consumer consumer;
+	/**
+	 * The <code>String</code> permissions.
+	 */
+	private String permissions;
+
+	public static void main(final String[] args) throws Exception {
+		final String[] threadCounts = (args.length > 0) ? args : new String[] {"1", "4", "16"};
+		for (final String threads : threadCounts) {
+			final OptionsBuilder builder = new OptionsBuilder();
+			builder.include(TokenLifecycleBenchmark.class.getSimpleName());
+			builder.threads(Integer.parseInt(threads));
+			builder.addProfiler(GCProfiler.class);
+			new Runner(builder.build()).run();
+		}
+	}
+
+	@Setup
+	public void setup() {
+		this.store = new MemoryTokenStore();
+		this.store.enableExpirationSweeper(100);
+		this.consumer = new Consumer(this.store);
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; builder.length() < this.permissionLength; i++) {
+			if (i > 0) builder.append(',');
+			builder.append("scope").append(i);
+		}
+		this.permissions = builder.toString();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.store.disableExpirationSweeper();
+	}
+
+	@Benchmark
+	public String randomToken() throws Exception {
+		return this.consumer.randomToken(TokenLifecycleBenchmark.Key+this.permissions);
+	}
+
+	@Benchmark
+	public boolean verifySecret() {
+		return this.consumer.verifySecret(TokenLifecycleBenchmark.Secret);
+	}
+
+	@Benchmark
+	public boolean verifyRedirectURL() {
+		return this.consumer.verifyRedirectURL("https://localhost:8443/oauth/callback?state=abc");
+	}
+
+	@Benchmark
+	public AbstractAuthorizationToken newAuthorizationToken(final Flow flow) throws Exception {
+		return this.consumer.newAuthorizationToken(this.permissions, flow.userid);
+	}
+
+	@Benchmark
+	public AccessTokenPair newAccessTokenAuthorization(final Flow flow) throws Exception {
+		return this.consumer.newAccessToken(TokenLifecycleBenchmark.Secret, flow.authorizationToken);
+	}
+
+	@Benchmark
+	public AccessTokenPair newAccessTokenCredentials(final Flow flow) throws Exception {
+		return this.consumer.newAccessToken(TokenLifecycleBenchmark.Secret, flow.userid, this.permissions);
+	}
+
+	@Benchmark
+	public AccessTokenPair refreshAccessToken(final Flow flow) throws Exception {
+		final AccessTokenPair pair = this.consumer.refreshAccessToken(TokenLifecycleBenchmark.Secret, flow.refreshToken);
+		flow.refreshToken = pair.refreshToken;
+		return pair;
+	}
+
+	/**
+	 * <code>Flow</code> defines the per thread state of
+	 * the tokens consumed by the benchmarks, which are
+	 * issued again before each iteration so that they
+	 * are valid throughout it.
+	 *
+	 * @author Yi Wang (Neakor)
+	 * @version 1.0.0
+	 */
+	@State(Scope.Thread)
+	public static class Flow {
+		/**
+		 * The <code>String</code> user ID of the thread.
+		 */
+		public String userid;
+		/**
+		 * The <code>AbstractAuthorizationToken</code> to
+		 * exchange.
+		 */
+		public AbstractAuthorizationToken authorizationToken;
+		/**
+		 * The current <code>AbstractRefreshToken</code>
+		 * to exchange.
+		 */
+		public AbstractRefreshToken refreshToken;
+
+		@Setup(Level.Iteration)
+		public void setup(final TokenLifecycleBenchmark benchmark) throws Exception {
+			this.userid = "user" + System.identityHashCode(this);
+			this.authorizationToken = benchmark.consumer.newAuthorizationToken(benchmark.permissions, this.userid);
+			this.refreshToken = benchmark.consumer.newAccessToken(TokenLifecycleBenchmark.Secret, this.authorizationToken).refreshToken;
+		}
+	}
+
+	/**
+	 * <code>Consumer</code> defines the benchmarked
+	 * consumer with short token lifetimes and all the
+	 * privileges.
+	 *
+	 * @author Yi Wang (Neakor)
+	 * @version 1.0.0
+	 */
+	private static class Consumer extends AbstractStoreConsumer {
+
+		/**
+		 * Constructor of <code>Consumer</code>.
+		 * @param store The <code>MemoryTokenStore</code>.
+		 */
+		private Consumer(final MemoryTokenStore store) {
+			super(TokenLifecycleBenchmark.Key, "localhost", TokenLifecycleBenchmark.EncryptionKey, store);
+		}
+
+		@Override
+		protected long getAccessTokenLifetime() {
+			return TokenLifecycleBenchmark.Lifetime;
+		}
+
+		@Override
+		protected long getRefreshTokenLifetime() {
+			return TokenLifecycleBenchmark.Lifetime;
+		}
+
+		@Override
+		protected long getAuthorizationTokenLifetime() {
+			return TokenLifecycleBenchmark.Lifetime;
+		}
+
+		@Override
+		public boolean hasUserAuthorizationPrivilege() {
+			return true;
+		}
+
+		@Override
+		public boolean hasUserAuthenticationPrivilege() {
+			return true;
+		}
+
+		@Override
+		public boolean hasResourceOwnerCredentialsFlowPrivilege() {
+			return true;
+		}
+	}
+}
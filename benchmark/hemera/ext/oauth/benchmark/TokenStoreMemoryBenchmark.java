@@ -0,0 +1,92 @@
+package hemera.ext.oauth.benchmark;
+
+import hemera.ext.oauth.store.ITokenStore;
+import hemera.ext.oauth.store.TokenKeys;
+import hemera.ext.oauth.store.compact.CompactTokenStore;
+import hemera.ext.oauth.store.memory.MemoryTokenStore;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.util.StringPool;
+
+import java.util.Random;
+
+/**
+ * <code>TokenStoreMemoryBenchmark</code> measures the
+ * heap retained by the <code>String</code> keyed
+ * <code>MemoryTokenStore</code> and by the primitive
+ * keyed <code>CompactTokenStore</code> holding the same
+ * number of tokens. Tokens are inserted as pairs of
+ * refresh and access tokens with values of the same
+ * length as the values generated by
+ * <code>AbstractConsumer</code>.
+ * <p>
+ * The benchmark takes the store type, either
+ * <code>memory</code> or <code>compact</code>, and the
+ * number of tokens, which defaults to ten million. Each
+ * store should be measured in a separate JVM with a
+ * sufficient maximum heap, for instance:
+ * <code>java -Xmx12g TokenStoreMemoryBenchmark compact 10000000</code>.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class TokenStoreMemoryBenchmark {
+	/**
+	 * The <code>int</code> number of distinct users.
+	 */
+	private static final int UserCount = 100000;
+	/**
+	 * The <code>String</code> array of permissions.
+	 */
+	private static final String[] Permissions = {"data_read", "data_read,data_write", "data_read,data_write,profile"};
+
+	public static void main(final String[] args) throws Exception {
+		final String type = (args.length > 0) ? args[0] : "compact";
+		final int count = (args.length > 1) ? Integer.parseInt(args[1]) : 10000000;
+		final long before = TokenStoreMemoryBenchmark.usedMemory();
+		final ITokenStore store;
+		if (type.equals("memory")) store = new MemoryTokenStore(count/2, 16);
+		else if (type.equals("compact")) store = new CompactTokenStore(count);
+		else throw new IllegalArgumentException("Unknown store type: " + type);
+		final Random random = new Random(42);
+		final byte[] key = new byte[TokenKeys.MaxLength];
+		final long expiration = System.currentTimeMillis() + 3600000;
+		final long start = System.nanoTime();
+		for (int i = 0; i < count/2; i++) {
+			random.nextBytes(key);
+			final String refreshValue = TokenKeys.instance.encode(key, key.length);
+			random.nextBytes(key);
+			final String accessValue = TokenKeys.instance.encode(key, key.length);
+			final String userid = "user" + (i % TokenStoreMemoryBenchmark.UserCount);
+			final String permissions = TokenStoreMemoryBenchmark.Permissions[i % TokenStoreMemoryBenchmark.Permissions.length];
+			final AbstractRefreshToken refreshToken = store.insertRefreshToken(refreshValue, accessValue, expiration*2);
+			store.insertAccessToken(accessValue, refreshToken, "6e591afe5374410b", permissions, userid, expiration);
+		}
+		final long elapsed = System.nanoTime() - start;
+		final long after = TokenStoreMemoryBenchmark.usedMemory();
+		final long retained = after - before;
+		System.out.println("Store:             " + type);
+		System.out.println("Tokens:            " + count);
+		System.out.println("Insert time (ms):  " + (elapsed / 1000000));
+		System.out.println("Retained (MB):     " + (retained / (1024*1024)));
+		System.out.println("Bytes per token:   " + (retained / count));
+		System.out.println("Pool saved (MB):   " + (StringPool.Default.getBytesSaved() / (1024*1024)));
+		// Keep the store reachable until measured.
+		System.out.println("Probe:             " + (store.getAccessToken("00") == null));
+	}
+
+	/**
+	 * Retrieve the used heap after garbage collection.
+	 * @return The <code>long</code> used bytes.
+	 * @throws InterruptedException If interrupted.
+	 */
+	private static long usedMemory() throws InterruptedException {
+		final Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(100);
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+}
@@ -1,19 +1,49 @@
 package hemera.ext.oauth;
 
+import hemera.ext.oauth.generator.ITokenGenerator;
+import hemera.ext.oauth.generator.SecureTokenGenerator;
+import hemera.ext.oauth.generator.TokenPool;
+import hemera.ext.oauth.metrics.CryptoEvent;
+import hemera.ext.oauth.metrics.ECryptoOperation;
+import hemera.ext.oauth.metrics.EFlowOutcome;
+import hemera.ext.oauth.metrics.EFlowPhase;
+import hemera.ext.oauth.metrics.EFlowType;
+import hemera.ext.oauth.metrics.FlowEvent;
+import hemera.ext.oauth.metrics.IMetricsSink;
+import hemera.ext.oauth.metrics.NoopMetricsSink;
 import hemera.ext.oauth.token.AbstractAccessToken;
 import hemera.ext.oauth.token.AbstractAuthorizationToken;
 import hemera.ext.oauth.token.AbstractRefreshToken;
 import hemera.ext.oauth.token.AccessTokenPair;
-import hemera.utility.security.AESUtils;
+import hemera.ext.oauth.token.ITokenPairSink;
+import hemera.ext.oauth.token.PendingTokenPair;
+import hemera.ext.oauth.util.CipherEngine;
+import hemera.ext.oauth.util.RedirectMatcher;
+import hemera.ext.oauth.util.SecretCache;
+import hemera.ext.oauth.util.StatelessTokenCodec;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
-import java.util.Random;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -61,17 +91,38 @@ import org.apache.commons.codec.DecoderException;
  * AES 128-bit key seeded with the consumer key, and the
  * secret is the consumer key encrypted using its
  * encryption key.
+ * <p>
+ * The token flows are available as asynchronous
+ * variants returning <code>CompletionStage</code>, which
+ * persist tokens through asynchronous hooks. By default
+ * the hooks invoke the blocking hooks on the calling
+ * thread, and implementations backed by non-blocking
+ * drivers may override them. The blocking flows are
+ * adapters that wait for the asynchronous variants and
+ * rethrow their failures unwrapped.
+ * <p>
+ * Once concurrent execution is enabled, the independent
+ * steps of token pair issuance run on the given executor
+ * concurrently with the calling thread. The executor
+ * should reuse its threads, so that the per-thread
+ * token generators and ciphers are reused as well.
  *
  * @author Yi Wang (Neakor)
  * @version 1.0.1
  */
 public abstract class AbstractConsumer {
 	/**
-	 * The <code>int</code> randomize character count.
-	 * This value dictates the randomness and the length
-	 * of generated tokens.
+	 * The <code>int</code> maximum number of verified
+	 * secrets cached per consumer. A consumer only has
+	 * a single secret, which clients may present with
+	 * different hex letter cases.
+	 */
+	private static final int SecretCacheCapacity = 4;
+	/**
+	 * The <code>int</code> maximum number of token pairs
+	 * generated by a single bulk generation task.
 	 */
-	private static final int RandomCount = 32;
+	private static final int BulkGenerationThreshold = 64;
 	/**
 	 * The <code>String</code> consumer key.
 	 */
@@ -87,9 +138,44 @@ public abstract class AbstractConsumer {
 	 * the AES encryption algorithm.
 	 */
 	public final String encryptionKey;
+	/**
+	 * The <code>CipherEngine</code> bound to the
+	 * encryption key.
+	 */
+	private final CipherEngine cipher;
+	/**
+	 * The <code>ITokenGenerator</code> used to generate
+	 * random token chunks.
+	 */
+	private final ITokenGenerator generator;
+	/**
+	 * The optional <code>TokenPool</code> of
+	 * pre-generated token values.
+	 */
+	private volatile TokenPool pool;
+	/**
+	 * The optional <code>Executor</code> running the
+	 * independent issuance steps concurrently.
+	 */
+	private volatile Executor executor;
+	/**
+	 * The <code>SecretCache</code> of verified secrets.
+	 */
+	private final SecretCache secrets;
+	/**
+	 * The lazily compiled <code>RedirectMatcher</code>.
+	 */
+	private volatile RedirectMatcher redirectMatcher;
+	/**
+	 * The lazily created <code>StatelessTokenCodec</code>.
+	 */
+	private volatile StatelessTokenCodec statelessCodec;
 
 	/**
 	 * Constructor of <code>AbstractConsumer</code>.
+	 * <p>
+	 * This constructor uses the default token generator
+	 * <code>SecureTokenGenerator</code>.
 	 * @param key The <code>String</code> consumer key.
 	 * @param domain The <code>String</code> registered
 	 * domain for the consumer.
@@ -99,15 +185,40 @@ public abstract class AbstractConsumer {
 	 * the AES encryption algorithm.
 	 */
 	protected AbstractConsumer(final String key, final String domain, final String encryptionKey) {
+		this(key, domain, encryptionKey, SecureTokenGenerator.instance);
+	}
+
+	/**
+	 * Constructor of <code>AbstractConsumer</code>.
+	 * @param key The <code>String</code> consumer key.
+	 * @param domain The <code>String</code> registered
+	 * domain for the consumer.
+	 * @param encryptionKey The <code>String</code> key
+	 * used to generate the consumer secret, authorization
+	 * token, and the access token. This key is used with
+	 * the AES encryption algorithm.
+	 * @param generator The <code>ITokenGenerator</code>
+	 * used to generate random token chunks.
+	 */
+	protected AbstractConsumer(final String key, final String domain, final String encryptionKey, final ITokenGenerator generator) {
+		if (generator == null) throw new IllegalArgumentException("Token generator must be specified.");
 		this.key = key;
 		this.domain = domain;
 		this.encryptionKey = encryptionKey;
+		this.generator = generator;
+		this.secrets = new SecretCache(AbstractConsumer.SecretCacheCapacity);
+		try {
+			this.cipher = new CipherEngine(encryptionKey);
+		} catch (final DecoderException e) {
+			throw new IllegalArgumentException("Invalid consumer encryption key.", e);
+		}
 	}
 
 	/**
 	 * Generates a random encrypted token based on given
 	 * seed and encrypted using the consumer's encryption
-	 * key.
+	 * key. The random chunk is produced by the consumer's
+	 * <code>ITokenGenerator</code>.
 	 * @param seed The <code>String</code> seed.
 	 * @return The <code>String</code> random token.
 	 * @throws NoSuchAlgorithmException If AES is not
@@ -128,78 +239,279 @@ public abstract class AbstractConsumer {
 	 */
 	public String randomToken(final String seed) throws NoSuchAlgorithmException, NoSuchPaddingException,
 	InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, DecoderException {
-		final Random random = new Random();
-		// Generate a random chunk of string used to randomize the seed.
-		String randomChunk = UUID.randomUUID().toString().replace("-", "");
-		final int seedLength = seed.length();
-		final int randomizeCount = (seedLength>AbstractConsumer.RandomCount) ? AbstractConsumer.RandomCount : seedLength;
-		int randomIndex = 0;
-		// Iterate through all the characters in the seed, for each
-		// character in the seed, randomly decide if a random new
-		// character should be used to replace the seed character.
-		final StringBuilder chunkBuilder = new StringBuilder();
-		for (int i = 0; i < randomizeCount; i++) {
-			final boolean replace = random.nextBoolean();
-			if (replace) {
-				chunkBuilder.append(randomChunk.charAt(randomIndex));
-				randomIndex++;
-				// If random chunk has all been used, generate a new one.
-				if (randomIndex >= 32) {
-					randomIndex = 0;
-					randomChunk = UUID.randomUUID().toString().replace("-", "");
-				}
-			} else {
-				chunkBuilder.append(seed.charAt(i));
-			}
-		}
-		// If chunk is not 45 characters long, add more.
-		// 45 characters generate a good amount of randomness in the result token.
-		final int moreCount = 45 - chunkBuilder.length();
-		for (int i = 0; i < moreCount; i++) {
-			randomChunk = UUID.randomUUID().toString().replace("-", "");
-			chunkBuilder.append(randomChunk.charAt(i));
+		// Generate a random chunk based on the seed.
+		final byte[] chunk = this.generator.newChunk(seed);
+		final CryptoEvent event = CryptoEvent.start();
+		EFlowOutcome outcome = EFlowOutcome.Failed;
+		try {
+			final String token = this.cipher.encrypt(chunk);
+			outcome = EFlowOutcome.Succeeded;
+			return token;
+		} finally {
+			event.end(this.key, ECryptoOperation.Encrypt, outcome);
 		}
-		final String chunk = chunkBuilder.toString();
-		final String token = AESUtils.instance.encrypt(chunk, this.encryptionKey);
-		return token;
+	}
+
+	/**
+	 * Enable the pool of pre-generated token values for
+	 * this consumer. Once enabled, token issuance takes
+	 * values from the pool, and only generates values
+	 * inline when the pool is empty. Any previously
+	 * enabled pool is shut down.
+	 * @param capacity The <code>int</code> maximum
+	 * number of pooled values.
+	 * @param lowWaterMark The <code>int</code> pool
+	 * depth below which the background refiller is
+	 * woken up.
+	 */
+	public synchronized void enableTokenPool(final int capacity, final int lowWaterMark) {
+		final TokenPool pool = new TokenPool(this, capacity, lowWaterMark);
+		pool.start();
+		final TokenPool previous = this.pool;
+		this.pool = pool;
+		if (previous != null) previous.shutdown();
+	}
+
+	/**
+	 * Disable the pool of pre-generated token values
+	 * and stop its background refiller.
+	 */
+	public synchronized void disableTokenPool() {
+		final TokenPool previous = this.pool;
+		this.pool = null;
+		if (previous != null) previous.shutdown();
+	}
+
+	/**
+	 * Enable the concurrent execution of the independent
+	 * steps of token pair issuance on the given executor.
+	 * Once enabled, the access token value is generated
+	 * concurrently with the refresh token value, and a
+	 * refresh exchange invalidates the previous pair
+	 * concurrently with issuing the new pair. If the
+	 * invalidation fails, the new pair is invalidated
+	 * before the failure is propagated.
+	 * <p>
+	 * The executor should be a bounded pool of reused
+	 * platform threads, such as
+	 * <code>Executors.newFixedThreadPool</code> sized to the
+	 * number of processors, shared by the consumers. Token
+	 * generation and encryption cache their generator and
+	 * cipher per thread, so an executor starting a new
+	 * thread per task, such as one of virtual threads,
+	 * rebuilds and reseeds them for every token. Since the
+	 * calling thread waits for the forked steps, the pool
+	 * must not also run the threads invoking the flows, or
+	 * they may wait for steps queued behind themselves.
+	 * The consumer does not shut down the executor.
+	 * @param executor The <code>Executor</code>.
+	 */
+	public synchronized void enableConcurrentExecution(final Executor executor) {
+		if (executor == null) throw new IllegalArgumentException("Executor cannot be null.");
+		this.executor = executor;
+	}
+
+	/**
+	 * Disable the concurrent execution of token pair
+	 * issuance steps, so that all the steps run on the
+	 * calling thread one after the other.
+	 */
+	public synchronized void disableConcurrentExecution() {
+		this.executor = null;
+	}
+
+	/**
+	 * Retrieve the pool of pre-generated token values.
+	 * @return The <code>TokenPool</code>. Or
+	 * <code>null</code> if the pool is not enabled.
+	 */
+	public TokenPool getTokenPool() {
+		return this.pool;
+	}
+
+	/**
+	 * Retrieve a new token value for issuance. The value
+	 * is taken from the token pool if enabled and not
+	 * empty. Otherwise a new value is generated with the
+	 * given seed.
+	 * @param seed The <code>String</code> seed.
+	 * @return The <code>String</code> token value.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws DecoderException If hex encoding failed.
+	 */
+	private String nextToken(final String seed) throws NoSuchAlgorithmException, NoSuchPaddingException,
+	InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, DecoderException {
+		final IMetricsSink metrics = this.getMetricsSink();
+		final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+		final TokenPool pool = this.pool;
+		String value = (pool != null) ? pool.poll() : null;
+		if (value == null) value = this.randomToken(seed);
+		if (metrics.isEnabled()) metrics.record(EFlowPhase.TokenGeneration, System.nanoTime()-start);
+		return value;
 	}
 
 	/**
 	 * Verify the given consumer secret. A consumer's
 	 * secret should be the consumer's key encrypted
 	 * using its encryption key.
+	 * <p>
+	 * Verified secrets are cached, so that subsequent
+	 * verifications of the same value do not need to
+	 * decrypt it. Malformed values are rejected without
+	 * decryption.
 	 * @param consumerSecret The <code>String</code>
 	 * value to verify.
 	 * @return <code>true</code> if the given value
 	 * is valid. <code>false</code> otherwise.
 	 */
 	public boolean verifySecret(final String consumerSecret) {
+		final IMetricsSink metrics = this.getMetricsSink();
+		if (!metrics.isEnabled()) return this.checkSecret(consumerSecret);
+		final long start = System.nanoTime();
+		try {
+			return this.checkSecret(consumerSecret);
+		} finally {
+			metrics.record(EFlowPhase.SecretVerification, System.nanoTime()-start);
+		}
+	}
+
+	/**
+	 * Check the given consumer secret against the cache
+	 * of verified secrets, and decrypt it if not cached.
+	 * @param consumerSecret The <code>String</code>
+	 * value to verify.
+	 * @return <code>true</code> if the given value
+	 * is valid. <code>false</code> otherwise.
+	 */
+	private boolean checkSecret(final String consumerSecret) {
+		if (consumerSecret == null) return false;
+		if (this.secrets.contains(consumerSecret)) return true;
+		if (!AbstractConsumer.isEncryptedValue(consumerSecret)) return false;
 		try {
 			// Decrypt given secret with encryption key.
-			final String decrypted = AESUtils.instance.decrypt(consumerSecret, this.encryptionKey);
+			final String decrypted = this.decrypt(consumerSecret);
 			// Compare decrypted value with consumer key.
-			return this.key.equals(decrypted);
+			if (!this.key.equals(decrypted)) return false;
+		} catch (final BadPaddingException e) {
+			// Not encrypted with this consumer's key.
+			return false;
 		} catch (final Exception e) {
-			throw new IllegalArgumentException(e);
+			throw new IllegalStateException(e);
+		}
+		this.secrets.add(consumerSecret);
+		return true;
+	}
+
+	/**
+	 * Check if the given value has the form of an
+	 * encrypted value, which is a non-empty hex string
+	 * of whole AES blocks.
+	 * @param value The <code>String</code> value.
+	 * @return <code>true</code> if the value has the
+	 * encrypted form. <code>false</code> otherwise.
+	 */
+	private static boolean isEncryptedValue(final String value) {
+		final int length = value.length();
+		// Each 16-byte block is 32 hex characters.
+		if (length == 0 || (length & 31) != 0) return false;
+		for (int i = 0; i < length; i++) {
+			final char c = value.charAt(i);
+			final boolean hex = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+			if (!hex) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decrypt the given value with the consumer's
+	 * encryption key.
+	 * @param value The hex encoded <code>String</code>
+	 * value to decrypt.
+	 * @return The <code>String</code> plain text value.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the given
+	 * value is not a multiple of the block size.
+	 * @throws BadPaddingException If the given value
+	 * was not encrypted with the consumer's key.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws DecoderException If the given value is
+	 * not a valid hex encoded value.
+	 */
+	private String decrypt(final String value) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+	IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, DecoderException {
+		final CryptoEvent event = CryptoEvent.start();
+		EFlowOutcome outcome = EFlowOutcome.Failed;
+		try {
+			final String decrypted = this.cipher.decrypt(value);
+			outcome = EFlowOutcome.Succeeded;
+			return decrypted;
+		} catch (final BadPaddingException e) {
+			outcome = EFlowOutcome.Rejected;
+			throw e;
+		} finally {
+			event.end(this.key, ECryptoOperation.Decrypt, outcome);
 		}
 	}
 
 	/**
-	 * Verify the given redirect URL is valid.
+	 * Evict all the cached verified secrets. This should
+	 * be invoked when the consumer's credentials are
+	 * rotated.
+	 */
+	public void evictVerifiedSecrets() {
+		this.secrets.clear();
+	}
+
+	/**
+	 * Verify the given redirect URL is valid. A URL is
+	 * valid if its host matches one of the domains
+	 * returned by <code>getRedirectDomains</code>.
 	 * @param redirectURL The <code>String</code> URL
 	 * to verify.
 	 * @return <code>true</code> if given URL is valid.
 	 * <code>false</code> otherwise.
 	 */
 	public boolean verifyRedirectURL(final String redirectURL) {
-		try {
-			final URL url = new URL(redirectURL);
-			final String host = url.getHost();
-			if (host == null) return false;
-			else return this.domain.equalsIgnoreCase(host);
-		} catch (final MalformedURLException e) {
-			return false;
+		RedirectMatcher matcher = this.redirectMatcher;
+		if (matcher == null) {
+			// Compiling concurrently produces equivalent matchers.
+			matcher = new RedirectMatcher(this.getRedirectDomains());
+			this.redirectMatcher = matcher;
 		}
+		return matcher.matches(redirectURL);
+	}
+
+	/**
+	 * Retrieve the domains that redirect URLs of this
+	 * consumer may target. A domain is either an exact
+	 * host name, or a wildcard of the form
+	 * <code>*.example.com</code> that matches all the
+	 * sub-domains of <code>example.com</code>.
+	 * <p>
+	 * The domains are retrieved once and compiled into
+	 * a matcher on first verification. The default
+	 * implementation returns the registered domain.
+	 * @return The <code>String</code> array of domains.
+	 */
+	protected String[] getRedirectDomains() {
+		return new String[] {this.domain};
 	}
 
 	/**
@@ -232,10 +544,7 @@ public abstract class AbstractConsumer {
 	 */
 	public AbstractAuthorizationToken newAuthorizationToken(final String permissions, final String userid) throws NoSuchAlgorithmException, NoSuchPaddingException,
 	InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
-		// Generate a token chunk based on consumer data and resource grant.
-		final String token = this.randomToken(this.key+permissions);
-		final long expiration = System.currentTimeMillis() + this.getAuthorizationTokenLifetime();
-		return this.insertAuthorizationToken(token, permissions, userid, expiration);
+		return AbstractConsumer.await(this.newAuthorizationTokenAsync(permissions, userid));
 	}
 
 	/**
@@ -256,6 +565,62 @@ public abstract class AbstractConsumer {
 	protected abstract AbstractAuthorizationToken insertAuthorizationToken(final String value, final String permissions, final String userid,
 			final long expiration) throws SQLException;
 
+	/**
+	 * Generate a new authorization token for this
+	 * consumer asynchronously. The token value is
+	 * generated on the calling thread, and the token is
+	 * persisted with <code>insertAuthorizationTokenAsync</code>.
+	 * @param permissions The <code>String</code> of
+	 * the permissions requested.
+	 * @param userid The <code>String</code> ID of the
+	 * user granting the permissions.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AbstractAuthorizationToken</code> created,
+	 * which completes exceptionally if the generation or
+	 * the persistence failed.
+	 */
+	public CompletionStage<AbstractAuthorizationToken> newAuthorizationTokenAsync(final String permissions, final String userid) {
+		final FlowEvent event = FlowEvent.start();
+		CompletionStage<AbstractAuthorizationToken> stage;
+		try {
+			// Generate a token chunk based on consumer data and resource grant.
+			final String token = this.nextToken(this.key+permissions);
+			final long expiration = System.currentTimeMillis() + this.getAuthorizationTokenLifetime();
+			final IMetricsSink metrics = this.getMetricsSink();
+			final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+			stage = this.recordPhase(metrics, EFlowPhase.Persistence, start, this.insertAuthorizationTokenAsync(token, permissions, userid, expiration));
+		} catch (final Exception e) {
+			stage = CompletableFuture.failedFuture(e);
+		}
+		return this.endFlow(event, EFlowType.Authorization, stage);
+	}
+
+	/**
+	 * Insert a new authorization token asynchronously.
+	 * <p>
+	 * The default implementation invokes the blocking
+	 * <code>insertAuthorizationToken</code> on the calling
+	 * thread. Implementations backed by non-blocking
+	 * drivers should override this method.
+	 * @param value The <code>String</code> token value.
+	 * @param permissions The <code>String</code> of
+	 * permissions granted.
+	 * @param userid The <code>String</code> ID of the
+	 * user granted permissions.
+	 * @param expiration The <code>long</code> server
+	 * time in milliseconds when the token should expire.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AbstractAuthorizationToken</code> inserted.
+	 */
+	protected CompletionStage<AbstractAuthorizationToken> insertAuthorizationTokenAsync(final String value, final String permissions, final String userid,
+			final long expiration) {
+		try {
+			return CompletableFuture.completedFuture(this.insertAuthorizationToken(value, permissions, userid, expiration));
+		} catch (final SQLException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
 	/**
 	 * Create a new pair of access and refresh tokens
 	 * based on the given authorization token if the
@@ -288,80 +653,70 @@ public abstract class AbstractConsumer {
 	 */
 	public AccessTokenPair newAccessToken(final String consumerSecret, final AbstractAuthorizationToken authorizationToken) throws NoSuchAlgorithmException, NoSuchPaddingException,
 	InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
-		// Verify consumer secret.
-		final boolean secretValid = this.verifySecret(consumerSecret);
-		if (!secretValid) throw new IllegalArgumentException("Invalid consumer secret.");
-		// Verify authorization token.
-		if (authorizationToken == null || !authorizationToken.isValid() || !authorizationToken.consumerKey.equals(this.key)) {
-			throw new IllegalArgumentException("Invalid authorization token.");
-		}
-		// Decrypt authorization token. The decrypted value is
-		// the consumer key, permissions and random chunk.
-		final String seed = AESUtils.instance.decrypt(authorizationToken.value, this.encryptionKey);
-		// Generate new access token value.
-		final String accessTokenValue = this.randomToken(seed);
-		// Create new refresh token.
-		final long currentTime = System.currentTimeMillis();
-		final AbstractRefreshToken refreshToken = this.newRefreshToken(seed, accessTokenValue, currentTime);
-		// Create new access token.
-		final AbstractAccessToken accessToken = this.newAccessToken(accessTokenValue, authorizationToken.permissions, authorizationToken.userid, refreshToken, currentTime);
-		return new AccessTokenPair(accessToken, refreshToken);
+		return AbstractConsumer.await(this.newAccessTokenAsync(consumerSecret, authorizationToken));
 	}
 
 	/**
-	 * Generate a new refresh token using given seed
-	 * and the associated access token value.
-	 * @param seed The <code>String</code> seed used
-	 * to generate the associated access token value.
-	 * @param accessTokenValue The <code>String</code>
-	 * associated access token value.
-	 * @param currentTime The <code>long</code> current
-	 * time in milliseconds.
-	 * @return The <code>AbstractRefreshToken</code>
-	 * generated.
-	 * @throws SQLException If database access failed.
-	 * @throws NoSuchAlgorithmException If AES is not
-	 * supported.
-	 * @throws NoSuchPaddingException If transformation
-	 * contains a padding that is not available.
-	 * @throws InvalidKeyException If the consumer's
-	 * encryption key is invalid.
-	 * @throws IllegalBlockSizeException If the total
-	 * input length of the data processed by this cipher
-	 * is not a multiple of block size; or if the AES
-	 * encryption algorithm is unable to process the
-	 * input data provided.
-	 * @throws BadPaddingException Should not occur.
-	 * @throws UnsupportedEncodingException If UTF-8
-	 * encoding is not supported.
-	 * @throws DecoderException If hex encoding failed.
+	 * Create a new pair of access and refresh tokens
+	 * based on the given authorization token
+	 * asynchronously. The secret and the authorization
+	 * token are verified and the token values generated
+	 * on the calling thread.
+	 * @param consumerSecret The <code>String</code>
+	 * consumer secret to validate.
+	 * @param authorizationToken The instance of the
+	 * <code>AbstractAuthorizationToken</code>.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AccessTokenPair</code>, which completes with
+	 * <code>IllegalArgumentException</code> if the secret
+	 * or the authorization token is invalid.
 	 */
-	private AbstractRefreshToken newRefreshToken(final String seed, final String accessTokenValue, final long currentTime) throws SQLException, NoSuchAlgorithmException,
-	NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, DecoderException {
-		final String refreshTokenValue = this.randomToken(seed);
-		final long refreshExpiration = currentTime + this.getRefreshTokenLifetime();
-		final AbstractRefreshToken refreshToken = this.insertRefreshToken(refreshTokenValue, accessTokenValue, refreshExpiration);
-		if (refreshToken == null) throw new SQLException("Generating refresh token failed.");
-		return refreshToken;
+	public CompletionStage<AccessTokenPair> newAccessTokenAsync(final String consumerSecret, final AbstractAuthorizationToken authorizationToken) {
+		final FlowEvent event = FlowEvent.start();
+		CompletionStage<AccessTokenPair> stage;
+		try {
+			// Verify consumer secret.
+			final boolean secretValid = this.verifySecret(consumerSecret);
+			if (!secretValid) throw new IllegalArgumentException("Invalid consumer secret.");
+			// Verify authorization token.
+			if (authorizationToken == null || !authorizationToken.isValid() || !authorizationToken.consumerKey.equals(this.key)) {
+				throw new IllegalArgumentException("Invalid authorization token.");
+			}
+			// Decrypt authorization token. The decrypted value is
+			// the consumer key, permissions and random chunk.
+			final String seed = this.decrypt(authorizationToken.value);
+			// Generate new access token and refresh token.
+			stage = this.newTokenPairAsync(seed, authorizationToken.permissions, authorizationToken.userid, null);
+		} catch (final Exception e) {
+			stage = CompletableFuture.failedFuture(e);
+		}
+		return this.endFlow(event, EFlowType.AuthorizationExchange, stage);
 	}
 
 	/**
-	 * Generate a new access token using given value,
-	 * granted permissions, granting user's ID and
-	 * the associated refresh token.
-	 * @param value The <code>String</code> access
-	 * token value.
+	 * Generate and insert a new pair of access and refresh
+	 * tokens using given seed, granted permissions and
+	 * granting user's ID. Both token values are generated
+	 * on the calling thread before either token is
+	 * inserted with <code>insertTokenPairAsync</code>.
+	 * If concurrent execution is enabled, the access token
+	 * value is generated on the executor concurrently with
+	 * the refresh token value.
+	 * @param seed The <code>String</code> seed used to
+	 * generate the token values.
 	 * @param permissions The <code>String</code>
 	 * granted permissions.
 	 * @param userid The <code>String</code> ID of the
 	 * granting user.
-	 * @param refreshToken The <code>AbstractRefreshToken</code>
-	 * associated with the access token.
-	 * @param currentTime The <code>long</code> current
-	 * time in milliseconds.
-	 * @return The <code>AbstractAccessToken</code>
-	 * generated.
-	 * @throws SQLException If database access failed.
+	 * @param sibling The <code>CompletableFuture</code>
+	 * of the concurrent sibling step, whose failure
+	 * cancels the insertion. Or <code>null</code>.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AccessTokenPair</code> inserted, which
+	 * completes with <code>SQLException</code> if the
+	 * insertion failed.
+	 * @throws SQLException If the concurrent generation
+	 * failed unexpectedly.
 	 * @throws NoSuchAlgorithmException If AES is not
 	 * supported.
 	 * @throws NoSuchPaddingException If transformation
@@ -378,69 +733,551 @@ public abstract class AbstractConsumer {
 	 * encoding is not supported.
 	 * @throws DecoderException If hex encoding failed.
 	 */
-	private AbstractAccessToken newAccessToken(final String value, final String permissions, final String userid, final AbstractRefreshToken refreshToken, final long currentTime)
-			throws SQLException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException,
-			UnsupportedEncodingException, DecoderException {
+	private CompletionStage<AccessTokenPair> newTokenPairAsync(final String seed, final String permissions, final String userid,
+			final CompletableFuture<?> sibling) throws SQLException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+			IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, DecoderException {
+		final long currentTime = System.currentTimeMillis();
+		final long refreshExpiration = currentTime + this.getRefreshTokenLifetime();
 		final long accessExpiration = currentTime + this.getAccessTokenLifetime();
-		final AbstractAccessToken accessToken = this.insertAccessToken(value, refreshToken, permissions, userid, accessExpiration);
-		if (accessToken == null) throw new SQLException("Generating access token failed.");
-		return accessToken;
+		// Generate token values. A stateless access token
+		// carries the refresh token value in its claims.
+		final Executor executor = this.executor;
+		final String refreshTokenValue;
+		final String accessTokenValue;
+		if (this.issuesStatelessAccessTokens()) {
+			refreshTokenValue = this.nextToken(seed);
+			accessTokenValue = this.newStatelessAccessToken(userid, permissions, refreshTokenValue, accessExpiration);
+		} else if (executor != null) {
+			final CompletableFuture<String> access = AbstractConsumer.fork(executor, new Callable<CompletionStage<String>>() {
+				@Override
+				public CompletionStage<String> call() throws Exception {
+					return CompletableFuture.completedFuture(AbstractConsumer.this.nextToken(seed));
+				}
+			});
+			try {
+				refreshTokenValue = this.nextToken(seed);
+			} catch (final Exception e) {
+				access.cancel(false);
+				throw e;
+			}
+			accessTokenValue = AbstractConsumer.await(access);
+		} else {
+			refreshTokenValue = this.nextToken(seed);
+			accessTokenValue = this.nextToken(seed);
+		}
+		// Do not persist the pair once its sibling failed.
+		if (sibling != null && sibling.isCompletedExceptionally()) {
+			return CompletableFuture.failedFuture(new CancellationException("Token pair issuance cancelled."));
+		}
+		// Create new refresh token and access token.
+		final IMetricsSink metrics = this.getMetricsSink();
+		final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+		final CompletionStage<AccessTokenPair> stage = this.insertTokenPairAsync(refreshTokenValue, refreshExpiration, accessTokenValue, permissions, userid,
+				accessExpiration);
+		return this.recordPhase(metrics, EFlowPhase.Persistence, start, stage).thenCompose(new Function<AccessTokenPair, CompletionStage<AccessTokenPair>>() {
+			@Override
+			public CompletionStage<AccessTokenPair> apply(final AccessTokenPair pair) {
+				if (pair == null || pair.refreshToken == null || pair.accessToken == null) {
+					return CompletableFuture.failedFuture(new SQLException("Generating token pair failed."));
+				}
+				return CompletableFuture.completedFuture(pair);
+			}
+		});
 	}
 
 	/**
-	 * Insert a new refresh token with given token
-	 * value, associated access token value and the
-	 * refresh token's expiration time.
-	 * @param value The <code>String</code> refresh
-	 * token value.
+	 * Insert a new pair of refresh and access tokens.
+	 * <p>
+	 * The default implementation inserts the refresh
+	 * token with <code>insertRefreshToken</code>, then
+	 * the access token with <code>insertAccessToken</code>.
+	 * Implementations may override this method to persist
+	 * both tokens in a single batch or transaction.
+	 * @param refreshTokenValue The <code>String</code>
+	 * refresh token value.
+	 * @param refreshExpiration The <code>long</code>
+	 * refresh token expiration in milliseconds.
 	 * @param accessTokenValue The <code>String</code>
-	 * associated access token value.
-	 * @param expiration The <code>long</code> refresh
-	 * token expiration in milliseconds.
-	 * @return The <code>AbstractRefreshToken</code>
-	 * inserted.
+	 * access token value.
+	 * @param permissions The <code>String</code> granted
+	 * permissions.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param accessExpiration The <code>long</code>
+	 * access token expiration in milliseconds.
+	 * @return The <code>AccessTokenPair</code> inserted.
 	 * @throws SQLException If database access failed.
 	 */
-	protected abstract AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException;
+	protected AccessTokenPair insertTokenPair(final String refreshTokenValue, final long refreshExpiration, final String accessTokenValue,
+			final String permissions, final String userid, final long accessExpiration) throws SQLException {
+		final AbstractRefreshToken refreshToken = this.insertRefreshToken(refreshTokenValue, accessTokenValue, refreshExpiration);
+		if (refreshToken == null) throw new SQLException("Generating refresh token failed.");
+		final AbstractAccessToken accessToken = this.insertAccessToken(accessTokenValue, refreshToken, permissions, userid, accessExpiration);
+		if (accessToken == null) throw new SQLException("Generating access token failed.");
+		return new AccessTokenPair(accessToken, refreshToken);
+	}
 
 	/**
-	 * Create new access token with given token value,
-	 * the associated refresh token value, granted
-	 * permissions, granting user's ID and the access
-	 * token's expiration time.
-	 * @param value The <code>String</code> access token
-	 * value.
-	 * @param refreshToken The <code>AbstractRefreshToken</code>
-	 * associated with the access token.
+	 * Insert a new pair of refresh and access tokens
+	 * asynchronously.
+	 * <p>
+	 * The default implementation invokes the blocking
+	 * <code>insertTokenPair</code> on the calling thread.
+	 * Implementations backed by non-blocking drivers
+	 * should override this method.
+	 * @param refreshTokenValue The <code>String</code>
+	 * refresh token value.
+	 * @param refreshExpiration The <code>long</code>
+	 * refresh token expiration in milliseconds.
+	 * @param accessTokenValue The <code>String</code>
+	 * access token value.
 	 * @param permissions The <code>String</code> granted
 	 * permissions.
 	 * @param userid The <code>String</code> ID of the
 	 * granting user.
-	 * @param expiration The <code>long</code> access
-	 * token expiration in milliseconds.
-	 * @return The <code>AbstractAccessToken</code>
-	 * inserted.
+	 * @param accessExpiration The <code>long</code>
+	 * access token expiration in milliseconds.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AccessTokenPair</code> inserted.
+	 */
+	protected CompletionStage<AccessTokenPair> insertTokenPairAsync(final String refreshTokenValue, final long refreshExpiration, final String accessTokenValue,
+			final String permissions, final String userid, final long accessExpiration) {
+		try {
+			return CompletableFuture.completedFuture(this.insertTokenPair(refreshTokenValue, refreshExpiration, accessTokenValue, permissions, userid,
+					accessExpiration));
+		} catch (final SQLException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Invalidate the given pair of refresh token and its
+	 * associated access token.
+	 * <p>
+	 * The default implementation invalidates each token
+	 * individually, and revokes the access token value
+	 * with <code>revokeAccessToken</code> if this consumer
+	 * issues stateless access tokens, since the stored
+	 * access token cannot invalidate the value that
+	 * <code>verifyStatelessAccessToken</code> accepts.
+	 * Implementations may override this method to persist
+	 * both invalidations in a single write, and then
+	 * invoke <code>markInvalid</code> on both tokens and
+	 * revoke stateless access token values likewise.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>
+	 * to invalidate.
+	 * @param accessToken The associated
+	 * <code>AbstractAccessToken</code> to invalidate.
 	 * @throws SQLException If database access failed.
 	 */
-	protected abstract AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String permissions,
-			final String userid, final long expiration) throws SQLException;
+	protected void invalidatePair(final AbstractRefreshToken refreshToken, final AbstractAccessToken accessToken) throws SQLException {
+		refreshToken.invalidate();
+		accessToken.invalidate();
+		if (this.issuesStatelessAccessTokens()) this.revokeAccessToken(accessToken.value);
+	}
 
 	/**
-	 * Create a new pair of access and refresh tokens
-	 * if the specified consumer secret is valid and
-	 * this consumer has the resource owner credentials
-	 * flow privilege.
+	 * Invalidate the given pair of refresh token and its
+	 * associated access token asynchronously.
 	 * <p>
-	 * This method should only be used to generate
-	 * an access token with the resource owner
-	 * credentials flow.
-	 * @param consumerSecret The <code>String</code>
-	 * consumer secret to validate.
-	 * @param userid The <code>String</code> ID of the
-	 * user granting the permission.
-	 * @param permissions The <code>String</code>
-	 * permissions to grant to the consumer.
-	 * @return The <code>AccessTokenPair</code> value.
+	 * The default implementation invokes the blocking
+	 * <code>invalidatePair</code> on the calling thread.
+	 * Implementations backed by non-blocking drivers
+	 * should override this method.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>
+	 * to invalidate.
+	 * @param accessToken The associated
+	 * <code>AbstractAccessToken</code> to invalidate.
+	 * @return The <code>CompletionStage</code> completed
+	 * once both tokens are invalidated.
+	 */
+	protected CompletionStage<Void> invalidatePairAsync(final AbstractRefreshToken refreshToken, final AbstractAccessToken accessToken) {
+		try {
+			this.invalidatePair(refreshToken, accessToken);
+			return CompletableFuture.completedFuture(null);
+		} catch (final SQLException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Retrieve the access token associated with the
+	 * given refresh token asynchronously.
+	 * <p>
+	 * The default implementation invokes the blocking
+	 * <code>getAssociatedAccessToken</code> of the refresh
+	 * token on the calling thread. Implementations backed
+	 * by non-blocking drivers should override this method.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>.
+	 * @return The <code>CompletionStage</code> of the
+	 * associated <code>AbstractAccessToken</code>, or of
+	 * <code>null</code> if there is none.
+	 */
+	protected CompletionStage<AbstractAccessToken> getAssociatedAccessTokenAsync(final AbstractRefreshToken refreshToken) {
+		try {
+			return CompletableFuture.completedFuture(refreshToken.getAssociatedAccessToken());
+		} catch (final SQLException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Record the duration of the given phase once the
+	 * given stage completes.
+	 * @param <T> The result type.
+	 * @param metrics The <code>IMetricsSink</code>.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @param start The <code>long</code> start of the
+	 * phase in nanoseconds.
+	 * @param stage The <code>CompletionStage</code> of
+	 * the phase.
+	 * @return The <code>CompletionStage</code> with the
+	 * same result.
+	 */
+	private <T> CompletionStage<T> recordPhase(final IMetricsSink metrics, final EFlowPhase phase, final long start, final CompletionStage<T> stage) {
+		if (!metrics.isEnabled()) return stage;
+		return stage.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(final T result, final Throwable error) {
+				metrics.record(phase, System.nanoTime()-start);
+			}
+		});
+	}
+
+	/**
+	 * End the given flow event once the given stage
+	 * completes. A <code>null</code> result or an
+	 * <code>IllegalArgumentException</code> is reported
+	 * as rejected.
+	 * @param <T> The result type.
+	 * @param event The begun <code>FlowEvent</code>.
+	 * @param flow The <code>EFlowType</code>.
+	 * @param stage The <code>CompletionStage</code> of
+	 * the flow.
+	 * @return The <code>CompletionStage</code> with the
+	 * same result.
+	 */
+	private <T> CompletionStage<T> endFlow(final FlowEvent event, final EFlowType flow, final CompletionStage<T> stage) {
+		if (!event.isEnabled()) return stage;
+		return stage.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(final T result, final Throwable error) {
+				final Throwable cause = AbstractConsumer.unwrap(error);
+				final EFlowOutcome outcome;
+				if (cause == null) outcome = (result == null) ? EFlowOutcome.Rejected : EFlowOutcome.Succeeded;
+				else if (cause instanceof IllegalArgumentException) outcome = EFlowOutcome.Rejected;
+				else outcome = EFlowOutcome.Failed;
+				event.end(AbstractConsumer.this.key, flow, outcome);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve the cause of the given failure of a
+	 * stage, without the <code>CompletionException</code>
+	 * wrappers.
+	 * @param error The <code>Throwable</code> failure.
+	 * Or <code>null</code>.
+	 * @return The <code>Throwable</code> cause. Or
+	 * <code>null</code> if there is no failure.
+	 */
+	private static Throwable unwrap(final Throwable error) {
+		Throwable cause = error;
+		while (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+
+	/**
+	 * Wait for the given flow stage to complete and
+	 * retrieve its result, rethrowing its failure
+	 * unwrapped.
+	 * @param <T> The result type.
+	 * @param stage The <code>CompletionStage</code> of
+	 * the flow.
+	 * @return The <code>T</code> result.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws SQLException If database access failed.
+	 * @throws DecoderException If hex encoding failed.
+	 */
+	private static <T> T await(final CompletionStage<T> stage) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+	IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
+		try {
+			return stage.toCompletableFuture().join();
+		} catch (final CompletionException e) {
+			throw AbstractConsumer.rethrow(AbstractConsumer.unwrap(e));
+		}
+	}
+
+	/**
+	 * Rethrow the given failure cause of a flow as its
+	 * declared exception type.
+	 * @param cause The <code>Throwable</code> cause.
+	 * @return Never, so that callers can throw the result
+	 * to end their control flow.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws SQLException If database access failed.
+	 * @throws DecoderException If hex encoding failed.
+	 */
+	private static RuntimeException rethrow(final Throwable cause) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+	IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
+		if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+		else if (cause instanceof Error) throw (Error)cause;
+		else if (cause instanceof SQLException) throw (SQLException)cause;
+		else if (cause instanceof NoSuchAlgorithmException) throw (NoSuchAlgorithmException)cause;
+		else if (cause instanceof NoSuchPaddingException) throw (NoSuchPaddingException)cause;
+		else if (cause instanceof InvalidKeyException) throw (InvalidKeyException)cause;
+		else if (cause instanceof IllegalBlockSizeException) throw (IllegalBlockSizeException)cause;
+		else if (cause instanceof BadPaddingException) throw (BadPaddingException)cause;
+		else if (cause instanceof UnsupportedEncodingException) throw (UnsupportedEncodingException)cause;
+		else if (cause instanceof DecoderException) throw (DecoderException)cause;
+		else throw new IllegalStateException(cause);
+	}
+
+	/**
+	 * Check if this consumer issues stateless access
+	 * tokens. A stateless access token value carries
+	 * the token claims encrypted and authenticated, so
+	 * that it can be validated with
+	 * <code>verifyStatelessAccessToken</code> without
+	 * accessing the storage. Access tokens are inserted
+	 * regardless of the mode.
+	 * <p>
+	 * The default implementation returns <code>false</code>.
+	 * @return <code>true</code> if access tokens are
+	 * stateless. <code>false</code> otherwise.
+	 */
+	protected boolean issuesStatelessAccessTokens() {
+		return false;
+	}
+
+	/**
+	 * Retrieve the sink that receives the durations of
+	 * the secret verification, token generation and
+	 * persistence phases of this consumer. The sink is
+	 * retrieved on every timed phase, so implementations
+	 * should return a shared instance.
+	 * <p>
+	 * The default implementation returns the disabled
+	 * <code>NoopMetricsSink</code>, so no phase is timed.
+	 * @return The <code>IMetricsSink</code>.
+	 */
+	protected IMetricsSink getMetricsSink() {
+		return NoopMetricsSink.instance;
+	}
+
+	/**
+	 * Encode a new stateless access token value.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param permissions The <code>String</code>
+	 * granted permissions.
+	 * @param refreshTokenValue The <code>String</code>
+	 * associated refresh token value.
+	 * @param expiration The <code>long</code> access
+	 * token expiration in milliseconds.
+	 * @return The <code>String</code> token value.
+	 */
+	private String newStatelessAccessToken(final String userid, final String permissions, final String refreshTokenValue, final long expiration) {
+		final IMetricsSink metrics = this.getMetricsSink();
+		final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+		final CryptoEvent event = CryptoEvent.start();
+		EFlowOutcome outcome = EFlowOutcome.Failed;
+		try {
+			final String value = this.getStatelessCodec().encode(userid, permissions, refreshTokenValue, expiration);
+			outcome = EFlowOutcome.Succeeded;
+			if (metrics.isEnabled()) metrics.record(EFlowPhase.TokenGeneration, System.nanoTime()-start);
+			return value;
+		} catch (final GeneralSecurityException e) {
+			throw new IllegalStateException("Encoding stateless access token failed.", e);
+		} finally {
+			event.end(this.key, ECryptoOperation.StatelessEncode, outcome);
+		}
+	}
+
+	/**
+	 * Verify the given stateless access token value.
+	 * The claims are authenticated and the expiration
+	 * is checked without accessing the storage. If the
+	 * consumer supports revocation, the revocation check
+	 * is performed last.
+	 * @param value The <code>String</code> access token
+	 * value.
+	 * @return The <code>AbstractAccessToken</code>
+	 * decoded from the value. Or <code>null</code> if
+	 * the value is not a valid stateless access token of
+	 * this consumer, has expired or has been revoked.
+	 * @throws SQLException If the revocation check
+	 * failed.
+	 */
+	public AbstractAccessToken verifyStatelessAccessToken(final String value) throws SQLException {
+		final FlowEvent event = FlowEvent.start();
+		EFlowOutcome outcome = EFlowOutcome.Failed;
+		try {
+			final AbstractAccessToken accessToken = this.decodeStatelessAccessToken(value);
+			outcome = (accessToken == null) ? EFlowOutcome.Rejected : EFlowOutcome.Succeeded;
+			return accessToken;
+		} finally {
+			event.end(this.key, EFlowType.Verification, outcome);
+		}
+	}
+
+	/**
+	 * Decode and check the given stateless access token
+	 * value.
+	 * @param value The <code>String</code> access token
+	 * value.
+	 * @return The <code>AbstractAccessToken</code>. Or
+	 * <code>null</code> if the value is invalid, has
+	 * expired or has been revoked.
+	 * @throws SQLException If the revocation check
+	 * failed.
+	 */
+	private AbstractAccessToken decodeStatelessAccessToken(final String value) throws SQLException {
+		if (!StatelessTokenCodec.isStateless(value)) return null;
+		final CryptoEvent event = CryptoEvent.start();
+		final StatelessTokenCodec.Claims claims;
+		EFlowOutcome outcome = EFlowOutcome.Failed;
+		try {
+			claims = this.getStatelessCodec().decode(value);
+			outcome = (claims == null) ? EFlowOutcome.Rejected : EFlowOutcome.Succeeded;
+		} finally {
+			event.end(this.key, ECryptoOperation.StatelessDecode, outcome);
+		}
+		if (claims == null || claims.expiration <= System.currentTimeMillis()) return null;
+		if (this.isAccessTokenRevoked(value)) return null;
+		return new StatelessAccessToken(this, value, claims);
+	}
+
+	/**
+	 * Check if the given stateless access token value
+	 * has been revoked before its expiration.
+	 * <p>
+	 * The default implementation does not support
+	 * revocation and returns <code>false</code>.
+	 * @param value The <code>String</code> access token
+	 * value.
+	 * @return <code>true</code> if the token has been
+	 * revoked. <code>false</code> otherwise.
+	 * @throws SQLException If database access failed.
+	 */
+	protected boolean isAccessTokenRevoked(final String value) throws SQLException {
+		return false;
+	}
+
+	/**
+	 * Revoke the given stateless access token value,
+	 * which is invoked when a token obtained from
+	 * <code>verifyStatelessAccessToken</code> is
+	 * invalidated. Implementations that support
+	 * revocation should record the value, and report
+	 * it from <code>isAccessTokenRevoked</code> until
+	 * the token expires.
+	 * <p>
+	 * The default implementation does nothing.
+	 * @param value The <code>String</code> access token
+	 * value.
+	 * @throws SQLException If database access failed.
+	 */
+	protected void revokeAccessToken(final String value) throws SQLException {
+	}
+
+	/**
+	 * Retrieve the stateless token codec, creating it
+	 * if necessary.
+	 * @return The <code>StatelessTokenCodec</code>.
+	 */
+	private StatelessTokenCodec getStatelessCodec() {
+		StatelessTokenCodec codec = this.statelessCodec;
+		if (codec == null) {
+			try {
+				// Creating concurrently produces equivalent codecs.
+				codec = new StatelessTokenCodec(this.key, this.encryptionKey);
+			} catch (final Exception e) {
+				throw new IllegalStateException("Creating stateless token codec failed.", e);
+			}
+			this.statelessCodec = codec;
+		}
+		return codec;
+	}
+
+	/**
+	 * Insert a new refresh token with given token
+	 * value, associated access token value and the
+	 * refresh token's expiration time.
+	 * @param value The <code>String</code> refresh
+	 * token value.
+	 * @param accessTokenValue The <code>String</code>
+	 * associated access token value.
+	 * @param expiration The <code>long</code> refresh
+	 * token expiration in milliseconds.
+	 * @return The <code>AbstractRefreshToken</code>
+	 * inserted.
+	 * @throws SQLException If database access failed.
+	 */
+	protected abstract AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException;
+
+	/**
+	 * Create new access token with given token value,
+	 * the associated refresh token value, granted
+	 * permissions, granting user's ID and the access
+	 * token's expiration time.
+	 * @param value The <code>String</code> access token
+	 * value.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>
+	 * associated with the access token.
+	 * @param permissions The <code>String</code> granted
+	 * permissions.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param expiration The <code>long</code> access
+	 * token expiration in milliseconds.
+	 * @return The <code>AbstractAccessToken</code>
+	 * inserted.
+	 * @throws SQLException If database access failed.
+	 */
+	protected abstract AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String permissions,
+			final String userid, final long expiration) throws SQLException;
+
+	/**
+	 * Create a new pair of access and refresh tokens
+	 * if the specified consumer secret is valid and
+	 * this consumer has the resource owner credentials
+	 * flow privilege.
+	 * <p>
+	 * This method should only be used to generate
+	 * an access token with the resource owner
+	 * credentials flow.
+	 * @param consumerSecret The <code>String</code>
+	 * consumer secret to validate.
+	 * @param userid The <code>String</code> ID of the
+	 * user granting the permission.
+	 * @param permissions The <code>String</code>
+	 * permissions to grant to the consumer.
+	 * @return The <code>AccessTokenPair</code> value.
 	 * @throws NoSuchAlgorithmException If AES is not
 	 * supported.
 	 * @throws NoSuchPaddingException If transformation
@@ -460,21 +1297,337 @@ public abstract class AbstractConsumer {
 	 */
 	public AccessTokenPair newAccessToken(final String consumerSecret, final String userid, final String permissions) throws NoSuchAlgorithmException,
 	NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
+		return AbstractConsumer.await(this.newAccessTokenAsync(consumerSecret, userid, permissions));
+	}
+
+	/**
+	 * Create a new pair of access and refresh tokens for
+	 * the resource owner credentials flow asynchronously.
+	 * The secret is verified and the token values are
+	 * generated on the calling thread.
+	 * @param consumerSecret The <code>String</code>
+	 * consumer secret to validate.
+	 * @param userid The <code>String</code> ID of the
+	 * user granting the permission.
+	 * @param permissions The <code>String</code>
+	 * permissions to grant to the consumer.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AccessTokenPair</code>, which completes with
+	 * <code>IllegalArgumentException</code> if the secret
+	 * is invalid.
+	 */
+	public CompletionStage<AccessTokenPair> newAccessTokenAsync(final String consumerSecret, final String userid, final String permissions) {
+		final FlowEvent event = FlowEvent.start();
+		CompletionStage<AccessTokenPair> stage;
+		try {
+			// Verify consumer secret.
+			final boolean secretValid = this.verifySecret(consumerSecret);
+			if (!secretValid) throw new IllegalArgumentException("Invalid consumer secret.");
+			// Verify privilege.
+			if (!this.hasResourceOwnerCredentialsFlowPrivilege()) throw new RuntimeException("Insufficient consumer privilege.");
+			// Use consumer key and permission as seed.
+			final String seed = this.key+permissions;
+			// Generate new access token and refresh token.
+			stage = this.newTokenPairAsync(seed, permissions, userid, null);
+		} catch (final Exception e) {
+			stage = CompletableFuture.failedFuture(e);
+		}
+		return this.endFlow(event, EFlowType.CredentialsExchange, stage);
+	}
+
+	/**
+	 * Issue new pairs of access and refresh tokens for
+	 * the resource owner credentials flow to all the
+	 * given users with the same permissions, generating
+	 * the token values on the common fork/join pool.
+	 * @param consumerSecret The <code>String</code>
+	 * consumer secret to validate.
+	 * @param userids The <code>Iterator</code> of the
+	 * <code>String</code> IDs of the users granting the
+	 * permissions.
+	 * @param permissions The <code>String</code>
+	 * permissions to grant to the consumer.
+	 * @param sink The <code>ITokenPairSink</code> that
+	 * receives the inserted pairs.
+	 * @return The <code>long</code> number of pairs
+	 * issued.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws SQLException If database access failed.
+	 * @throws DecoderException If hex encoding failed.
+	 * @throws IOException If the sink failed.
+	 * @see #newAccessTokens(String, Iterator, String, ITokenPairSink, ForkJoinPool)
+	 */
+	public long newAccessTokens(final String consumerSecret, final Iterator<String> userids, final String permissions, final ITokenPairSink sink)
+			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException,
+			UnsupportedEncodingException, SQLException, DecoderException, IOException {
+		return this.newAccessTokens(consumerSecret, userids, permissions, sink, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Issue new pairs of access and refresh tokens for
+	 * the resource owner credentials flow to all the
+	 * given users with the same permissions, such as to
+	 * provision service identities in bulk.
+	 * <p>
+	 * The secret and the privilege are verified once.
+	 * Users are read in batches of the bulk issuance
+	 * batch size. The token values of a batch are
+	 * generated in parallel on the given pool while the
+	 * previous batch is inserted with the batched
+	 * <code>insertTokenPairs</code>, and the inserted
+	 * pairs are passed to the sink in the order of the
+	 * users. At most two batches are held at any time, so
+	 * the memory used does not grow with the number of
+	 * users.
+	 * <p>
+	 * If the issuance fails, exactly the pairs the sink
+	 * accepted remain issued. A batch is either inserted
+	 * entirely or not at all, and the pairs of an inserted
+	 * batch that the sink did not accept are invalidated
+	 * before the failure is thrown. The pair for which the
+	 * sink failed is considered not accepted.
+	 * @param consumerSecret The <code>String</code>
+	 * consumer secret to validate.
+	 * @param userids The <code>Iterator</code> of the
+	 * <code>String</code> IDs of the users granting the
+	 * permissions.
+	 * @param permissions The <code>String</code>
+	 * permissions to grant to the consumer.
+	 * @param sink The <code>ITokenPairSink</code> that
+	 * receives the inserted pairs.
+	 * @param pool The <code>ForkJoinPool</code> to
+	 * generate the token values on.
+	 * @return The <code>long</code> number of pairs
+	 * issued.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws SQLException If database access failed.
+	 * @throws DecoderException If hex encoding failed.
+	 * @throws IOException If the sink failed.
+	 */
+	public long newAccessTokens(final String consumerSecret, final Iterator<String> userids, final String permissions, final ITokenPairSink sink,
+			final ForkJoinPool pool) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException,
+			BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException, IOException {
+		if (pool == null) throw new IllegalArgumentException("Generation pool must be specified.");
 		// Verify consumer secret.
 		final boolean secretValid = this.verifySecret(consumerSecret);
 		if (!secretValid) throw new IllegalArgumentException("Invalid consumer secret.");
 		// Verify privilege.
 		if (!this.hasResourceOwnerCredentialsFlowPrivilege()) throw new RuntimeException("Insufficient consumer privilege.");
+		final int batchSize = this.getBulkIssuanceBatchSize();
+		if (batchSize <= 0) throw new IllegalStateException("Bulk issuance batch size must be positive.");
 		// Use consumer key and permission as seed.
 		final String seed = this.key+permissions;
-		// Generate new access token value.
-		final String accessTokenValue = this.randomToken(seed);
-		// Create new refresh token.
+		final IMetricsSink metrics = this.getMetricsSink();
+		long count = 0;
+		BulkGeneration generating = this.startBulkGeneration(pool, seed, permissions, AbstractConsumer.nextBatch(userids, batchSize));
+		try {
+			while (generating != null) {
+				final PendingTokenPair[] pending = generating.awaitPairs();
+				// Generate the next batch while inserting this one.
+				generating = this.startBulkGeneration(pool, seed, permissions, AbstractConsumer.nextBatch(userids, batchSize));
+				final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+				final List<AccessTokenPair> pairs = this.insertTokenPairs(Arrays.asList(pending));
+				if (metrics.isEnabled()) metrics.record(EFlowPhase.Persistence, System.nanoTime()-start);
+				if (pairs == null || pairs.size() != pending.length) {
+					final SQLException failure = new SQLException("Inserting token pairs failed.");
+					if (pairs != null) this.invalidateTokenPairs(pairs, 0, failure);
+					throw failure;
+				}
+				this.deliver(pairs, sink);
+				count += pairs.size();
+			}
+		} finally {
+			if (generating != null) generating.cancel(false);
+		}
+		return count;
+	}
+
+	/**
+	 * Pass the given inserted pairs to the given sink,
+	 * invalidating the pairs not accepted if the sink
+	 * fails.
+	 * @param pairs The <code>List</code> of inserted
+	 * <code>AccessTokenPair</code>.
+	 * @param sink The <code>ITokenPairSink</code>.
+	 * @throws IOException If the sink failed.
+	 */
+	private void deliver(final List<AccessTokenPair> pairs, final ITokenPairSink sink) throws IOException {
+		int accepted = 0;
+		try {
+			for (; accepted < pairs.size(); accepted++) {
+				sink.accept(pairs.get(accepted));
+			}
+		} catch (final Throwable e) {
+			this.invalidateTokenPairs(pairs, accepted, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Invalidate the given pairs from the given index,
+	 * which were inserted but cannot be delivered.
+	 * Invalidation failures are added as suppressed
+	 * exceptions of the given failure.
+	 * @param pairs The <code>List</code> of
+	 * <code>AccessTokenPair</code>.
+	 * @param from The <code>int</code> index of the first
+	 * pair to invalidate.
+	 * @param failure The <code>Throwable</code> failure
+	 * that prevented the delivery.
+	 */
+	private void invalidateTokenPairs(final List<AccessTokenPair> pairs, final int from, final Throwable failure) {
+		for (int i = from; i < pairs.size(); i++) {
+			final AccessTokenPair pair = pairs.get(i);
+			try {
+				this.invalidatePair(pair.refreshToken, pair.accessToken);
+			} catch (final SQLException e) {
+				failure.addSuppressed(e);
+			}
+		}
+	}
+
+	/**
+	 * Read the next batch of user IDs.
+	 * @param userids The <code>Iterator</code> of user
+	 * IDs.
+	 * @param batchSize The <code>int</code> maximum
+	 * number of user IDs to read.
+	 * @return The <code>String</code> array of user IDs.
+	 * Or <code>null</code> if there are no more.
+	 */
+	private static String[] nextBatch(final Iterator<String> userids, final int batchSize) {
+		if (!userids.hasNext()) return null;
+		final List<String> batch = new ArrayList<String>(batchSize);
+		while (batch.size() < batchSize && userids.hasNext()) {
+			batch.add(userids.next());
+		}
+		return batch.toArray(new String[batch.size()]);
+	}
+
+	/**
+	 * Start generating the token pair values for the
+	 * given users on the given pool.
+	 * @param pool The <code>ForkJoinPool</code>.
+	 * @param seed The <code>String</code> seed.
+	 * @param permissions The <code>String</code>
+	 * granted permissions.
+	 * @param userids The <code>String</code> array of
+	 * user IDs. Or <code>null</code>.
+	 * @return The started <code>BulkGeneration</code>.
+	 * Or <code>null</code> if there are no users.
+	 */
+	private BulkGeneration startBulkGeneration(final ForkJoinPool pool, final String seed, final String permissions, final String[] userids) {
+		if (userids == null) return null;
 		final long currentTime = System.currentTimeMillis();
-		final AbstractRefreshToken refreshToken = this.newRefreshToken(seed, accessTokenValue, currentTime);
-		// Create new access token.
-		final AbstractAccessToken accessToken = this.newAccessToken(accessTokenValue, permissions, userid, refreshToken, currentTime);
-		return new AccessTokenPair(accessToken, refreshToken);
+		final long refreshExpiration = currentTime + this.getRefreshTokenLifetime();
+		final long accessExpiration = currentTime + this.getAccessTokenLifetime();
+		final BulkGeneration generation = new BulkGeneration(seed, permissions, userids, new PendingTokenPair[userids.length], 0, userids.length,
+				refreshExpiration, accessExpiration);
+		pool.execute(generation);
+		return generation;
+	}
+
+	/**
+	 * Generate the values of a new pair of refresh and
+	 * access tokens.
+	 * @param seed The <code>String</code> seed.
+	 * @param permissions The <code>String</code>
+	 * granted permissions.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param refreshExpiration The <code>long</code>
+	 * refresh token expiration in milliseconds.
+	 * @param accessExpiration The <code>long</code>
+	 * access token expiration in milliseconds.
+	 * @return The <code>PendingTokenPair</code>.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the consumer's
+	 * encryption key is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws DecoderException If hex encoding failed.
+	 */
+	private PendingTokenPair newPendingTokenPair(final String seed, final String permissions, final String userid, final long refreshExpiration,
+			final long accessExpiration) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException,
+			BadPaddingException, UnsupportedEncodingException, DecoderException {
+		final String refreshTokenValue = this.nextToken(seed);
+		final String accessTokenValue;
+		if (this.issuesStatelessAccessTokens()) accessTokenValue = this.newStatelessAccessToken(userid, permissions, refreshTokenValue, accessExpiration);
+		else accessTokenValue = this.nextToken(seed);
+		return new PendingTokenPair(refreshTokenValue, refreshExpiration, accessTokenValue, permissions, userid, accessExpiration);
+	}
+
+	/**
+	 * Insert the given batch of refresh and access token
+	 * pairs.
+	 * <p>
+	 * The batch must be inserted atomically. If this
+	 * method fails, none of the pairs may remain valid.
+	 * <p>
+	 * The default implementation inserts each pair with
+	 * <code>insertTokenPair</code>, and invalidates the
+	 * pairs already inserted if an insertion fails.
+	 * Implementations should override this method to
+	 * persist the whole batch in a single batched
+	 * statement or transaction.
+	 * @param pairs The <code>List</code> of
+	 * <code>PendingTokenPair</code> to insert.
+	 * @return The <code>List</code> of the inserted
+	 * <code>AccessTokenPair</code> in the same order.
+	 * @throws SQLException If database access failed.
+	 */
+	protected List<AccessTokenPair> insertTokenPairs(final List<PendingTokenPair> pairs) throws SQLException {
+		final List<AccessTokenPair> inserted = new ArrayList<AccessTokenPair>(pairs.size());
+		try {
+			for (final PendingTokenPair pair : pairs) {
+				inserted.add(this.insertTokenPair(pair.refreshTokenValue, pair.refreshExpiration, pair.accessTokenValue, pair.permissions, pair.userid,
+						pair.accessExpiration));
+			}
+		} catch (final Throwable e) {
+			this.invalidateTokenPairs(inserted, 0, e);
+			throw e;
+		}
+		return inserted;
+	}
+
+	/**
+	 * Retrieve the number of token pairs generated and
+	 * inserted together in bulk issuance.
+	 * <p>
+	 * The default implementation returns 1000.
+	 * @return The <code>int</code> batch size.
+	 */
+	protected int getBulkIssuanceBatchSize() {
+		return 1000;
 	}
 
 	/**
@@ -507,26 +1660,216 @@ public abstract class AbstractConsumer {
 	 */
 	public AccessTokenPair refreshAccessToken(final String consumerSecret, final AbstractRefreshToken refreshToken) throws NoSuchAlgorithmException, NoSuchPaddingException,
 	InvalidKeyException, IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
-		// Verify consumer secret.
-		final boolean secretValid = this.verifySecret(consumerSecret);
-		if (!secretValid) return null;
-		// Verify refresh token.
-		if (refreshToken == null || !refreshToken.isValid()) throw new IllegalArgumentException("Invalid refresh token.");
-		final AbstractAccessToken oldAccessToken = refreshToken.getAssociatedAccessToken();
-		if (oldAccessToken == null || !oldAccessToken.consumerKey.equals(this.key)) throw new IllegalArgumentException("Invalid refresh token.");
-		// Invalidate previous tokens.
-		refreshToken.invalidate();
-		oldAccessToken.invalidate();
+		return AbstractConsumer.await(this.refreshAccessTokenAsync(consumerSecret, refreshToken));
+	}
+
+	/**
+	 * Exchange for a new pair of access and refresh
+	 * tokens using the given refresh token
+	 * asynchronously. The associated access token is
+	 * retrieved with <code>getAssociatedAccessTokenAsync</code>,
+	 * both tokens are invalidated with
+	 * <code>invalidatePairAsync</code>, and the new pair
+	 * is inserted with <code>insertTokenPairAsync</code>,
+	 * without blocking between the steps.
+	 * @param consumerSecret The <code>String</code>
+	 * consumer secret to validate.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>
+	 * to exchange.
+	 * @return The <code>CompletionStage</code> of the new
+	 * <code>AccessTokenPair</code>, or of <code>null</code>
+	 * if the secret is invalid. It completes with
+	 * <code>IllegalArgumentException</code> if the refresh
+	 * token is invalid.
+	 */
+	public CompletionStage<AccessTokenPair> refreshAccessTokenAsync(final String consumerSecret, final AbstractRefreshToken refreshToken) {
+		final FlowEvent event = FlowEvent.start();
+		CompletionStage<AccessTokenPair> stage;
+		try {
+			// Verify consumer secret.
+			final boolean secretValid = this.verifySecret(consumerSecret);
+			if (!secretValid) {
+				stage = CompletableFuture.completedFuture(null);
+			} else {
+				// Verify refresh token.
+				if (refreshToken == null || !refreshToken.isValid()) throw new IllegalArgumentException("Invalid refresh token.");
+				stage = this.getAssociatedAccessTokenAsync(refreshToken).thenCompose(new Function<AbstractAccessToken, CompletionStage<AccessTokenPair>>() {
+					@Override
+					public CompletionStage<AccessTokenPair> apply(final AbstractAccessToken oldAccessToken) {
+						return AbstractConsumer.this.exchangeRefreshToken(refreshToken, oldAccessToken);
+					}
+				});
+			}
+		} catch (final Exception e) {
+			stage = CompletableFuture.failedFuture(e);
+		}
+		return this.endFlow(event, EFlowType.Refresh, stage);
+	}
+
+	/**
+	 * Invalidate the given refresh token and its
+	 * associated access token, then issue a new pair
+	 * with the permissions of the old access token.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>
+	 * to exchange.
+	 * @param oldAccessToken The associated
+	 * <code>AbstractAccessToken</code>. Or <code>null</code>.
+	 * @return The <code>CompletionStage</code> of the new
+	 * <code>AccessTokenPair</code>.
+	 */
+	private CompletionStage<AccessTokenPair> exchangeRefreshToken(final AbstractRefreshToken refreshToken, final AbstractAccessToken oldAccessToken) {
+		if (oldAccessToken == null || !oldAccessToken.consumerKey.equals(this.key)) {
+			return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid refresh token."));
+		}
 		// Use consumer key, old access token and permission as seed.
 		final String seed = this.key+oldAccessToken.permissions;
-		// Generate new access token value.
-		final String newAccessTokenValue = this.randomToken(seed);
-		// Create new refresh token.
-		final long currentTime = System.currentTimeMillis();
-		final AbstractRefreshToken newRefreshToken = this.newRefreshToken(seed, newAccessTokenValue, currentTime);
-		// Create new access token.
-		final AbstractAccessToken newAccessToken = this.newAccessToken(newAccessTokenValue, oldAccessToken.permissions, oldAccessToken.userid, newRefreshToken, currentTime);
-		return new AccessTokenPair(newAccessToken, newRefreshToken);
+		final Executor executor = this.executor;
+		if (executor != null) return this.exchangeRefreshTokenConcurrently(executor, refreshToken, oldAccessToken, seed);
+		// Invalidate previous tokens.
+		final IMetricsSink metrics = this.getMetricsSink();
+		final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+		final CompletionStage<Void> invalidated = this.recordPhase(metrics, EFlowPhase.Persistence, start, this.invalidatePairAsync(refreshToken, oldAccessToken));
+		return invalidated.thenCompose(new Function<Void, CompletionStage<AccessTokenPair>>() {
+			@Override
+			public CompletionStage<AccessTokenPair> apply(final Void ignored) {
+				// Generate new access token and refresh token.
+				try {
+					return AbstractConsumer.this.newTokenPairAsync(seed, oldAccessToken.permissions, oldAccessToken.userid, null);
+				} catch (final Exception e) {
+					return CompletableFuture.failedFuture(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Invalidate the given refresh token and its
+	 * associated access token on the given executor,
+	 * concurrently with issuing the new pair on the
+	 * calling thread. The returned stage completes once
+	 * both steps complete. If the invalidation fails, the
+	 * new pair is not inserted, or is invalidated if it
+	 * already was, and the invalidation failure is
+	 * propagated.
+	 * @param executor The <code>Executor</code>.
+	 * @param refreshToken The <code>AbstractRefreshToken</code>
+	 * to exchange.
+	 * @param oldAccessToken The associated
+	 * <code>AbstractAccessToken</code>.
+	 * @param seed The <code>String</code> seed of the
+	 * new pair.
+	 * @return The <code>CompletionStage</code> of the new
+	 * <code>AccessTokenPair</code>.
+	 */
+	private CompletionStage<AccessTokenPair> exchangeRefreshTokenConcurrently(final Executor executor, final AbstractRefreshToken refreshToken,
+			final AbstractAccessToken oldAccessToken, final String seed) {
+		final IMetricsSink metrics = this.getMetricsSink();
+		final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+		// Invalidate previous tokens concurrently.
+		final CompletableFuture<Void> invalidated = AbstractConsumer.fork(executor, new Callable<CompletionStage<Void>>() {
+			@Override
+			public CompletionStage<Void> call() {
+				return AbstractConsumer.this.invalidatePairAsync(refreshToken, oldAccessToken);
+			}
+		});
+		// Generate new access token and refresh token.
+		CompletionStage<AccessTokenPair> issued;
+		try {
+			issued = this.newTokenPairAsync(seed, oldAccessToken.permissions, oldAccessToken.userid, invalidated);
+		} catch (final Exception e) {
+			issued = CompletableFuture.failedFuture(e);
+		}
+		final CompletableFuture<AccessTokenPair> pair = issued.toCompletableFuture();
+		// Wait for both steps regardless of their outcomes.
+		final CompletionStage<CompletionStage<AccessTokenPair>> joined = CompletableFuture.allOf(pair, invalidated).handle(
+				new BiFunction<Void, Throwable, CompletionStage<AccessTokenPair>>() {
+					@Override
+					public CompletionStage<AccessTokenPair> apply(final Void ignored, final Throwable error) {
+						return AbstractConsumer.this.resolveConcurrentExchange(pair, invalidated);
+					}
+				});
+		return this.recordPhase(metrics, EFlowPhase.Persistence, start, joined.thenCompose(
+				new Function<CompletionStage<AccessTokenPair>, CompletionStage<AccessTokenPair>>() {
+					@Override
+					public CompletionStage<AccessTokenPair> apply(final CompletionStage<AccessTokenPair> result) {
+						return result;
+					}
+				}));
+	}
+
+	/**
+	 * Resolve the result of a concurrent refresh token
+	 * exchange once both of its steps completed.
+	 * @param pair The completed <code>CompletableFuture</code>
+	 * of the new <code>AccessTokenPair</code>.
+	 * @param invalidated The completed <code>CompletableFuture</code>
+	 * of the previous pair invalidation.
+	 * @return The <code>CompletionStage</code> of the new
+	 * <code>AccessTokenPair</code>, which completes with
+	 * the invalidation failure if there is one.
+	 */
+	private CompletionStage<AccessTokenPair> resolveConcurrentExchange(final CompletableFuture<AccessTokenPair> pair, final CompletableFuture<Void> invalidated) {
+		if (!invalidated.isCompletedExceptionally()) return pair;
+		final CompletionStage<AccessTokenPair> failure = invalidated.thenApply(new Function<Void, AccessTokenPair>() {
+			@Override
+			public AccessTokenPair apply(final Void ignored) {
+				return null;
+			}
+		});
+		if (pair.isCompletedExceptionally()) return failure;
+		// Revoke the new pair issued before the invalidation failed,
+		// and propagate the invalidation failure regardless.
+		final AccessTokenPair issued = pair.join();
+		final CompletionStage<Void> revoked = this.invalidatePairAsync(issued.refreshToken, issued.accessToken).handle(new BiFunction<Void, Throwable, Void>() {
+			@Override
+			public Void apply(final Void ignored, final Throwable error) {
+				return null;
+			}
+		});
+		return revoked.thenCompose(new Function<Void, CompletionStage<AccessTokenPair>>() {
+			@Override
+			public CompletionStage<AccessTokenPair> apply(final Void ignored) {
+				return failure;
+			}
+		});
+	}
+
+	/**
+	 * Start the given task on the given executor. The
+	 * task is skipped if the returned future is cancelled
+	 * before the task starts.
+	 * @param <T> The result type.
+	 * @param executor The <code>Executor</code>.
+	 * @param task The <code>Callable</code> starting the
+	 * <code>CompletionStage</code> of the step.
+	 * @return The <code>CompletableFuture</code> of the
+	 * task result.
+	 */
+	private static <T> CompletableFuture<T> fork(final Executor executor, final Callable<CompletionStage<T>> task) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		final Runnable runnable = new Runnable() {
+			@Override
+			public void run() {
+				if (future.isDone()) return;
+				try {
+					task.call().whenComplete(new BiConsumer<T, Throwable>() {
+						@Override
+						public void accept(final T result, final Throwable error) {
+							if (error == null) future.complete(result);
+							else future.completeExceptionally(error);
+						}
+					});
+				} catch (final Throwable e) {
+					future.completeExceptionally(e);
+				}
+			}
+		};
+		try {
+			executor.execute(runnable);
+		} catch (final RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
 	}
 
 	/**
@@ -596,4 +1939,143 @@ public abstract class AbstractConsumer {
 	 * such privilege. <code>false</code> otherwise.
 	 */
 	public abstract boolean hasResourceOwnerCredentialsFlowPrivilege();
+
+	/**
+	 * <code>BulkGeneration</code> defines the fork/join
+	 * task that generates the token pair values for a
+	 * range of users, splitting the range until it is
+	 * within the bulk generation threshold.
+	 *
+	 * @author Yi Wang (Neakor)
+	 * @version 1.0.0
+	 */
+	private class BulkGeneration extends RecursiveAction {
+		/**
+		 * Serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The <code>String</code> seed.
+		 */
+		private final String seed;
+		/**
+		 * The <code>String</code> granted permissions.
+		 */
+		private final String permissions;
+		/**
+		 * The <code>String</code> array of user IDs.
+		 */
+		private final String[] userids;
+		/**
+		 * The <code>PendingTokenPair</code> array of
+		 * generated pairs indexed as the user IDs.
+		 */
+		private final PendingTokenPair[] pairs;
+		/**
+		 * The <code>int</code> inclusive start index.
+		 */
+		private final int from;
+		/**
+		 * The <code>int</code> exclusive end index.
+		 */
+		private final int to;
+		/**
+		 * The <code>long</code> refresh token expiration
+		 * in milliseconds.
+		 */
+		private final long refreshExpiration;
+		/**
+		 * The <code>long</code> access token expiration
+		 * in milliseconds.
+		 */
+		private final long accessExpiration;
+
+		/**
+		 * Constructor of <code>BulkGeneration</code>.
+		 * @param seed The <code>String</code> seed.
+		 * @param permissions The <code>String</code>
+		 * granted permissions.
+		 * @param userids The <code>String</code> array
+		 * of user IDs.
+		 * @param pairs The <code>PendingTokenPair</code>
+		 * array to fill.
+		 * @param from The <code>int</code> inclusive
+		 * start index.
+		 * @param to The <code>int</code> exclusive end
+		 * index.
+		 * @param refreshExpiration The <code>long</code>
+		 * refresh token expiration.
+		 * @param accessExpiration The <code>long</code>
+		 * access token expiration.
+		 */
+		private BulkGeneration(final String seed, final String permissions, final String[] userids, final PendingTokenPair[] pairs, final int from,
+				final int to, final long refreshExpiration, final long accessExpiration) {
+			this.seed = seed;
+			this.permissions = permissions;
+			this.userids = userids;
+			this.pairs = pairs;
+			this.from = from;
+			this.to = to;
+			this.refreshExpiration = refreshExpiration;
+			this.accessExpiration = accessExpiration;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to-this.from > AbstractConsumer.BulkGenerationThreshold) {
+				final int middle = (this.from+this.to) >>> 1;
+				ForkJoinTask.invokeAll(this.split(this.from, middle), this.split(middle, this.to));
+				return;
+			}
+			try {
+				for (int i = this.from; i < this.to; i++) {
+					this.pairs[i] = AbstractConsumer.this.newPendingTokenPair(this.seed, this.permissions, this.userids[i], this.refreshExpiration,
+							this.accessExpiration);
+				}
+			} catch (final Exception e) {
+				throw new CompletionException(e);
+			}
+		}
+
+		/**
+		 * Create the task for the given sub-range.
+		 * @param from The <code>int</code> inclusive
+		 * start index.
+		 * @param to The <code>int</code> exclusive end
+		 * index.
+		 * @return The <code>BulkGeneration</code>.
+		 */
+		private BulkGeneration split(final int from, final int to) {
+			return new BulkGeneration(this.seed, this.permissions, this.userids, this.pairs, from, to, this.refreshExpiration, this.accessExpiration);
+		}
+
+		/**
+		 * Wait for the generation to complete.
+		 * @return The <code>PendingTokenPair</code> array
+		 * of generated pairs.
+		 * @throws NoSuchAlgorithmException If AES is not
+		 * supported.
+		 * @throws NoSuchPaddingException If transformation
+		 * contains a padding that is not available.
+		 * @throws InvalidKeyException If the consumer's
+		 * encryption key is invalid.
+		 * @throws IllegalBlockSizeException If the AES
+		 * encryption algorithm is unable to process the
+		 * input data provided.
+		 * @throws BadPaddingException Should not occur.
+		 * @throws UnsupportedEncodingException If UTF-8
+		 * encoding is not supported.
+		 * @throws SQLException Should not occur.
+		 * @throws DecoderException If hex encoding failed.
+		 */
+		private PendingTokenPair[] awaitPairs() throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+		IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, SQLException, DecoderException {
+			try {
+				this.join();
+			} catch (final CompletionException e) {
+				throw AbstractConsumer.rethrow(AbstractConsumer.unwrap(e));
+			}
+			return this.pairs;
+		}
+	}
 }
@@ -0,0 +1,38 @@
+package hemera.ext.oauth;
+
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.util.StatelessTokenCodec;
+
+import java.sql.SQLException;
+
+/**
+ * <code>StatelessAccessToken</code> defines the access
+ * token decoded from a stateless access token value.
+ * Invalidating the token revokes its value with the
+ * issuing consumer.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+class StatelessAccessToken extends AbstractAccessToken {
+	/**
+	 * The issuing <code>AbstractConsumer</code>.
+	 */
+	private final AbstractConsumer consumer;
+
+	/**
+	 * Constructor of <code>StatelessAccessToken</code>.
+	 * @param consumer The issuing <code>AbstractConsumer</code>.
+	 * @param value The <code>String</code> token value.
+	 * @param claims The decoded <code>Claims</code>.
+	 */
+	StatelessAccessToken(final AbstractConsumer consumer, final String value, final StatelessTokenCodec.Claims claims) {
+		super(value, claims.consumerKey, claims.permissions, claims.userid, claims.expiration, claims.refreshToken);
+		this.consumer = consumer;
+	}
+
+	@Override
+	protected void setExpiration(final long value) throws SQLException {
+		if (value <= System.currentTimeMillis()) this.consumer.revokeAccessToken(this.value);
+	}
+}
@@ -0,0 +1,277 @@
+package hemera.ext.oauth.cache;
+
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.ITokenListener;
+import hemera.ext.oauth.token.TokenEvents;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>AccessTokenCache</code> defines the cache of
+ * resolved access tokens keyed by token value, used by
+ * <code>AbstractOAuthProcessor</code> implementations to
+ * avoid retrieving the access token from storage on
+ * every protected resource request.
+ * <p>
+ * An entry expires no later than the expiration of its
+ * token, and never outlives the configured maximum age,
+ * which bounds the staleness of changes made by other
+ * servers. The cache registers with
+ * <code>TokenEvents</code>, so that an invalidated token
+ * is evicted immediately. The registration only holds
+ * the cache weakly, so that a cache dropped without
+ * being closed is still garbage collected, and its
+ * registration is removed by the next invalidation.
+ * <code>close</code> unregisters the cache immediately.
+ * While a token is loaded, its
+ * entry holds a pending marker, which an invalidation
+ * evicts as well, so that a token invalidated during
+ * its load is not cached. The cache only stores the
+ * resolved token. Privilege checks must still be
+ * performed for every request.
+ * <p>
+ * Once the cache is full, an insertion evicts the
+ * expired entries and then arbitrary entries down to
+ * nine tenths of the capacity, so that the cost of
+ * scanning the entries is shared by the following
+ * insertions.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class AccessTokenCache implements ITokenListener {
+	/**
+	 * The <code>int</code> maximum number of entries.
+	 */
+	private final int capacity;
+	/**
+	 * The <code>long</code> maximum entry age in
+	 * milliseconds.
+	 */
+	private final long maxAge;
+	/**
+	 * The <code>ConcurrentHashMap</code> of token value
+	 * to <code>Entry</code>.
+	 */
+	private final ConcurrentHashMap<String, Entry> entries;
+	/**
+	 * The <code>Registration</code> with
+	 * <code>TokenEvents</code>.
+	 */
+	private final Registration registration;
+
+	/**
+	 * Constructor of <code>AccessTokenCache</code>.
+	 * @param capacity The <code>int</code> maximum number
+	 * of cached tokens.
+	 * @param maxAge The <code>long</code> maximum entry
+	 * age in milliseconds.
+	 */
+	public AccessTokenCache(final int capacity, final long maxAge) {
+		if (capacity <= 0) throw new IllegalArgumentException("Access token cache capacity must be positive.");
+		if (maxAge <= 0) throw new IllegalArgumentException("Access token cache maximum age must be positive.");
+		this.capacity = capacity;
+		this.maxAge = maxAge;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.registration = new Registration(this);
+		TokenEvents.instance.addListener(this.registration);
+	}
+
+	/**
+	 * Retrieve the cached valid access token with given
+	 * value.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>AbstractAccessToken</code>. Or
+	 * <code>null</code> if there is no valid cached
+	 * token.
+	 */
+	public AbstractAccessToken get(final String value) {
+		final Entry entry = this.entries.get(value);
+		if (entry == null || entry.token == null) return null;
+		if (System.currentTimeMillis() >= entry.deadline || !entry.token.isValid()) {
+			this.entries.remove(value, entry);
+			return null;
+		}
+		return entry.token;
+	}
+
+	/**
+	 * Retrieve the valid access token with given value,
+	 * loading it with the given loader if it is not
+	 * cached.
+	 * @param value The <code>String</code> token value.
+	 * @param loader The <code>IAccessTokenLoader</code>
+	 * to load with.
+	 * @return The <code>AbstractAccessToken</code>. Or
+	 * <code>null</code> if there is no such valid token.
+	 * @throws Exception If loading failed.
+	 */
+	public AbstractAccessToken get(final String value, final IAccessTokenLoader loader) throws Exception {
+		final AbstractAccessToken cached = this.get(value);
+		if (cached != null) return cached;
+		// Invalidations evict the pending marker, in which
+		// case the loaded token is not cached.
+		final Entry pending = new Entry(null, Long.MIN_VALUE);
+		this.entries.put(value, pending);
+		final AbstractAccessToken loaded;
+		try {
+			loaded = loader.load(value);
+		} catch (final Exception e) {
+			this.entries.remove(value, pending);
+			throw e;
+		}
+		if (loaded == null || !loaded.isValid()) {
+			this.entries.remove(value, pending);
+			return null;
+		}
+		final Entry entry = this.newEntry(loaded, System.currentTimeMillis());
+		if (entry == null || !this.entries.replace(value, pending, entry)) this.entries.remove(value, pending);
+		return loaded;
+	}
+
+	/**
+	 * Cache the given resolved access token. A token
+	 * invalidated before this method is invoked may be
+	 * cached until its entry expires. Use the loading
+	 * <code>get</code> to guard against that.
+	 * @param token The <code>AbstractAccessToken</code>.
+	 */
+	public void put(final AbstractAccessToken token) {
+		final Entry entry = this.newEntry(token, System.currentTimeMillis());
+		if (entry != null) this.entries.put(token.value, entry);
+	}
+
+	/**
+	 * Create the entry of the given token, trimming the
+	 * cache if it is full.
+	 * @param token The <code>AbstractAccessToken</code>.
+	 * @param now The <code>long</code> current time.
+	 * @return The <code>Entry</code>. Or <code>null</code>
+	 * if the token has expired.
+	 */
+	private Entry newEntry(final AbstractAccessToken token, final long now) {
+		final long expiration = token.getExpiration();
+		if (expiration <= now) return null;
+		if (this.entries.size() >= this.capacity) this.trim(now);
+		final long deadline = (expiration-now < this.maxAge) ? expiration : now+this.maxAge;
+		return new Entry(token, deadline);
+	}
+
+	/**
+	 * Remove expired entries, and if the cache is still
+	 * above nine tenths of its capacity, remove arbitrary
+	 * entries until it is not.
+	 * @param now The <code>long</code> current time.
+	 */
+	private void trim(final long now) {
+		final int target = this.capacity - Math.max(1, this.capacity/10);
+		final Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Entry entry = iterator.next().getValue();
+			if (entry.token != null && entry.deadline <= now) iterator.remove();
+		}
+		final Iterator<String> keys = this.entries.keySet().iterator();
+		while (this.entries.size() > target && keys.hasNext()) {
+			keys.next();
+			keys.remove();
+		}
+	}
+
+	/**
+	 * Evict the token with given value.
+	 * @param value The <code>String</code> token value.
+	 */
+	public void evict(final String value) {
+		this.entries.remove(value);
+	}
+
+	/**
+	 * Evict all the tokens.
+	 */
+	public void clear() {
+		this.entries.clear();
+	}
+
+	/**
+	 * Retrieve the number of cached tokens.
+	 * @return The <code>int</code> size.
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Unregister the cache from token events and evict
+	 * all the tokens.
+	 */
+	public void close() {
+		TokenEvents.instance.removeListener(this.registration);
+		this.entries.clear();
+	}
+
+	@Override
+	public void invalidated(final String value) {
+		this.entries.remove(value);
+	}
+
+	/**
+	 * <code>Registration</code> defines the token listener
+	 * registered for a cache, which holds the cache weakly
+	 * and unregisters itself once the cache is collected.
+	 */
+	private static final class Registration implements ITokenListener {
+		/**
+		 * The <code>WeakReference</code> to the
+		 * <code>AccessTokenCache</code>.
+		 */
+		private final WeakReference<AccessTokenCache> cache;
+
+		/**
+		 * Constructor of <code>Registration</code>.
+		 * @param cache The <code>AccessTokenCache</code>.
+		 */
+		private Registration(final AccessTokenCache cache) {
+			this.cache = new WeakReference<AccessTokenCache>(cache);
+		}
+
+		@Override
+		public void invalidated(final String value) {
+			final AccessTokenCache cache = this.cache.get();
+			if (cache == null) TokenEvents.instance.removeListener(this);
+			else cache.invalidated(value);
+		}
+	}
+
+	/**
+	 * <code>Entry</code> defines the immutable cached
+	 * token with its deadline, or the pending marker of
+	 * a token being loaded.
+	 */
+	private static final class Entry {
+		/**
+		 * The <code>AbstractAccessToken</code>. Or
+		 * <code>null</code> if pending.
+		 */
+		private final AbstractAccessToken token;
+		/**
+		 * The <code>long</code> time in milliseconds
+		 * after which the entry is stale.
+		 */
+		private final long deadline;
+
+		/**
+		 * Constructor of <code>Entry</code>.
+		 * @param token The <code>AbstractAccessToken</code>.
+		 * @param deadline The <code>long</code> deadline.
+		 */
+		private Entry(final AbstractAccessToken token, final long deadline) {
+			this.token = token;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,513 @@
+package hemera.ext.oauth.cache;
+
+import hemera.ext.oauth.AbstractConsumer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>ConsumerCache</code> defines the size-bounded
+ * cache of consumers in front of an <code>IConsumerLoader</code>.
+ * Since the cache itself is a loader, it can transparently
+ * wrap the loader used by the processor consumer retrieval
+ * hooks.
+ * <p>
+ * Entries expire after the configured time-to-live.
+ * Once an entry is older than the refresh-ahead period,
+ * the next access triggers an asynchronous reload while
+ * still returning the current consumer, so that popular
+ * consumers are never reloaded on the request path.
+ * <p>
+ * Keys without a consumer are cached as negative entries
+ * with a separate time-to-live, so that floods of bogus
+ * consumer keys are answered without reaching the loader.
+ * Concurrent misses of the same key share a single load.
+ * <p>
+ * Invalidating a key advances the generation of its
+ * stripe and detaches the in-flight load of the key.
+ * Loads and reloads started before the invalidation
+ * still answer their callers, but do not cache their
+ * result, so that a modified, rotated or deleted
+ * consumer is never cached again from a stale load.
+ * <p>
+ * The cache is split into lock-striped segments, each
+ * evicting with the segmented LRU policy. New entries
+ * enter a probation segment, and are promoted to a
+ * protected segment when accessed again. Eviction takes
+ * entries from the probation segment first, therefore a
+ * scan of one-time keys cannot flush frequently used
+ * consumers.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class ConsumerCache<C extends AbstractConsumer> implements IConsumerLoader<C> {
+	/**
+	 * The <code>int</code> number of stripes.
+	 */
+	private static final int StripeCount = 16;
+	/**
+	 * The <code>IConsumerLoader</code> to load from.
+	 */
+	private final IConsumerLoader<C> loader;
+	/**
+	 * The <code>long</code> entry time-to-live in
+	 * milliseconds.
+	 */
+	private final long ttl;
+	/**
+	 * The <code>long</code> entry age in milliseconds
+	 * after which an access triggers a reload.
+	 */
+	private final long refreshAfter;
+	/**
+	 * The <code>long</code> negative entry time-to-live
+	 * in milliseconds.
+	 */
+	private final long negativeTTL;
+	/**
+	 * The <code>Executor</code> running reloads. Or
+	 * <code>null</code> to disable refresh-ahead.
+	 */
+	private final Executor refresher;
+	/**
+	 * The <code>Stripe</code> array.
+	 */
+	private final Stripe[] stripes;
+	/**
+	 * The <code>ConcurrentHashMap</code> of in-flight
+	 * loads keyed by consumer key.
+	 */
+	private final ConcurrentHashMap<String, FutureTask<C>> loading;
+	/**
+	 * The <code>AtomicLong</code> hit count.
+	 */
+	private final AtomicLong hits;
+	/**
+	 * The <code>AtomicLong</code> miss count.
+	 */
+	private final AtomicLong misses;
+
+	/**
+	 * Constructor of <code>ConsumerCache</code>.
+	 * @param loader The <code>IConsumerLoader</code> to
+	 * load consumers from.
+	 * @param capacity The <code>int</code> maximum number
+	 * of cached entries, including negative entries.
+	 * @param ttl The <code>long</code> entry time-to-live
+	 * in milliseconds.
+	 * @param refreshAfter The <code>long</code> entry age
+	 * in milliseconds after which an access triggers an
+	 * asynchronous reload. This value should be smaller
+	 * than the time-to-live.
+	 * @param negativeTTL The <code>long</code> time-to-live
+	 * of negative entries in milliseconds. Zero disables
+	 * negative caching.
+	 * @param refresher The <code>Executor</code> to run
+	 * reloads on. <code>null</code> disables refresh-ahead.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ConsumerCache(final IConsumerLoader<C> loader, final int capacity, final long ttl, final long refreshAfter, final long negativeTTL,
+			final Executor refresher) {
+		if (loader == null) throw new IllegalArgumentException("Consumer loader must be specified.");
+		if (capacity < ConsumerCache.StripeCount) throw new IllegalArgumentException("Consumer cache capacity must be at least " + ConsumerCache.StripeCount + ".");
+		if (ttl <= 0) throw new IllegalArgumentException("Consumer cache time-to-live must be positive.");
+		this.loader = loader;
+		this.ttl = ttl;
+		this.refreshAfter = refreshAfter;
+		this.negativeTTL = negativeTTL;
+		this.refresher = refresher;
+		this.stripes = new ConsumerCache.Stripe[ConsumerCache.StripeCount];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new Stripe(capacity / ConsumerCache.StripeCount);
+		}
+		this.loading = new ConcurrentHashMap<String, FutureTask<C>>();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+	}
+
+	/**
+	 * Retrieve the consumer with given key, loading it
+	 * if it is not cached or has expired.
+	 * @param key The <code>String</code> consumer key.
+	 * @return The <code>C</code> consumer. Or
+	 * <code>null</code> if there is no such consumer.
+	 * @throws Exception If loading failed.
+	 */
+	@Override
+	public C load(final String key) throws Exception {
+		final long now = System.currentTimeMillis();
+		final Stripe stripe = this.stripeOf(key);
+		final Entry<C> entry = stripe.get(key);
+		if (entry != null && now < entry.expiration) {
+			this.hits.incrementAndGet();
+			if (entry.consumer != null && now >= entry.refreshTime && this.refresher != null && entry.refreshing.compareAndSet(false, true)) {
+				this.refresh(key, entry);
+			}
+			return entry.consumer;
+		}
+		this.misses.incrementAndGet();
+		return this.loadShared(key);
+	}
+
+	/**
+	 * Load the consumer with given key, sharing the load
+	 * with concurrent requests for the same key.
+	 * @param key The <code>String</code> consumer key.
+	 * @return The <code>C</code> consumer. Or
+	 * <code>null</code> if there is no such consumer.
+	 * @throws Exception If loading failed.
+	 */
+	private C loadShared(final String key) throws Exception {
+		final Stripe stripe = this.stripeOf(key);
+		final long generation = stripe.generation;
+		final FutureTask<C> task = new FutureTask<C>(new Callable<C>() {
+			@Override
+			public C call() throws Exception {
+				final C consumer = ConsumerCache.this.loader.load(key);
+				ConsumerCache.this.put(key, consumer, generation);
+				return consumer;
+			}
+		});
+		final FutureTask<C> existing = this.loading.putIfAbsent(key, task);
+		if (existing != null) return ConsumerCache.await(existing);
+		try {
+			task.run();
+			return ConsumerCache.await(task);
+		} finally {
+			this.loading.remove(key, task);
+		}
+	}
+
+	/**
+	 * Wait for the given load to complete.
+	 * @param task The <code>FutureTask</code> to wait.
+	 * @return The <code>C</code> loaded consumer.
+	 * @throws Exception If loading failed.
+	 */
+	private static <C> C await(final FutureTask<C> task) throws Exception {
+		try {
+			return task.get();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception)cause;
+			else throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Reload the given entry asynchronously. The current
+	 * entry is kept if the reload fails.
+	 * @param key The <code>String</code> consumer key.
+	 * @param entry The current <code>Entry</code>.
+	 */
+	private void refresh(final String key, final Entry<C> entry) {
+		final long generation = this.stripeOf(key).generation;
+		try {
+			this.refresher.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final C consumer = ConsumerCache.this.loader.load(key);
+						ConsumerCache.this.put(key, consumer, generation);
+					} catch (final Exception e) {
+						// Serve the current entry until it expires.
+						entry.refreshing.set(false);
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			// Rejected by the executor.
+			entry.refreshing.set(false);
+		}
+	}
+
+	/**
+	 * Cache the given loaded consumer, unless its stripe
+	 * was invalidated since the load started.
+	 * @param key The <code>String</code> consumer key.
+	 * @param consumer The <code>C</code> consumer. Or
+	 * <code>null</code> if there is no such consumer.
+	 * @param generation The <code>long</code> stripe
+	 * generation when the load started.
+	 */
+	private void put(final String key, final C consumer, final long generation) {
+		final long now = System.currentTimeMillis();
+		final Entry<C> entry;
+		if (consumer != null) {
+			entry = new Entry<C>(consumer, now+this.ttl, now+this.refreshAfter);
+		} else if (this.negativeTTL > 0) {
+			entry = new Entry<C>(null, now+this.negativeTTL, Long.MAX_VALUE);
+		} else {
+			entry = null;
+		}
+		this.stripeOf(key).put(key, entry, generation);
+	}
+
+	/**
+	 * Evict the entry of the given key. This should be
+	 * invoked when a consumer is modified, rotated or
+	 * deleted. Loads in progress do not cache their
+	 * result, and later requests start a new load.
+	 * @param key The <code>String</code> consumer key.
+	 */
+	public void invalidate(final String key) {
+		this.stripeOf(key).remove(key);
+		this.loading.remove(key);
+	}
+
+	/**
+	 * Evict all the entries.
+	 */
+	public void invalidateAll() {
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i].clear();
+		}
+		this.loading.clear();
+	}
+
+	/**
+	 * Retrieve the number of cached entries, including
+	 * expired and negative entries not yet evicted.
+	 * @return The <code>int</code> size.
+	 */
+	public int size() {
+		int size = 0;
+		for (int i = 0; i < this.stripes.length; i++) {
+			size += this.stripes[i].size();
+		}
+		return size;
+	}
+
+	/**
+	 * Retrieve the number of lookups answered from the
+	 * cache, including negative entries.
+	 * @return The <code>long</code> hit count.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Retrieve the number of lookups that invoked the
+	 * loader.
+	 * @return The <code>long</code> miss count.
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Retrieve the stripe of the given key.
+	 * @param key The <code>String</code> key.
+	 * @return The <code>Stripe</code>.
+	 */
+	private Stripe stripeOf(final String key) {
+		final int hash = key.hashCode();
+		return this.stripes[(hash ^ (hash >>> 16)) & (ConsumerCache.StripeCount-1)];
+	}
+
+	/**
+	 * <code>Entry</code> defines the immutable cached
+	 * consumer with its timing.
+	 */
+	private static final class Entry<C> {
+		/**
+		 * The <code>C</code> consumer. Or <code>null</code>
+		 * for a negative entry.
+		 */
+		private final C consumer;
+		/**
+		 * The <code>long</code> expiration time in
+		 * milliseconds.
+		 */
+		private final long expiration;
+		/**
+		 * The <code>long</code> time in milliseconds after
+		 * which an access triggers a reload.
+		 */
+		private final long refreshTime;
+		/**
+		 * The <code>AtomicBoolean</code> flag indicating
+		 * a reload is in progress.
+		 */
+		private final AtomicBoolean refreshing;
+
+		/**
+		 * Constructor of <code>Entry</code>.
+		 * @param consumer The <code>C</code> consumer.
+		 * @param expiration The <code>long</code>
+		 * expiration time.
+		 * @param refreshTime The <code>long</code>
+		 * refresh time.
+		 */
+		private Entry(final C consumer, final long expiration, final long refreshTime) {
+			this.consumer = consumer;
+			this.expiration = expiration;
+			this.refreshTime = refreshTime;
+			this.refreshing = new AtomicBoolean();
+		}
+	}
+
+	/**
+	 * <code>Stripe</code> defines a lock protected
+	 * segmented LRU stripe of the cache.
+	 */
+	private final class Stripe {
+		/**
+		 * The <code>int</code> stripe capacity.
+		 */
+		private final int capacity;
+		/**
+		 * The <code>int</code> protected segment capacity.
+		 */
+		private final int protectedCapacity;
+		/**
+		 * The <code>ReentrantLock</code>.
+		 */
+		private final ReentrantLock lock;
+		/**
+		 * The access ordered <code>LinkedHashMap</code>
+		 * of entries accessed once.
+		 */
+		private final LinkedHashMap<String, Entry<C>> probation;
+		/**
+		 * The access ordered <code>LinkedHashMap</code>
+		 * of entries accessed more than once.
+		 */
+		private final LinkedHashMap<String, Entry<C>> protect;
+		/**
+		 * The <code>long</code> generation advanced by
+		 * every invalidation. Written under the lock.
+		 */
+		private volatile long generation;
+
+		/**
+		 * Constructor of <code>Stripe</code>.
+		 * @param capacity The <code>int</code> capacity.
+		 */
+		private Stripe(final int capacity) {
+			this.capacity = capacity;
+			this.protectedCapacity = (capacity * 4) / 5;
+			this.lock = new ReentrantLock();
+			this.probation = new LinkedHashMap<String, Entry<C>>(16, 0.75f, true);
+			this.protect = new LinkedHashMap<String, Entry<C>>(16, 0.75f, true);
+		}
+
+		/**
+		 * Retrieve the entry of the given key, promoting
+		 * it to the protected segment.
+		 * @param key The <code>String</code> key.
+		 * @return The <code>Entry</code>. Or <code>null</code>
+		 * if there is none.
+		 */
+		private Entry<C> get(final String key) {
+			this.lock.lock();
+			try {
+				Entry<C> entry = this.protect.get(key);
+				if (entry != null) return entry;
+				entry = this.probation.remove(key);
+				if (entry == null) return null;
+				this.protect.put(key, entry);
+				// Demote the least recently used protected entry.
+				if (this.protect.size() > this.protectedCapacity) {
+					final Iterator<Map.Entry<String, Entry<C>>> iterator = this.protect.entrySet().iterator();
+					final Map.Entry<String, Entry<C>> eldest = iterator.next();
+					iterator.remove();
+					this.probation.put(eldest.getKey(), eldest.getValue());
+				}
+				return entry;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Insert or replace the entry of the given key,
+		 * unless the stripe was invalidated since the
+		 * given generation.
+		 * @param key The <code>String</code> key.
+		 * @param entry The <code>Entry</code>. Or
+		 * <code>null</code> to remove the current entry.
+		 * @param generation The <code>long</code>
+		 * generation the entry was loaded at.
+		 */
+		private void put(final String key, final Entry<C> entry, final long generation) {
+			this.lock.lock();
+			try {
+				if (this.generation != generation) return;
+				if (entry == null) {
+					this.probation.remove(key);
+					this.protect.remove(key);
+					return;
+				}
+				if (this.protect.containsKey(key)) {
+					this.protect.put(key, entry);
+					return;
+				}
+				this.probation.put(key, entry);
+				while (this.probation.size() + this.protect.size() > this.capacity) {
+					final LinkedHashMap<String, Entry<C>> victims = this.probation.isEmpty() ? this.protect : this.probation;
+					final Iterator<String> iterator = victims.keySet().iterator();
+					iterator.next();
+					iterator.remove();
+				}
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Remove the entry of the given key.
+		 * @param key The <code>String</code> key.
+		 */
+		private void remove(final String key) {
+			this.lock.lock();
+			try {
+				this.generation++;
+				this.probation.remove(key);
+				this.protect.remove(key);
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Remove all the entries.
+		 */
+		private void clear() {
+			this.lock.lock();
+			try {
+				this.generation++;
+				this.probation.clear();
+				this.protect.clear();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Retrieve the number of entries.
+		 * @return The <code>int</code> size.
+		 */
+		private int size() {
+			this.lock.lock();
+			try {
+				return this.probation.size() + this.protect.size();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package hemera.ext.oauth.cache;
+
+import hemera.ext.oauth.token.AbstractAccessToken;
+
+/**
+ * <code>IAccessTokenLoader</code> defines the interface
+ * of a unit that retrieves access tokens by their values
+ * from the token storage.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface IAccessTokenLoader {
+
+	/**
+	 * Retrieve the access token with given value.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>AbstractAccessToken</code>. Or
+	 * <code>null</code> if there is no such token.
+	 * @throws Exception If retrieval failed.
+	 */
+	public AbstractAccessToken load(final String value) throws Exception;
+}
@@ -0,0 +1,23 @@
+package hemera.ext.oauth.cache;
+
+import hemera.ext.oauth.AbstractConsumer;
+
+/**
+ * <code>IConsumerLoader</code> defines the interface of
+ * a unit that retrieves consumers by their keys, which
+ * is typically backed by a database.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface IConsumerLoader<C extends AbstractConsumer> {
+
+	/**
+	 * Retrieve the consumer with given key.
+	 * @param key The <code>String</code> consumer key.
+	 * @return The <code>C</code> consumer. Or
+	 * <code>null</code> if there is no such consumer.
+	 * @throws Exception If retrieval failed.
+	 */
+	public C load(final String key) throws Exception;
+}
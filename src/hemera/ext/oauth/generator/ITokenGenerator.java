@@ -0,0 +1,26 @@
+package hemera.ext.oauth.generator;
+
+/**
+ * <code>ITokenGenerator</code> defines the interface
+ * of a generator that produces the random plain text
+ * chunks, which are encrypted by the consumer to
+ * create token values.
+ * <p>
+ * Implementations must be thread-safe, since a single
+ * generator instance is shared by all the requests of
+ * a consumer.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface ITokenGenerator {
+
+	/**
+	 * Generate a new random plain text chunk based on
+	 * the given seed.
+	 * @param seed The <code>String</code> seed.
+	 * @return The <code>UTF-8</code> encoded plain text
+	 * <code>byte</code> array chunk.
+	 */
+	public byte[] newChunk(final String seed);
+}
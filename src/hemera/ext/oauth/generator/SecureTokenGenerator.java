@@ -0,0 +1,203 @@
+package hemera.ext.oauth.generator;
+
+import java.io.UnsupportedEncodingException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * <code>SecureTokenGenerator</code> defines the default
+ * implementation of <code>ITokenGenerator</code>.
+ * <p>
+ * A generated chunk is 45 characters long. For each of
+ * the first 32 characters of the seed, the generator
+ * randomly decides to either keep the seed character or
+ * replace it with a random hex character. The rest of
+ * the chunk is filled with random hex characters.
+ * <p>
+ * Each thread owns a separate cryptographically strong
+ * random number generator, and draws entropy from it
+ * in bulk, so that concurrent requests never contend
+ * on a shared generator. The chunk is built directly
+ * in a <code>byte</code> array.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum SecureTokenGenerator implements ITokenGenerator {
+	/**
+	 * The singleton instance.
+	 */
+	instance;
+
+	/**
+	 * The <code>int</code> total length of a chunk.
+	 * 45 characters generate a good amount of randomness
+	 * in the result token.
+	 */
+	private static final int ChunkLength = 45;
+	/**
+	 * The <code>int</code> randomize character count.
+	 * This value dictates the number of seed characters
+	 * that may be kept in the chunk.
+	 */
+	private static final int RandomizeCount = 32;
+	/**
+	 * The <code>byte</code> array of lower case hex
+	 * digits.
+	 */
+	private static final byte[] HexDigits = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+	/**
+	 * The <code>ThreadLocal</code> of per-thread
+	 * <code>Entropy</code>.
+	 */
+	private final ThreadLocal<Entropy> entropy = new ThreadLocal<Entropy>() {
+		@Override
+		protected Entropy initialValue() {
+			return new Entropy();
+		}
+	};
+
+	@Override
+	public byte[] newChunk(final String seed) {
+		final Entropy entropy = this.entropy.get();
+		final int seedLength = seed.length();
+		final int randomizeCount = (seedLength>SecureTokenGenerator.RandomizeCount) ? SecureTokenGenerator.RandomizeCount : seedLength;
+		// One random bit per seed character decides if the
+		// character should be replaced.
+		final int replaceMask = entropy.nextInt();
+		// Seed characters outside of ASCII encode into
+		// multiple bytes, which is rare.
+		for (int i = 0; i < randomizeCount; i++) {
+			if (seed.charAt(i) >= 0x80) return this.newEncodedChunk(seed, randomizeCount, replaceMask, entropy);
+		}
+		final byte[] chunk = new byte[SecureTokenGenerator.ChunkLength];
+		for (int i = 0; i < randomizeCount; i++) {
+			final boolean replace = ((replaceMask >>> i) & 1) != 0;
+			if (replace) chunk[i] = SecureTokenGenerator.HexDigits[entropy.nextNibble()];
+			else chunk[i] = (byte)seed.charAt(i);
+		}
+		for (int i = randomizeCount; i < SecureTokenGenerator.ChunkLength; i++) {
+			chunk[i] = SecureTokenGenerator.HexDigits[entropy.nextNibble()];
+		}
+		return chunk;
+	}
+
+	/**
+	 * Generate a new chunk for a seed that contains
+	 * non-ASCII characters by encoding the characters
+	 * as <code>UTF-8</code>.
+	 * @param seed The <code>String</code> seed.
+	 * @param randomizeCount The <code>int</code> number
+	 * of seed characters to randomize.
+	 * @param replaceMask The <code>int</code> random
+	 * bits deciding which characters are replaced.
+	 * @param entropy The thread's <code>Entropy</code>.
+	 * @return The <code>byte</code> array chunk.
+	 */
+	private byte[] newEncodedChunk(final String seed, final int randomizeCount, final int replaceMask, final Entropy entropy) {
+		final char[] chunk = new char[SecureTokenGenerator.ChunkLength];
+		for (int i = 0; i < randomizeCount; i++) {
+			final boolean replace = ((replaceMask >>> i) & 1) != 0;
+			if (replace) chunk[i] = (char)SecureTokenGenerator.HexDigits[entropy.nextNibble()];
+			else chunk[i] = seed.charAt(i);
+		}
+		for (int i = randomizeCount; i < SecureTokenGenerator.ChunkLength; i++) {
+			chunk[i] = (char)SecureTokenGenerator.HexDigits[entropy.nextNibble()];
+		}
+		try {
+			return new String(chunk).getBytes("UTF-8");
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * <code>Entropy</code> defines the per-thread buffer
+	 * of random bytes, refilled in bulk from a thread
+	 * owned <code>SecureRandom</code>.
+	 * <p>
+	 * This class is not thread-safe.
+	 */
+	private static final class Entropy {
+		/**
+		 * The <code>int</code> number of random bytes
+		 * drawn at once.
+		 */
+		private static final int BufferSize = 512;
+		/**
+		 * The <code>SecureRandom</code> owned by the
+		 * thread.
+		 */
+		private final SecureRandom random;
+		/**
+		 * The <code>byte</code> array random buffer.
+		 */
+		private final byte[] buffer;
+		/**
+		 * The <code>int</code> index of the next unused
+		 * nibble in the buffer.
+		 */
+		private int nibbleIndex;
+
+		/**
+		 * Constructor of <code>Entropy</code>.
+		 */
+		private Entropy() {
+			this.random = Entropy.newRandom();
+			this.buffer = new byte[Entropy.BufferSize];
+			this.random.nextBytes(this.buffer);
+			this.nibbleIndex = 0;
+		}
+
+		/**
+		 * Create a new secure random number generator.
+		 * The <code>SHA1PRNG</code> algorithm is preferred,
+		 * since it is implemented purely in Java without a
+		 * process wide lock, unlike the native generator.
+		 * @return The <code>SecureRandom</code> instance.
+		 */
+		private static SecureRandom newRandom() {
+			try {
+				final SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+				// Force self-seeding from the system entropy source.
+				random.nextBytes(new byte[1]);
+				return random;
+			} catch (final NoSuchAlgorithmException e) {
+				return new SecureRandom();
+			}
+		}
+
+		/**
+		 * Retrieve the next random 4-bit value.
+		 * @return The <code>int</code> value between
+		 * 0 and 15, inclusive.
+		 */
+		private int nextNibble() {
+			if (this.nibbleIndex >= (Entropy.BufferSize << 1)) this.refill();
+			final int value = this.buffer[this.nibbleIndex >>> 1];
+			final int nibble = ((this.nibbleIndex & 1) == 0) ? (value & 0x0F) : ((value >>> 4) & 0x0F);
+			this.nibbleIndex++;
+			return nibble;
+		}
+
+		/**
+		 * Retrieve the next random 32-bit value.
+		 * @return The <code>int</code> value.
+		 */
+		private int nextInt() {
+			int value = 0;
+			for (int i = 0; i < 8; i++) {
+				value = (value << 4) | this.nextNibble();
+			}
+			return value;
+		}
+
+		/**
+		 * Refill the buffer with new random bytes.
+		 */
+		private void refill() {
+			this.random.nextBytes(this.buffer);
+			this.nibbleIndex = 0;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package hemera.ext.oauth.generator;
+
+import hemera.ext.oauth.AbstractConsumer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>TokenPool</code> defines the bounded pool of
+ * pre-generated token values of a single consumer.
+ * A background refiller thread keeps the pool full,
+ * so that token issuance only needs to dequeue an
+ * already encrypted value. Once the pool depth drops
+ * below the low-water mark, the refiller is woken up
+ * immediately. Otherwise it periodically tops up the
+ * pool.
+ * <p>
+ * The pool is backed by a lock-free bounded ring
+ * buffer, which supports multiple concurrent producers
+ * and consumers. Pooled values are generated using the
+ * consumer key as seed, since the request specific seed
+ * is not known ahead of time.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class TokenPool {
+	/**
+	 * The <code>long</code> maximum time in nanoseconds
+	 * the refiller sleeps before checking the pool.
+	 */
+	private static final long RefillInterval = 100000000L;
+	/**
+	 * The <code>AbstractConsumer</code> owning the pool.
+	 */
+	private final AbstractConsumer consumer;
+	/**
+	 * The <code>int</code> low-water mark.
+	 */
+	private final int lowWaterMark;
+	/**
+	 * The <code>int</code> mask used to map positions
+	 * to buffer indices.
+	 */
+	private final int mask;
+	/**
+	 * The <code>AtomicReferenceArray</code> of pooled
+	 * <code>String</code> token values.
+	 */
+	private final AtomicReferenceArray<String> values;
+	/**
+	 * The <code>AtomicLongArray</code> of per-slot
+	 * sequence numbers that order the producers and
+	 * consumers of each slot.
+	 */
+	private final AtomicLongArray sequences;
+	/**
+	 * The <code>AtomicLong</code> position of the next
+	 * slot to dequeue from.
+	 */
+	private final AtomicLong head;
+	/**
+	 * The <code>AtomicLong</code> position of the next
+	 * slot to enqueue to.
+	 */
+	private final AtomicLong tail;
+	/**
+	 * The <code>AtomicLong</code> number of dequeue
+	 * attempts that found the pool empty.
+	 */
+	private final AtomicLong misses;
+	/**
+	 * The <code>AtomicLong</code> number of values
+	 * served from the pool.
+	 */
+	private final AtomicLong hits;
+	/**
+	 * The <code>AtomicLong</code> number of generation
+	 * failures in the refiller.
+	 */
+	private final AtomicLong failures;
+	/**
+	 * The refiller <code>Thread</code>.
+	 */
+	private final Thread refiller;
+	/**
+	 * The <code>boolean</code> running flag.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Constructor of <code>TokenPool</code>.
+	 * @param consumer The <code>AbstractConsumer</code>
+	 * to generate tokens for.
+	 * @param capacity The <code>int</code> capacity of
+	 * the pool. This value is rounded up to the next
+	 * power of two.
+	 * @param lowWaterMark The <code>int</code> depth
+	 * below which the refiller is woken up.
+	 */
+	public TokenPool(final AbstractConsumer consumer, final int capacity, final int lowWaterMark) {
+		if (consumer == null) throw new IllegalArgumentException("Consumer must be specified.");
+		if (capacity <= 0 || capacity > (1 << 30)) throw new IllegalArgumentException("Invalid token pool capacity.");
+		if (lowWaterMark < 0 || lowWaterMark > capacity) throw new IllegalArgumentException("Invalid token pool low-water mark.");
+		this.consumer = consumer;
+		this.lowWaterMark = lowWaterMark;
+		int size = 1;
+		while (size < capacity) size <<= 1;
+		this.mask = size - 1;
+		this.values = new AtomicReferenceArray<String>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+		this.head = new AtomicLong();
+		this.tail = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.hits = new AtomicLong();
+		this.failures = new AtomicLong();
+		this.refiller = new Thread(new Refiller(), "TokenPool-" + consumer.key);
+		this.refiller.setDaemon(true);
+	}
+
+	/**
+	 * Start the background refiller.
+	 */
+	public void start() {
+		this.running = true;
+		this.refiller.start();
+	}
+
+	/**
+	 * Stop the background refiller. Values remaining
+	 * in the pool can still be dequeued.
+	 */
+	public void shutdown() {
+		this.running = false;
+		LockSupport.unpark(this.refiller);
+	}
+
+	/**
+	 * Dequeue a pre-generated token value. If the pool
+	 * is empty, the miss is recorded and the caller is
+	 * expected to generate a value inline.
+	 * @return The <code>String</code> token value.
+	 * <code>null</code> if the pool is empty.
+	 */
+	public String poll() {
+		final String value = this.dequeue();
+		if (value == null) {
+			this.misses.incrementAndGet();
+			LockSupport.unpark(this.refiller);
+			return null;
+		}
+		this.hits.incrementAndGet();
+		if (this.getDepth() < this.lowWaterMark) {
+			LockSupport.unpark(this.refiller);
+		}
+		return value;
+	}
+
+	/**
+	 * Enqueue the given value.
+	 * @param value The <code>String</code> token value.
+	 * @return <code>true</code> if the value is pooled.
+	 * <code>false</code> if the pool is full.
+	 */
+	private boolean enqueue(final String value) {
+		while (true) {
+			final long position = this.tail.get();
+			final int index = (int)(position & this.mask);
+			final long difference = this.sequences.get(index) - position;
+			if (difference == 0) {
+				if (this.tail.compareAndSet(position, position+1)) {
+					this.values.set(index, value);
+					this.sequences.set(index, position+1);
+					return true;
+				}
+			} else if (difference < 0) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Dequeue the next value.
+	 * @return The <code>String</code> token value.
+	 * <code>null</code> if the pool is empty.
+	 */
+	private String dequeue() {
+		while (true) {
+			final long position = this.head.get();
+			final int index = (int)(position & this.mask);
+			final long difference = this.sequences.get(index) - (position+1);
+			if (difference == 0) {
+				if (this.head.compareAndSet(position, position+1)) {
+					final String value = this.values.getAndSet(index, null);
+					this.sequences.set(index, position+this.mask+1);
+					return value;
+				}
+			} else if (difference < 0) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the current number of pooled values.
+	 * @return The <code>int</code> approximate depth.
+	 */
+	public int getDepth() {
+		final long depth = this.tail.get() - this.head.get();
+		if (depth < 0) return 0;
+		else if (depth > this.getCapacity()) return this.getCapacity();
+		else return (int)depth;
+	}
+
+	/**
+	 * Retrieve the capacity of the pool.
+	 * @return The <code>int</code> capacity.
+	 */
+	public int getCapacity() {
+		return this.mask+1;
+	}
+
+	/**
+	 * Retrieve the number of dequeue attempts that
+	 * found the pool empty and fell back to inline
+	 * generation.
+	 * @return The <code>long</code> miss count.
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * Retrieve the number of values served from the
+	 * pool.
+	 * @return The <code>long</code> hit count.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * Retrieve the number of times the refiller failed
+	 * to generate a value.
+	 * @return The <code>long</code> failure count.
+	 */
+	public long getFailureCount() {
+		return this.failures.get();
+	}
+
+	/**
+	 * <code>Refiller</code> defines the background task
+	 * that keeps the pool full.
+	 */
+	private final class Refiller implements Runnable {
+
+		@Override
+		public void run() {
+			final TokenPool pool = TokenPool.this;
+			while (pool.running) {
+				try {
+					while (pool.running && pool.getDepth() < pool.getCapacity()) {
+						final String value = pool.consumer.randomToken(pool.consumer.key);
+						if (!pool.enqueue(value)) break;
+					}
+				} catch (final Exception e) {
+					// Issuance falls back to inline generation, which
+					// reports the failure to the requester.
+					pool.failures.incrementAndGet();
+				}
+				LockSupport.parkNanos(pool, TokenPool.RefillInterval);
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package hemera.ext.oauth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <code>CryptoEvent</code> defines the Java Flight
+ * Recorder event of a cipher operation performed by a
+ * consumer, which records its duration, consumer key,
+ * operation and outcome.
+ * <p>
+ * Unless a recording enables the <code>hemera.oauth.Crypto</code>
+ * event, <code>begin</code> and <code>end</code> do
+ * nothing and the instance does not escape, so the
+ * event costs nothing when disabled.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+@Name("hemera.oauth.Crypto")
+@Label("OAuth Crypto")
+@Description("Consumer AES encryption and decryption")
+@Category({"Hemera", "OAuth"})
+@StackTrace(false)
+public class CryptoEvent extends Event {
+	/**
+	 * The <code>String</code> consumer key.
+	 */
+	@Label("Consumer Key")
+	public String consumerKey;
+	/**
+	 * The <code>String</code> name of the
+	 * <code>ECryptoOperation</code>.
+	 */
+	@Label("Operation")
+	public String operation;
+	/**
+	 * The <code>String</code> name of the
+	 * <code>EFlowOutcome</code>.
+	 */
+	@Label("Outcome")
+	public String outcome;
+
+	/**
+	 * Create and begin the event of an operation.
+	 * @return The begun <code>CryptoEvent</code>.
+	 */
+	public static CryptoEvent start() {
+		final CryptoEvent event = new CryptoEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End the operation and commit the event if it is
+	 * enabled and exceeds the configured threshold.
+	 * @param consumerKey The <code>String</code>
+	 * consumer key.
+	 * @param operation The <code>ECryptoOperation</code>.
+	 * @param outcome The <code>EFlowOutcome</code>.
+	 */
+	public void end(final String consumerKey, final ECryptoOperation operation, final EFlowOutcome outcome) {
+		this.end();
+		if (!this.shouldCommit()) return;
+		this.consumerKey = consumerKey;
+		this.operation = operation.name();
+		this.outcome = outcome.name();
+		this.commit();
+	}
+}
@@ -0,0 +1,30 @@
+package hemera.ext.oauth.metrics;
+
+/**
+ * <code>ECryptoOperation</code> defines the enumeration
+ * of the cipher operations reported by
+ * <code>CryptoEvent</code>.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum ECryptoOperation {
+	/**
+	 * The AES encryption of a token chunk.
+	 */
+	Encrypt,
+	/**
+	 * The AES decryption of a secret or token.
+	 */
+	Decrypt,
+	/**
+	 * The authenticated encryption of stateless access
+	 * token claims.
+	 */
+	StatelessEncode,
+	/**
+	 * The authenticated decryption of stateless access
+	 * token claims.
+	 */
+	StatelessDecode
+}
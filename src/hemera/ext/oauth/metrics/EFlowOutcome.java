@@ -0,0 +1,25 @@
+package hemera.ext.oauth.metrics;
+
+/**
+ * <code>EFlowOutcome</code> defines the enumeration of
+ * the outcomes of operations reported by
+ * <code>FlowEvent</code> and <code>CryptoEvent</code>.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum EFlowOutcome {
+	/**
+	 * The operation completed successfully.
+	 */
+	Succeeded,
+	/**
+	 * The operation rejected invalid input, such as an
+	 * invalid secret, token or ciphertext.
+	 */
+	Rejected,
+	/**
+	 * The operation failed with an error.
+	 */
+	Failed
+}
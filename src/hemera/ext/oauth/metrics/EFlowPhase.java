@@ -0,0 +1,39 @@
+package hemera.ext.oauth.metrics;
+
+/**
+ * <code>EFlowPhase</code> defines the enumeration of the
+ * timed phases of processing an OAuth flow request.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum EFlowPhase {
+	/**
+	 * The retrieval of the consumer making the request.
+	 */
+	ConsumerLookup,
+	/**
+	 * The verification of the request redirect URL.
+	 */
+	RedirectVerification,
+	/**
+	 * The operation specific processing, which includes
+	 * the secret verification, token generation and
+	 * persistence phases.
+	 */
+	Operation,
+	/**
+	 * The verification of the consumer secret, which
+	 * decrypts the secret unless it has been verified.
+	 */
+	SecretVerification,
+	/**
+	 * The generation of a token value.
+	 */
+	TokenGeneration,
+	/**
+	 * The insertion or invalidation of tokens in the
+	 * storage.
+	 */
+	Persistence
+}
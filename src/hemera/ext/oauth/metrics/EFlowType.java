@@ -0,0 +1,36 @@
+package hemera.ext.oauth.metrics;
+
+/**
+ * <code>EFlowType</code> defines the enumeration of the
+ * consumer operations reported by <code>FlowEvent</code>.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum EFlowType {
+	/**
+	 * The issuance of an authorization token.
+	 */
+	Authorization,
+	/**
+	 * The exchange of an authorization token for a pair
+	 * of access and refresh tokens.
+	 */
+	AuthorizationExchange,
+	/**
+	 * The issuance of a pair of access and refresh
+	 * tokens for resource owner credentials.
+	 */
+	CredentialsExchange,
+	/**
+	 * The exchange of a refresh token for a new pair of
+	 * access and refresh tokens.
+	 */
+	Refresh,
+	/**
+	 * The verification of an access token, either of a
+	 * protected resource request or of a stateless access
+	 * token by its consumer.
+	 */
+	Verification
+}
@@ -0,0 +1,75 @@
+package hemera.ext.oauth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <code>FlowEvent</code> defines the Java Flight Recorder
+ * event of a consumer operation, which records its
+ * duration, consumer key, flow type and outcome, so that
+ * slow flows can be correlated with garbage collection
+ * and lock contention in the same recording.
+ * <p>
+ * Unless a recording enables the <code>hemera.oauth.Flow</code>
+ * event, <code>begin</code> and <code>end</code> do
+ * nothing and the instance does not escape, so the
+ * event costs nothing when disabled.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+@Name("hemera.oauth.Flow")
+@Label("OAuth Flow")
+@Description("Consumer token issuance, exchange and verification")
+@Category({"Hemera", "OAuth"})
+@StackTrace(false)
+public class FlowEvent extends Event {
+	/**
+	 * The <code>String</code> consumer key.
+	 */
+	@Label("Consumer Key")
+	public String consumerKey;
+	/**
+	 * The <code>String</code> name of the
+	 * <code>EFlowType</code>.
+	 */
+	@Label("Flow")
+	public String flow;
+	/**
+	 * The <code>String</code> name of the
+	 * <code>EFlowOutcome</code>.
+	 */
+	@Label("Outcome")
+	public String outcome;
+
+	/**
+	 * Create and begin the event of an operation.
+	 * @return The begun <code>FlowEvent</code>.
+	 */
+	public static FlowEvent start() {
+		final FlowEvent event = new FlowEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End the operation and commit the event if it is
+	 * enabled and exceeds the configured threshold.
+	 * @param consumerKey The <code>String</code>
+	 * consumer key.
+	 * @param flow The <code>EFlowType</code>.
+	 * @param outcome The <code>EFlowOutcome</code>.
+	 */
+	public void end(final String consumerKey, final EFlowType flow, final EFlowOutcome outcome) {
+		this.end();
+		if (!this.shouldCommit()) return;
+		this.consumerKey = consumerKey;
+		this.flow = flow.name();
+		this.outcome = outcome.name();
+		this.commit();
+	}
+}
@@ -0,0 +1,191 @@
+package hemera.ext.oauth.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * <code>HistogramMetricsSink</code> defines the sink that
+ * records the durations of each phase in a log-linear
+ * histogram. Durations are counted in buckets of eight
+ * sub-buckets per power of two nanoseconds, so reported
+ * percentiles are within about twelve percent.
+ * <p>
+ * Every bucket is a <code>LongAdder</code>, so threads
+ * recording concurrently update separate cells instead
+ * of contending on a shared counter. Reads sum the cells
+ * and are not atomic with respect to concurrent records.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class HistogramMetricsSink implements IMetricsSink {
+	/**
+	 * The <code>int</code> number of exactly counted
+	 * durations.
+	 */
+	private static final int LinearCount = 16;
+	/**
+	 * The <code>int</code> number of sub-buckets per
+	 * power of two.
+	 */
+	private static final int SubBucketCount = 8;
+	/**
+	 * The <code>int</code> number of buckets, which
+	 * covers all non-negative <code>long</code> values.
+	 */
+	private static final int BucketCount = 488;
+	/**
+	 * The <code>LongBinaryOperator</code> selecting the
+	 * maximum value.
+	 */
+	private static final LongBinaryOperator Max = new LongBinaryOperator() {
+		@Override
+		public long applyAsLong(final long left, final long right) {
+			return Math.max(left, right);
+		}
+	};
+
+	/**
+	 * The <code>LongAdder</code> bucket counts indexed
+	 * by phase ordinal and bucket.
+	 */
+	private final LongAdder[][] counts;
+	/**
+	 * The <code>LongAdder</code> array of duration sums
+	 * indexed by phase ordinal.
+	 */
+	private final LongAdder[] sums;
+	/**
+	 * The <code>LongAccumulator</code> array of maximum
+	 * durations indexed by phase ordinal.
+	 */
+	private final LongAccumulator[] maxes;
+
+	/**
+	 * Constructor of <code>HistogramMetricsSink</code>.
+	 */
+	public HistogramMetricsSink() {
+		final int phaseCount = EFlowPhase.values().length;
+		this.counts = new LongAdder[phaseCount][HistogramMetricsSink.BucketCount];
+		this.sums = new LongAdder[phaseCount];
+		this.maxes = new LongAccumulator[phaseCount];
+		for (int i = 0; i < phaseCount; i++) {
+			for (int j = 0; j < HistogramMetricsSink.BucketCount; j++) {
+				this.counts[i][j] = new LongAdder();
+			}
+			this.sums[i] = new LongAdder();
+			this.maxes[i] = new LongAccumulator(HistogramMetricsSink.Max, 0);
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void record(final EFlowPhase phase, final long duration) {
+		final long clamped = (duration < 0) ? 0 : duration;
+		final int ordinal = phase.ordinal();
+		this.counts[ordinal][HistogramMetricsSink.indexOf(clamped)].increment();
+		this.sums[ordinal].add(clamped);
+		this.maxes[ordinal].accumulate(clamped);
+	}
+
+	/**
+	 * Retrieve the number of recorded durations of the
+	 * given phase.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @return The <code>long</code> count.
+	 */
+	public long getCount(final EFlowPhase phase) {
+		final LongAdder[] counts = this.counts[phase.ordinal()];
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			count += counts[i].sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Retrieve the mean duration of the given phase.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @return The <code>double</code> mean in
+	 * nanoseconds.
+	 */
+	public double getMean(final EFlowPhase phase) {
+		final long count = this.getCount(phase);
+		return (count == 0) ? 0 : (double)this.sums[phase.ordinal()].sum()/count;
+	}
+
+	/**
+	 * Retrieve the maximum duration of the given phase.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @return The <code>long</code> maximum in
+	 * nanoseconds.
+	 */
+	public long getMax(final EFlowPhase phase) {
+		return this.maxes[phase.ordinal()].get();
+	}
+
+	/**
+	 * Retrieve the duration of the given phase at the
+	 * given percentile, which is the highest duration
+	 * of the bucket that contains it.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @param percentile The <code>double</code>
+	 * percentile between <code>0</code> and
+	 * <code>100</code>.
+	 * @return The <code>long</code> duration in
+	 * nanoseconds.
+	 */
+	public long getValueAtPercentile(final EFlowPhase phase, final double percentile) {
+		final LongAdder[] adders = this.counts[phase.ordinal()];
+		final long[] counts = new long[adders.length];
+		long total = 0;
+		for (int i = 0; i < adders.length; i++) {
+			counts[i] = adders[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) return 0;
+		final long target = Math.max(1, (long)Math.ceil(total * percentile / 100.0));
+		final long max = this.getMax(phase);
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= target) return Math.min(HistogramMetricsSink.highestValueOf(i), max);
+		}
+		return max;
+	}
+
+	/**
+	 * Retrieve the bucket index of the given duration.
+	 * @param value The <code>long</code> non-negative
+	 * duration.
+	 * @return The <code>int</code> index.
+	 */
+	private static int indexOf(final long value) {
+		if (value < HistogramMetricsSink.LinearCount) return (int)value;
+		// Keep the 4 most significant bits.
+		final int shift = 60 - Long.numberOfLeadingZeros(value);
+		final int sub = (int)(value >>> shift) - HistogramMetricsSink.SubBucketCount;
+		return HistogramMetricsSink.LinearCount + (shift-1)*HistogramMetricsSink.SubBucketCount + sub;
+	}
+
+	/**
+	 * Retrieve the highest duration counted at the
+	 * given bucket index.
+	 * @param index The <code>int</code> index.
+	 * @return The <code>long</code> duration.
+	 */
+	private static long highestValueOf(final int index) {
+		if (index < HistogramMetricsSink.LinearCount) return index;
+		final int offset = index - HistogramMetricsSink.LinearCount;
+		final int shift = offset/HistogramMetricsSink.SubBucketCount + 1;
+		final long sub = offset%HistogramMetricsSink.SubBucketCount + HistogramMetricsSink.SubBucketCount;
+		return ((sub+1) << shift) - 1;
+	}
+}
@@ -0,0 +1,29 @@
+package hemera.ext.oauth.metrics;
+
+/**
+ * <code>IMetricsSink</code> defines the interface of a
+ * sink that receives the durations of flow phases.
+ * Implementations are invoked on the request threads,
+ * so they must be thread-safe and should not block.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface IMetricsSink {
+
+	/**
+	 * Check if this sink records durations. Callers do
+	 * not read the clock for a disabled sink.
+	 * @return <code>true</code> if durations should be
+	 * recorded. <code>false</code> otherwise.
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Record the duration of the given phase.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @param duration The <code>long</code> duration in
+	 * nanoseconds.
+	 */
+	public void record(final EFlowPhase phase, final long duration);
+}
@@ -0,0 +1,23 @@
+package hemera.ext.oauth.metrics;
+
+/**
+ * <code>NoopMetricsSink</code> defines the default sink
+ * that is disabled and discards all durations.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum NoopMetricsSink implements IMetricsSink {
+	/**
+	 * The singleton instance.
+	 */
+	instance;
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public void record(final EFlowPhase phase, final long duration) {}
+}
@@ -2,13 +2,25 @@ package hemera.ext.oauth.processor;
 
 import hemera.core.structure.AbstractProcessor;
 import hemera.core.structure.interfaces.IResponse;
+import hemera.ext.oauth.AbstractConsumer;
+import hemera.ext.oauth.cache.IConsumerLoader;
+import hemera.ext.oauth.metrics.EFlowOutcome;
+import hemera.ext.oauth.metrics.EFlowType;
+import hemera.ext.oauth.metrics.FlowEvent;
 import hemera.ext.oauth.request.AbstractOAuthRequest;
 import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.util.StatelessTokenCodec;
 
 /**
  * <code>AbstractOAuthProcessor</code> defines the base
  * abstraction for processors of resources, which are
  * protected by OAuth access.
+ * <p>
+ * The verification of every request is reported as a
+ * <code>FlowEvent</code> of the verification flow, with
+ * the consumer key of the verified token. The event of
+ * a stateless access token verified by its consumer is
+ * nested within the event of the request.
  *
  * @author Yi Wang (Neakor)
  * @version 1.0.1
@@ -18,7 +30,15 @@ public abstract class AbstractOAuthProcessor<RQ extends AbstractOAuthRequest, RS
 	@Override
 	protected RS processRequest(final RQ request) throws Exception {
 		// Verify request.
-		final AbstractAccessToken accessToken = this.verifyRequest(request);
+		final FlowEvent event = FlowEvent.start();
+		EFlowOutcome outcome = EFlowOutcome.Failed;
+		AbstractAccessToken accessToken = null;
+		try {
+			accessToken = this.verifyRequest(request);
+			outcome = (accessToken == null) ? EFlowOutcome.Rejected : EFlowOutcome.Succeeded;
+		} finally {
+			event.end((accessToken == null) ? null : accessToken.consumerKey, EFlowType.Verification, outcome);
+		}
 		if (accessToken == null) return this.unauthorizedResponse(request);
 		// Process request.
 		return this.processAuthorizedRequest(accessToken, request);
@@ -29,12 +49,44 @@ public abstract class AbstractOAuthProcessor<RQ extends AbstractOAuthRequest, RS
 	 * access token is valid and has sufficient privilege
 	 * to access the resource and perform the processor
 	 * operation.
+	 * <p>
+	 * Implementations may resolve the access token through
+	 * an <code>AccessTokenCache</code> to avoid retrieving
+	 * it from storage on every request. The privilege check
+	 * must still be performed on the resolved token.
 	 * @param request The <code>RQ</code> request.
 	 * @return The <code>AbstractAccessToken</code> if
 	 * the request is valid. <code>null</code> otherwise.
 	 * @throws Exception If verification failed.
 	 */
 	protected abstract AbstractAccessToken verifyRequest(final RQ request) throws Exception;
+
+	/**
+	 * Verify the given stateless access token value
+	 * without accessing the token storage. The issuing
+	 * consumer is located by the consumer key carried
+	 * in the value.
+	 * <p>
+	 * Implementations may use this method in
+	 * <code>verifyRequest</code> when their consumers
+	 * issue stateless access tokens. The privilege check
+	 * must still be performed on the returned token.
+	 * @param value The <code>String</code> access token
+	 * value.
+	 * @param loader The <code>IConsumerLoader</code> to
+	 * retrieve the issuing consumer with.
+	 * @return The <code>AbstractAccessToken</code>. Or
+	 * <code>null</code> if the value is not a valid
+	 * stateless access token.
+	 * @throws Exception If any processing failed.
+	 */
+	protected AbstractAccessToken verifyStatelessAccessToken(final String value, final IConsumerLoader<? extends AbstractConsumer> loader) throws Exception {
+		final String consumerKey = StatelessTokenCodec.consumerKeyOf(value);
+		if (consumerKey == null) return null;
+		final AbstractConsumer consumer = loader.load(consumerKey);
+		if (consumer == null) return null;
+		return consumer.verifyStatelessAccessToken(value);
+	}
 	
 	/**
 	 * Create an unauthorized response for the given
@@ -0,0 +1,59 @@
+package hemera.ext.oauth.processor.flow;
+
+import hemera.core.structure.enumn.EHttpStatus;
+import hemera.ext.oauth.AbstractConsumer;
+import hemera.ext.oauth.request.flow.FlowAccessPostRequest;
+import hemera.ext.oauth.response.flow.FlowAccessResponse;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AccessTokenPair;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * <code>AbstractAsyncFlowAccessPostProcessor</code>
+ * defines the processor abstraction for the OAuth
+ * resource access token action post operation that
+ * retrieves the authorization token and persists the
+ * new token pair asynchronously.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public abstract class AbstractAsyncFlowAccessPostProcessor<RQ extends FlowAccessPostRequest, C extends AbstractConsumer> extends
+AbstractAsyncFlowAccessProcessor<RQ, C> {
+
+	@Override
+	protected CompletionStage<FlowAccessResponse> processRequestAsync(final RQ request, final C consumer) {
+		// Retrieve authorization token.
+		final CompletionStage<AbstractAuthorizationToken> tokenStage = this.getAuthorizationTokenAsync(request.authorizationToken);
+		// Generate new access token and refresh token.
+		final CompletionStage<AccessTokenPair> pairStage = tokenStage.thenCompose(new Function<AbstractAuthorizationToken, CompletionStage<AccessTokenPair>>() {
+			@Override
+			public CompletionStage<AccessTokenPair> apply(final AbstractAuthorizationToken authorizationToken) {
+				if (authorizationToken == null) return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid authorization token."));
+				return consumer.newAccessTokenAsync(request.consumerSecret, authorizationToken);
+			}
+		});
+		return pairStage.thenApply(new Function<AccessTokenPair, FlowAccessResponse>() {
+			@Override
+			public FlowAccessResponse apply(final AccessTokenPair tokenPair) {
+				// Invalid secret or authorization token.
+				if (tokenPair == null) return new FlowAccessResponse(EHttpStatus.C400_BadRequest, "Invalid consumer secret or invalid authorization token.");
+				// Success.
+				else return new FlowAccessResponse(tokenPair);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve the authorization token with given token
+	 * value asynchronously.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AbstractAuthorizationToken</code>, or of
+	 * <code>null</code> if there isn't a match.
+	 */
+	protected abstract CompletionStage<AbstractAuthorizationToken> getAuthorizationTokenAsync(final String value);
+}
@@ -0,0 +1,168 @@
+package hemera.ext.oauth.processor.flow;
+
+import hemera.ext.oauth.AbstractConsumer;
+import hemera.ext.oauth.metrics.EFlowPhase;
+import hemera.ext.oauth.metrics.IMetricsSink;
+import hemera.ext.oauth.request.flow.AbstractFlowAccessRequest;
+import hemera.ext.oauth.response.flow.FlowAccessResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * <code>AbstractAsyncFlowAccessProcessor</code> defines
+ * the processor abstraction for OAuth resource access
+ * token action operations that complete asynchronously,
+ * for servers running on non-blocking drivers.
+ * <p>
+ * <code>processAsync</code> retrieves the consumer and
+ * performs the operation without blocking the calling
+ * thread, and completes with the exception response if
+ * any step failed. The blocking <code>processRequest</code>
+ * waits for the asynchronous operation, so the processor
+ * can still be registered with a blocking server.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+abstract class AbstractAsyncFlowAccessProcessor<RQ extends AbstractFlowAccessRequest, C extends AbstractConsumer>
+extends AbstractFlowAccessProcessor<RQ, C> {
+
+	/**
+	 * Process the given request asynchronously.
+	 * @param request The <code>RQ</code> request.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>FlowAccessResponse</code>, which always
+	 * completes normally.
+	 */
+	public CompletionStage<FlowAccessResponse> processAsync(final RQ request) {
+		final IMetricsSink metrics = this.getMetricsSink();
+		final long start = (metrics.isEnabled()) ? System.nanoTime() : 0;
+		CompletionStage<C> consumerStage;
+		try {
+			consumerStage = this.getConsumerAsync(request);
+		} catch (final Exception e) {
+			consumerStage = CompletableFuture.failedFuture(e);
+		}
+		final CompletionStage<FlowAccessResponse> stage = consumerStage.thenCompose(new Function<C, CompletionStage<FlowAccessResponse>>() {
+			@Override
+			public CompletionStage<FlowAccessResponse> apply(final C consumer) {
+				return AbstractAsyncFlowAccessProcessor.this.processConsumer(request, consumer, metrics, start);
+			}
+		});
+		return stage.exceptionally(new Function<Throwable, FlowAccessResponse>() {
+			@Override
+			public FlowAccessResponse apply(final Throwable error) {
+				final Throwable cause = AbstractAsyncFlowAccessProcessor.unwrap(error);
+				final Exception exception = (cause instanceof Exception) ? (Exception)cause : new CompletionException(cause);
+				return AbstractAsyncFlowAccessProcessor.this.exceptionResponse(request, exception);
+			}
+		});
+	}
+
+	/**
+	 * Verify the redirect URL of the given request and
+	 * perform the operation for the retrieved consumer.
+	 * @param request The <code>RQ</code> request.
+	 * @param consumer The <code>C</code> consumer. Or
+	 * <code>null</code> if there is no such consumer.
+	 * @param metrics The <code>IMetricsSink</code>.
+	 * @param lookupStart The <code>long</code> start of
+	 * the consumer lookup in nanoseconds.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>FlowAccessResponse</code>.
+	 */
+	private CompletionStage<FlowAccessResponse> processConsumer(final RQ request, final C consumer, final IMetricsSink metrics, final long lookupStart) {
+		final boolean timed = metrics.isEnabled();
+		long start = (timed) ? System.nanoTime() : 0;
+		if (timed) metrics.record(EFlowPhase.ConsumerLookup, start-lookupStart);
+		if (consumer == null) {
+			return CompletableFuture.completedFuture(this.noSuchConsumerResponse(request));
+		}
+		// Verify redirect URL.
+		final boolean redirectValid = consumer.verifyRedirectURL(request.redirectURL);
+		if (timed) {
+			final long end = System.nanoTime();
+			metrics.record(EFlowPhase.RedirectVerification, end-start);
+			start = end;
+		}
+		if (!redirectValid) {
+			return CompletableFuture.completedFuture(this.invalidRedirectURLResponse(request));
+		}
+		// Perform specific operation, recording its phase
+		// even if it fails.
+		if (!timed) return this.processRequestAsync(request, consumer);
+		final long operationStart = start;
+		final CompletionStage<FlowAccessResponse> stage;
+		try {
+			stage = this.processRequestAsync(request, consumer);
+		} catch (final Throwable e) {
+			metrics.record(EFlowPhase.Operation, System.nanoTime()-operationStart);
+			throw e;
+		}
+		return stage.whenComplete(new BiConsumer<FlowAccessResponse, Throwable>() {
+			@Override
+			public void accept(final FlowAccessResponse response, final Throwable error) {
+				metrics.record(EFlowPhase.Operation, System.nanoTime()-operationStart);
+			}
+		});
+	}
+
+	@Override
+	protected FlowAccessResponse processRequest(final RQ request, final C consumer) throws Exception {
+		try {
+			return this.processRequestAsync(request, consumer).toCompletableFuture().join();
+		} catch (final CompletionException e) {
+			final Throwable cause = AbstractAsyncFlowAccessProcessor.unwrap(e);
+			if (cause instanceof Exception) throw (Exception)cause;
+			else if (cause instanceof Error) throw (Error)cause;
+			else throw e;
+		}
+	}
+
+	/**
+	 * Retrieve the cause of the given failure of a
+	 * stage, without the <code>CompletionException</code>
+	 * wrappers.
+	 * @param error The <code>Throwable</code> failure.
+	 * @return The <code>Throwable</code> cause.
+	 */
+	private static Throwable unwrap(final Throwable error) {
+		Throwable cause = error;
+		while (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+
+	/**
+	 * Retrieve the consumer making the request
+	 * asynchronously.
+	 * <p>
+	 * The default implementation invokes the blocking
+	 * <code>getConsumer</code> on the calling thread.
+	 * Implementations backed by non-blocking drivers
+	 * should override this method.
+	 * @param request The <code>RQ</code> request.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>C</code> consumer, or of <code>null</code>
+	 * if there is no such consumer.
+	 * @throws Exception If any processing failed.
+	 */
+	protected CompletionStage<C> getConsumerAsync(final RQ request) throws Exception {
+		return CompletableFuture.completedFuture(this.getConsumer(request));
+	}
+
+	/**
+	 * Perform the operation specific logic to process
+	 * the request for the given consumer asynchronously.
+	 * @param request The <code>RQ</code> request.
+	 * @param consumer The <code>C</code> consumer.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>FlowAccessResponse</code>.
+	 */
+	protected abstract CompletionStage<FlowAccessResponse> processRequestAsync(final RQ request, final C consumer);
+}
@@ -0,0 +1,59 @@
+package hemera.ext.oauth.processor.flow;
+
+import hemera.core.structure.enumn.EHttpStatus;
+import hemera.ext.oauth.AbstractConsumer;
+import hemera.ext.oauth.request.flow.FlowAccessPutRequest;
+import hemera.ext.oauth.response.flow.FlowAccessResponse;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.token.AccessTokenPair;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * <code>AbstractAsyncFlowAccessPutProcessor</code>
+ * defines the processor abstraction for the OAuth
+ * resource access token action put operation that
+ * retrieves the refresh token and exchanges it for a
+ * new token pair asynchronously.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public abstract class AbstractAsyncFlowAccessPutProcessor<RQ extends FlowAccessPutRequest, C extends AbstractConsumer> extends
+AbstractAsyncFlowAccessProcessor<RQ, C> {
+
+	@Override
+	protected CompletionStage<FlowAccessResponse> processRequestAsync(final RQ request, final C consumer) {
+		// Retrieve refresh token.
+		final CompletionStage<AbstractRefreshToken> tokenStage = this.getRefreshTokenAsync(request.refreshToken);
+		// Generate new access token and refresh token.
+		final CompletionStage<AccessTokenPair> pairStage = tokenStage.thenCompose(new Function<AbstractRefreshToken, CompletionStage<AccessTokenPair>>() {
+			@Override
+			public CompletionStage<AccessTokenPair> apply(final AbstractRefreshToken refreshToken) {
+				if (refreshToken == null) return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid refresh token."));
+				return consumer.refreshAccessTokenAsync(request.consumerSecret, refreshToken);
+			}
+		});
+		return pairStage.thenApply(new Function<AccessTokenPair, FlowAccessResponse>() {
+			@Override
+			public FlowAccessResponse apply(final AccessTokenPair tokenPair) {
+				// Invalid secret or refresh token.
+				if (tokenPair == null) return new FlowAccessResponse(EHttpStatus.C400_BadRequest, "Invalid consumer secret or invalid refresh token.");
+				// Success.
+				else return new FlowAccessResponse(tokenPair);
+			}
+		});
+	}
+
+	/**
+	 * Retrieve the refresh token with given token value
+	 * asynchronously.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>CompletionStage</code> of the
+	 * <code>AbstractRefreshToken</code>, or of
+	 * <code>null</code> if there isn't a match.
+	 */
+	protected abstract CompletionStage<AbstractRefreshToken> getRefreshTokenAsync(final String value);
+}
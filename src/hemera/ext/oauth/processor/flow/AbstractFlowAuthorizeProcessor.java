@@ -70,6 +70,10 @@ abstract class AbstractFlowAuthorizeProcessor<RQ extends FlowAuthorizePostReques
 	
 	/**
 	 * Retrieve the authorization server consumer.
+	 * <p>
+	 * Implementations backed by a database may retrieve
+	 * the consumer through a <code>ConsumerCache</code>
+	 * wrapping their loader.
 	 * @param key The <code>String</code> authorization
 	 * server consumer key.
 	 * @return The <code>Consumer</code> instance. Or
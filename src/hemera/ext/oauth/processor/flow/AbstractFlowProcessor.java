@@ -3,6 +3,9 @@ package hemera.ext.oauth.processor.flow;
 import hemera.core.structure.AbstractProcessor;
 import hemera.core.structure.AbstractResponse;
 import hemera.ext.oauth.AbstractConsumer;
+import hemera.ext.oauth.metrics.EFlowPhase;
+import hemera.ext.oauth.metrics.IMetricsSink;
+import hemera.ext.oauth.metrics.NoopMetricsSink;
 import hemera.ext.oauth.request.flow.AbstractFlowRequest;
 
 /**
@@ -18,22 +21,65 @@ extends AbstractProcessor<RQ, RS> {
 
 	@Override
 	protected RS processRequest(final RQ request) throws Exception {
+		final IMetricsSink metrics = this.getMetricsSink();
+		final boolean timed = metrics.isEnabled();
+		long start = (timed) ? System.nanoTime() : 0;
 		// Retrieve consumer.
 		final C consumer = this.getConsumer(request);
+		if (timed) start = this.record(metrics, EFlowPhase.ConsumerLookup, start);
 		if (consumer == null) {
 			return this.noSuchConsumerResponse(request);
 		}
 		// Verify redirect URL.
 		final boolean redirectValid = consumer.verifyRedirectURL(request.redirectURL);
+		if (timed) start = this.record(metrics, EFlowPhase.RedirectVerification, start);
 		if (!redirectValid) {
 			return this.invalidRedirectURLResponse(request);
 		}
-		// Perform specific operation.
-		return this.processRequest(request, consumer);
+		// Perform specific operation, recording its phase
+		// even if it fails.
+		try {
+			return this.processRequest(request, consumer);
+		} finally {
+			if (timed) this.record(metrics, EFlowPhase.Operation, start);
+		}
+	}
+
+	/**
+	 * Record the duration of the given phase ending now.
+	 * @param metrics The <code>IMetricsSink</code>.
+	 * @param phase The <code>EFlowPhase</code>.
+	 * @param start The <code>long</code> start of the
+	 * phase in nanoseconds.
+	 * @return The <code>long</code> end of the phase in
+	 * nanoseconds.
+	 */
+	private long record(final IMetricsSink metrics, final EFlowPhase phase, final long start) {
+		final long end = System.nanoTime();
+		metrics.record(phase, end-start);
+		return end;
+	}
+
+	/**
+	 * Retrieve the sink that receives the durations of
+	 * the consumer lookup, redirect verification and
+	 * operation phases of this processor. Consumers
+	 * record their own phases through their sink.
+	 * <p>
+	 * The default implementation returns the disabled
+	 * <code>NoopMetricsSink</code>, so no phase is timed.
+	 * @return The <code>IMetricsSink</code>.
+	 */
+	protected IMetricsSink getMetricsSink() {
+		return NoopMetricsSink.instance;
 	}
 	
 	/**
 	 * Retrieve the consumer making the request.
+	 * <p>
+	 * Implementations backed by a database may retrieve
+	 * the consumer through a <code>ConsumerCache</code>
+	 * wrapping their loader.
 	 * @param request The <code>RQ</code> request.
 	 * @return The <code>C</code> consumer instance.
 	 * <code>null</code> if there is no such consumer.
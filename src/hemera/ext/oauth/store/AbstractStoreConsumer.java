@@ -0,0 +1,83 @@
+package hemera.ext.oauth.store;
+
+import hemera.ext.oauth.AbstractConsumer;
+import hemera.ext.oauth.generator.ITokenGenerator;
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+
+import java.sql.SQLException;
+
+/**
+ * <code>AbstractStoreConsumer</code> defines the
+ * abstraction of a consumer that persists its tokens
+ * in an <code>ITokenStore</code>. Implementations only
+ * need to provide the token lifetimes and the consumer
+ * privileges.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public abstract class AbstractStoreConsumer extends AbstractConsumer {
+	/**
+	 * The <code>ITokenStore</code> persisting tokens.
+	 */
+	protected final ITokenStore store;
+
+	/**
+	 * Constructor of <code>AbstractStoreConsumer</code>.
+	 * @param key The <code>String</code> consumer key.
+	 * @param domain The <code>String</code> consumer
+	 * domain.
+	 * @param encryptionKey The <code>String</code>
+	 * consumer encryption key.
+	 * @param store The <code>ITokenStore</code> to
+	 * persist tokens in.
+	 */
+	protected AbstractStoreConsumer(final String key, final String domain, final String encryptionKey, final ITokenStore store) {
+		super(key, domain, encryptionKey);
+		if (store == null) throw new IllegalArgumentException("Token store must be specified.");
+		this.store = store;
+	}
+
+	/**
+	 * Constructor of <code>AbstractStoreConsumer</code>.
+	 * @param key The <code>String</code> consumer key.
+	 * @param domain The <code>String</code> consumer
+	 * domain.
+	 * @param encryptionKey The <code>String</code>
+	 * consumer encryption key.
+	 * @param generator The <code>ITokenGenerator</code>
+	 * used to generate token chunks.
+	 * @param store The <code>ITokenStore</code> to
+	 * persist tokens in.
+	 */
+	protected AbstractStoreConsumer(final String key, final String domain, final String encryptionKey, final ITokenGenerator generator,
+			final ITokenStore store) {
+		super(key, domain, encryptionKey, generator);
+		if (store == null) throw new IllegalArgumentException("Token store must be specified.");
+		this.store = store;
+	}
+
+	@Override
+	protected AbstractAuthorizationToken insertAuthorizationToken(final String value, final String permissions, final String userid,
+			final long expiration) throws SQLException {
+		return this.store.insertAuthorizationToken(value, this.key, permissions, userid, expiration);
+	}
+
+	@Override
+	protected AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException {
+		return this.store.insertRefreshToken(value, accessTokenValue, expiration);
+	}
+
+	@Override
+	protected AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String permissions,
+			final String userid, final long expiration) throws SQLException {
+		return this.store.insertAccessToken(value, refreshToken, this.key, permissions, userid, expiration);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getValidAuthorizationToken(final String permissions, final String userid) throws SQLException {
+		return this.store.getValidAuthorizationToken(this.key, permissions, userid);
+	}
+}
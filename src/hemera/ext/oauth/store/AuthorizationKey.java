@@ -0,0 +1,80 @@
+package hemera.ext.oauth.store;
+
+/**
+ * <code>AuthorizationKey</code> defines the immutable
+ * composite key of consumer key, permissions and user
+ * ID, which identifies the authorization tokens that
+ * <code>getValidAuthorizationToken</code> looks up.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class AuthorizationKey {
+	/**
+	 * The <code>String</code> consumer key.
+	 */
+	public final String consumerKey;
+	/**
+	 * The <code>String</code> permissions.
+	 */
+	public final String permissions;
+	/**
+	 * The <code>String</code> user ID.
+	 */
+	public final String userid;
+	/**
+	 * The <code>int</code> cached hash code.
+	 */
+	private final int hash;
+
+	/**
+	 * Constructor of <code>AuthorizationKey</code>.
+	 * @param consumerKey The <code>String</code>
+	 * consumer key.
+	 * @param permissions The <code>String</code>
+	 * permissions.
+	 * @param userid The <code>String</code> user ID.
+	 */
+	public AuthorizationKey(final String consumerKey, final String permissions, final String userid) {
+		this.consumerKey = consumerKey;
+		this.permissions = permissions;
+		this.userid = userid;
+		int hash = AuthorizationKey.hash(consumerKey);
+		hash = (31 * hash) + AuthorizationKey.hash(permissions);
+		this.hash = (31 * hash) + AuthorizationKey.hash(userid);
+	}
+
+	/**
+	 * Retrieve the hash code of the given value.
+	 * @param value The <code>String</code> value.
+	 * @return The <code>int</code> hash code.
+	 */
+	private static int hash(final String value) {
+		return (value == null) ? 0 : value.hashCode();
+	}
+
+	/**
+	 * Check if the given values are equal.
+	 * @param a The <code>String</code> value.
+	 * @param b The <code>String</code> value.
+	 * @return <code>true</code> if the values are equal.
+	 * <code>false</code> otherwise.
+	 */
+	private static boolean equal(final String a, final String b) {
+		return (a == null) ? (b == null) : a.equals(b);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		if (this == object) return true;
+		if (!(object instanceof AuthorizationKey)) return false;
+		final AuthorizationKey key = (AuthorizationKey)object;
+		return this.hash == key.hash && AuthorizationKey.equal(this.userid, key.userid) &&
+				AuthorizationKey.equal(this.consumerKey, key.consumerKey) && AuthorizationKey.equal(this.permissions, key.permissions);
+	}
+}
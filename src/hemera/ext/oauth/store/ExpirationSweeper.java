@@ -0,0 +1,414 @@
+package hemera.ext.oauth.store;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>ExpirationSweeper</code> defines the background
+ * evictor of expired tokens from an <code>ITokenStore</code>.
+ * Tokens are scheduled with the time after which they
+ * can be removed, and removed shortly after that time
+ * without ever scanning the store.
+ * <p>
+ * Scheduled tokens are indexed by a hierarchical timing
+ * wheel with <code>64</code> slots per level. The lowest
+ * level covers <code>64</code> ticks with one slot per
+ * tick, and each higher level covers <code>64</code>
+ * times the range of the level below. When the wheel
+ * advances into a new slot of a higher level, its tokens
+ * are cascaded into the lower levels. Scheduling and
+ * evicting a token are therefore constant time, and each
+ * token is cascaded at most once per level. Tokens that
+ * expire beyond the range of the wheel are parked in the
+ * highest level and re-scheduled when they cascade.
+ * <p>
+ * Scheduling is lock-free. Scheduled tokens are queued
+ * and inserted into the wheel by the sweeper thread,
+ * which exclusively owns the wheel. A token is never
+ * evicted before its scheduled time. The delay between
+ * the scheduled time and the actual eviction is reported
+ * as the sweep lag.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class ExpirationSweeper {
+	/**
+	 * The <code>int</code> number of bits of the slot
+	 * index of a level.
+	 */
+	private static final int SlotBits = 6;
+	/**
+	 * The <code>int</code> number of slots per level.
+	 */
+	private static final int SlotCount = 1 << ExpirationSweeper.SlotBits;
+	/**
+	 * The <code>int</code> slot index mask.
+	 */
+	private static final int SlotMask = ExpirationSweeper.SlotCount - 1;
+	/**
+	 * The <code>int</code> number of levels.
+	 */
+	private static final int LevelCount = 4;
+	/**
+	 * The <code>long</code> number of ticks covered by
+	 * all the levels.
+	 */
+	private static final long Range = 1L << (ExpirationSweeper.SlotBits * ExpirationSweeper.LevelCount);
+	/**
+	 * The <code>long</code> length of the eviction rate
+	 * measurement window in milliseconds.
+	 */
+	private static final long RateWindow = 1000;
+	/**
+	 * The <code>ITokenStore</code> to evict from.
+	 */
+	private final ITokenStore store;
+	/**
+	 * The <code>long</code> tick duration in milliseconds.
+	 */
+	private final long tickDuration;
+	/**
+	 * The <code>long</code> time in milliseconds of tick
+	 * zero.
+	 */
+	private final long origin;
+	/**
+	 * The two-dimensional <code>Entry</code> array of
+	 * slot list heads indexed by level and slot. Only
+	 * accessed by the sweeper thread.
+	 */
+	private final Entry[][] wheel;
+	/**
+	 * The <code>ConcurrentLinkedQueue</code> of scheduled
+	 * <code>Entry</code> not inserted into the wheel yet.
+	 */
+	private final ConcurrentLinkedQueue<Entry> pending;
+	/**
+	 * The <code>AtomicLong</code> number of scheduled
+	 * tokens not processed yet.
+	 */
+	private final AtomicLong scheduled;
+	/**
+	 * The <code>AtomicLong</code> number of evicted
+	 * tokens.
+	 */
+	private final AtomicLong evictions;
+	/**
+	 * The <code>AtomicLong</code> number of failed
+	 * evictions.
+	 */
+	private final AtomicLong failures;
+	/**
+	 * The sweeper <code>Thread</code>.
+	 */
+	private final Thread sweeper;
+	/**
+	 * The <code>long</code> last processed tick. Only
+	 * accessed by the sweeper thread.
+	 */
+	private long currentTick;
+	/**
+	 * The <code>long</code> maximum sweep lag in
+	 * milliseconds of the last sweep.
+	 */
+	private volatile long sweepLag;
+	/**
+	 * The <code>long</code> maximum sweep lag in
+	 * milliseconds since the sweeper started.
+	 */
+	private volatile long maxSweepLag;
+	/**
+	 * The <code>double</code> number of evictions per
+	 * second in the last measurement window.
+	 */
+	private volatile double evictionRate;
+	/**
+	 * The <code>boolean</code> running flag.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Constructor of <code>ExpirationSweeper</code>.
+	 * @param store The <code>ITokenStore</code> to
+	 * evict expired tokens from.
+	 * @param tickDuration The <code>long</code> tick
+	 * duration in milliseconds, which is the eviction
+	 * granularity.
+	 */
+	public ExpirationSweeper(final ITokenStore store, final long tickDuration) {
+		if (store == null) throw new IllegalArgumentException("Token store must be specified.");
+		if (tickDuration <= 0) throw new IllegalArgumentException("Tick duration must be positive.");
+		this.store = store;
+		this.tickDuration = tickDuration;
+		this.origin = System.currentTimeMillis();
+		this.wheel = new Entry[ExpirationSweeper.LevelCount][ExpirationSweeper.SlotCount];
+		this.pending = new ConcurrentLinkedQueue<Entry>();
+		this.scheduled = new AtomicLong();
+		this.evictions = new AtomicLong();
+		this.failures = new AtomicLong();
+		this.sweeper = new Thread(new Sweeper(), "ExpirationSweeper");
+		this.sweeper.setDaemon(true);
+	}
+
+	/**
+	 * Start the background sweeper.
+	 */
+	public void start() {
+		this.running = true;
+		this.sweeper.start();
+	}
+
+	/**
+	 * Stop the background sweeper. Scheduled tokens
+	 * are no longer evicted.
+	 */
+	public void shutdown() {
+		this.running = false;
+		LockSupport.unpark(this.sweeper);
+	}
+
+	/**
+	 * Schedule the token with given value for eviction
+	 * at the given time. A token may be scheduled more
+	 * than once, in which case it is evicted at the
+	 * earliest time.
+	 * @param value The <code>String</code> token value.
+	 * @param deadline The <code>long</code> time in
+	 * milliseconds after which the token is evicted.
+	 */
+	public void schedule(final String value, final long deadline) {
+		this.pending.add(new Entry(value, deadline));
+		this.scheduled.incrementAndGet();
+	}
+
+	/**
+	 * Retrieve the number of scheduled tokens that have
+	 * not been evicted yet.
+	 * @return The <code>long</code> scheduled count.
+	 */
+	public long getScheduledCount() {
+		return this.scheduled.get();
+	}
+
+	/**
+	 * Retrieve the number of evicted tokens.
+	 * @return The <code>long</code> eviction count.
+	 */
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * Retrieve the number of evictions that failed
+	 * with a storage error.
+	 * @return The <code>long</code> failure count.
+	 */
+	public long getFailureCount() {
+		return this.failures.get();
+	}
+
+	/**
+	 * Retrieve the eviction rate measured over the last
+	 * second.
+	 * @return The <code>double</code> evictions per
+	 * second.
+	 */
+	public double getEvictionRate() {
+		return this.evictionRate;
+	}
+
+	/**
+	 * Retrieve the largest delay between the scheduled
+	 * time and the eviction of a token in the last sweep.
+	 * @return The <code>long</code> lag in milliseconds.
+	 */
+	public long getSweepLag() {
+		return this.sweepLag;
+	}
+
+	/**
+	 * Retrieve the largest delay between the scheduled
+	 * time and the eviction of a token since the sweeper
+	 * started.
+	 * @return The <code>long</code> lag in milliseconds.
+	 */
+	public long getMaxSweepLag() {
+		return this.maxSweepLag;
+	}
+
+	/**
+	 * Retrieve the first tick at or after the given
+	 * time, so that a token is never evicted early.
+	 * @param time The <code>long</code> time in
+	 * milliseconds.
+	 * @return The <code>long</code> tick.
+	 */
+	private long tickOf(final long time) {
+		if (time <= this.origin) return 0;
+		final long elapsed = time - this.origin;
+		return (elapsed / this.tickDuration) + ((elapsed % this.tickDuration == 0) ? 0 : 1);
+	}
+
+	/**
+	 * Insert the given entry into the wheel, or into the
+	 * given list of due entries if its tick has passed.
+	 * @param entry The <code>Entry</code> to insert.
+	 * @param due The <code>Entry</code> head of the due
+	 * list.
+	 * @return The <code>Entry</code> new head of the due
+	 * list.
+	 */
+	private Entry insert(final Entry entry, final Entry due) {
+		final long tick = this.tickOf(entry.deadline);
+		final long delta = tick - this.currentTick;
+		if (delta <= 0) {
+			entry.next = due;
+			return entry;
+		}
+		// Park entries beyond the range in the highest level.
+		final long slotTick = (delta < ExpirationSweeper.Range) ? tick : this.currentTick + ExpirationSweeper.Range - 1;
+		int level = 0;
+		while ((slotTick - this.currentTick) >= (1L << (ExpirationSweeper.SlotBits * (level+1)))) level++;
+		final int slot = (int)(slotTick >>> (ExpirationSweeper.SlotBits * level)) & ExpirationSweeper.SlotMask;
+		entry.next = this.wheel[level][slot];
+		this.wheel[level][slot] = entry;
+		return due;
+	}
+
+	/**
+	 * Advance the wheel by one tick.
+	 * @param due The <code>Entry</code> head of the due
+	 * list.
+	 * @return The <code>Entry</code> new head of the due
+	 * list.
+	 */
+	private Entry advance(Entry due) {
+		final long tick = ++this.currentTick;
+		// Cascade higher levels whose slot starts at this tick.
+		for (int level = ExpirationSweeper.LevelCount-1; level > 0; level--) {
+			final long span = 1L << (ExpirationSweeper.SlotBits * level);
+			if ((tick & (span-1)) != 0) continue;
+			final int slot = (int)(tick >>> (ExpirationSweeper.SlotBits * level)) & ExpirationSweeper.SlotMask;
+			Entry entry = this.wheel[level][slot];
+			this.wheel[level][slot] = null;
+			while (entry != null) {
+				final Entry next = entry.next;
+				due = this.insert(entry, due);
+				entry = next;
+			}
+		}
+		// Entries in the current lowest level slot are due.
+		final int slot = (int)tick & ExpirationSweeper.SlotMask;
+		Entry entry = this.wheel[0][slot];
+		this.wheel[0][slot] = null;
+		while (entry != null) {
+			final Entry next = entry.next;
+			entry.next = due;
+			due = entry;
+			entry = next;
+		}
+		return due;
+	}
+
+	/**
+	 * Evict the given list of due entries.
+	 * @param due The <code>Entry</code> head of the due
+	 * list.
+	 * @param now The <code>long</code> current time.
+	 * @return The <code>long</code> number of evicted
+	 * tokens.
+	 */
+	private long evict(Entry due, final long now) {
+		long count = 0;
+		long lag = 0;
+		while (due != null) {
+			this.scheduled.decrementAndGet();
+			try {
+				if (this.store.remove(due.value)) {
+					count++;
+					if (now - due.deadline > lag) lag = now - due.deadline;
+				}
+			} catch (final Exception e) {
+				this.failures.incrementAndGet();
+			}
+			due = due.next;
+		}
+		this.evictions.addAndGet(count);
+		this.sweepLag = lag;
+		if (lag > this.maxSweepLag) this.maxSweepLag = lag;
+		return count;
+	}
+
+	/**
+	 * <code>Sweeper</code> defines the background task
+	 * that advances the wheel and evicts due tokens.
+	 */
+	private final class Sweeper implements Runnable {
+
+		@Override
+		public void run() {
+			final ExpirationSweeper sweeper = ExpirationSweeper.this;
+			long windowStart = System.currentTimeMillis();
+			long windowEvictions = 0;
+			while (sweeper.running) {
+				final long now = System.currentTimeMillis();
+				// Process every elapsed tick, catching up after pauses.
+				final long target = (now - sweeper.origin) / sweeper.tickDuration;
+				Entry due = null;
+				Entry entry;
+				while ((entry = sweeper.pending.poll()) != null) {
+					due = sweeper.insert(entry, due);
+				}
+				while (sweeper.currentTick < target) {
+					due = sweeper.advance(due);
+				}
+				windowEvictions += sweeper.evict(due, now);
+				if (now - windowStart >= ExpirationSweeper.RateWindow) {
+					sweeper.evictionRate = (windowEvictions * 1000.0) / (now - windowStart);
+					windowStart = now;
+					windowEvictions = 0;
+				}
+				final long nextTick = sweeper.origin + ((target+1) * sweeper.tickDuration);
+				final long sleep = nextTick - System.currentTimeMillis();
+				if (sleep > 0) LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleep));
+			}
+		}
+	}
+
+	/**
+	 * <code>Entry</code> defines a scheduled token that
+	 * is linked into a slot list of the wheel.
+	 */
+	private static final class Entry {
+		/**
+		 * The <code>String</code> token value.
+		 */
+		private final String value;
+		/**
+		 * The <code>long</code> time in milliseconds
+		 * after which the token is evicted.
+		 */
+		private final long deadline;
+		/**
+		 * The next <code>Entry</code> in the same list.
+		 */
+		private Entry next;
+
+		/**
+		 * Constructor of <code>Entry</code>.
+		 * @param value The <code>String</code> token
+		 * value.
+		 * @param deadline The <code>long</code> eviction
+		 * time in milliseconds.
+		 */
+		private Entry(final String value, final long deadline) {
+			this.value = value;
+			this.deadline = deadline;
+		}
+	}
+}
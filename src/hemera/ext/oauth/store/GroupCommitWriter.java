@@ -0,0 +1,403 @@
+package hemera.ext.oauth.store;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * <code>GroupCommitWriter</code> defines the write-behind
+ * adapter that groups the token writes of concurrent
+ * requests into batched JDBC statements committed in a
+ * single transaction. Consumer persistence hooks, such
+ * as <code>insertAccessToken</code>, and token expiration
+ * updates can execute their statements through the
+ * writer instead of committing individually.
+ * <code>JdbcTokenStore</code> does so for the consumers
+ * extending <code>AbstractStoreConsumer</code>.
+ * <p>
+ * A request thread executing a write waits until the
+ * batch containing the write is committed, therefore
+ * the durability is identical to committing the write
+ * directly. A batch is flushed once it reaches the batch
+ * size, or once the flush interval has elapsed since its
+ * first write. Statements with the same SQL in a batch
+ * are executed as one JDBC batch. Since every request
+ * waits for its own write, writes in the same batch never
+ * depend on each other, and grouping them by SQL is safe.
+ * <p>
+ * If a batch fails, its transaction is rolled back and
+ * its writes are retried in individual transactions, so
+ * that a single failing write does not fail the writes
+ * of other requests.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class GroupCommitWriter {
+	/**
+	 * The <code>DataSource</code> to write to.
+	 */
+	private final DataSource dataSource;
+	/**
+	 * The <code>int</code> maximum number of writes
+	 * per batch.
+	 */
+	private final int batchSize;
+	/**
+	 * The <code>long</code> flush interval in nanoseconds.
+	 */
+	private final long flushInterval;
+	/**
+	 * The <code>LinkedBlockingQueue</code> of pending
+	 * <code>Write</code>.
+	 */
+	private final LinkedBlockingQueue<Write> queue;
+	/**
+	 * The flusher <code>Thread</code>.
+	 */
+	private final Thread flusher;
+	/**
+	 * The <code>AtomicLong</code> number of committed
+	 * batches.
+	 */
+	private final AtomicLong commits;
+	/**
+	 * The <code>AtomicLong</code> number of committed
+	 * writes.
+	 */
+	private final AtomicLong writes;
+	/**
+	 * The <code>boolean</code> running flag.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Constructor of <code>GroupCommitWriter</code>.
+	 * @param dataSource The <code>DataSource</code> to
+	 * write to.
+	 * @param batchSize The <code>int</code> maximum
+	 * number of writes per batch.
+	 * @param flushInterval The <code>long</code> maximum
+	 * time in milliseconds a write waits for its batch to
+	 * fill up.
+	 */
+	public GroupCommitWriter(final DataSource dataSource, final int batchSize, final long flushInterval) {
+		if (dataSource == null) throw new IllegalArgumentException("Data source must be specified.");
+		if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive.");
+		if (flushInterval < 0) throw new IllegalArgumentException("Flush interval cannot be negative.");
+		this.dataSource = dataSource;
+		this.batchSize = batchSize;
+		this.flushInterval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+		this.queue = new LinkedBlockingQueue<Write>();
+		this.commits = new AtomicLong();
+		this.writes = new AtomicLong();
+		this.flusher = new Thread(new Flusher(), "GroupCommitWriter");
+		this.flusher.setDaemon(true);
+		this.running = true;
+		this.flusher.start();
+	}
+
+	/**
+	 * Execute the given statement as part of a batch,
+	 * and wait until the batch is committed.
+	 * @param sql The <code>String</code> SQL statement.
+	 * @param parameters The <code>Object</code> statement
+	 * parameters.
+	 * @return The <code>int</code> update count of the
+	 * statement.
+	 * @throws SQLException If the write failed or the
+	 * writer is closed.
+	 */
+	public int execute(final String sql, final Object... parameters) throws SQLException {
+		if (!this.running) throw new SQLException("Group commit writer is closed.");
+		final Write write = new Write(sql, parameters);
+		this.queue.add(write);
+		// The writer may have closed after the check above and
+		// drained the queue for the last time. Unless the
+		// flusher already took the write, fail it here.
+		if (!this.running && this.queue.remove(write)) write.complete(new SQLException("Group commit writer is closed."));
+		return write.await();
+	}
+
+	/**
+	 * Close the writer. Pending writes are flushed
+	 * before this method returns.
+	 * @throws InterruptedException If interrupted while
+	 * waiting for the pending writes.
+	 */
+	public void close() throws InterruptedException {
+		this.running = false;
+		this.flusher.join();
+	}
+
+	/**
+	 * Retrieve the number of committed batches.
+	 * @return The <code>long</code> commit count.
+	 */
+	public long getCommitCount() {
+		return this.commits.get();
+	}
+
+	/**
+	 * Retrieve the number of committed writes.
+	 * @return The <code>long</code> write count.
+	 */
+	public long getWriteCount() {
+		return this.writes.get();
+	}
+
+	/**
+	 * Collect the next batch of writes into the given
+	 * empty list.
+	 * @param batch The <code>List</code> to add the
+	 * <code>Write</code> of the batch to.
+	 * @return <code>true</code> if there are writes.
+	 * <code>false</code> otherwise.
+	 * @throws InterruptedException If interrupted.
+	 */
+	private boolean nextBatch(final List<Write> batch) throws InterruptedException {
+		final Write first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+		if (first == null) return false;
+		batch.add(first);
+		final long deadline = System.nanoTime() + this.flushInterval;
+		while (batch.size() < this.batchSize) {
+			this.queue.drainTo(batch, this.batchSize - batch.size());
+			if (batch.size() >= this.batchSize) break;
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) break;
+			final Write write = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (write == null) break;
+			batch.add(write);
+		}
+		return true;
+	}
+
+	/**
+	 * Commit the given batch, retrying the writes
+	 * individually if the batch fails.
+	 * @param batch The <code>List</code> of <code>Write</code>.
+	 */
+	private void flush(final List<Write> batch) {
+		try {
+			this.commit(batch);
+			for (final Write write : batch) write.complete(null);
+			return;
+		} catch (final SQLException e) {
+			if (batch.size() == 1) {
+				batch.get(0).complete(e);
+				return;
+			}
+		}
+		final List<Write> single = new ArrayList<Write>(1);
+		for (final Write write : batch) {
+			single.clear();
+			single.add(write);
+			try {
+				this.commit(single);
+				write.complete(null);
+			} catch (final SQLException e) {
+				write.complete(e);
+			}
+		}
+	}
+
+	/**
+	 * Fail the writes of the given batch that have not
+	 * completed yet.
+	 * @param batch The <code>List</code> of <code>Write</code>.
+	 * @param cause The <code>Throwable</code> cause.
+	 */
+	private void fail(final List<Write> batch, final Throwable cause) {
+		final SQLException failure = (cause instanceof SQLException) ? (SQLException)cause : new SQLException("Batch commit failed.", cause);
+		for (final Write write : batch) write.complete(failure);
+	}
+
+	/**
+	 * Execute the given writes in a single transaction.
+	 * @param batch The <code>List</code> of <code>Write</code>.
+	 * @throws SQLException If the transaction failed.
+	 */
+	private void commit(final List<Write> batch) throws SQLException {
+		try {
+			this.commitBatch(batch);
+		} catch (final RuntimeException e) {
+			throw new SQLException("Batch commit failed.", e);
+		}
+	}
+
+	/**
+	 * Execute the given writes in a single transaction
+	 * using batched prepared statements.
+	 * @param batch The <code>List</code> of <code>Write</code>.
+	 * @throws SQLException If the transaction failed.
+	 */
+	private void commitBatch(final List<Write> batch) throws SQLException {
+		// Group writes by statement, keeping first appearance order.
+		final Map<String, List<Write>> statements = new LinkedHashMap<String, List<Write>>();
+		for (final Write write : batch) {
+			List<Write> writes = statements.get(write.sql);
+			if (writes == null) {
+				writes = new ArrayList<Write>();
+				statements.put(write.sql, writes);
+			}
+			writes.add(write);
+		}
+		final Connection connection = this.dataSource.getConnection();
+		try {
+			connection.setAutoCommit(false);
+			try {
+				for (final Map.Entry<String, List<Write>> entry : statements.entrySet()) {
+					final PreparedStatement statement = connection.prepareStatement(entry.getKey());
+					try {
+						final List<Write> writes = entry.getValue();
+						for (final Write write : writes) {
+							for (int i = 0; i < write.parameters.length; i++) {
+								statement.setObject(i+1, write.parameters[i]);
+							}
+							statement.addBatch();
+						}
+						final int[] counts = statement.executeBatch();
+						for (int i = 0; i < writes.size(); i++) {
+							writes.get(i).count = (i < counts.length) ? counts[i] : PreparedStatement.SUCCESS_NO_INFO;
+						}
+					} finally {
+						statement.close();
+					}
+				}
+				connection.commit();
+				this.commits.incrementAndGet();
+				this.writes.addAndGet(batch.size());
+			} catch (final Throwable e) {
+				// Never leave the outcome of an open transaction
+				// to the driver closing the connection.
+				try {
+					connection.rollback();
+				} catch (final SQLException rollbackFailure) {
+					e.addSuppressed(rollbackFailure);
+				}
+				throw e;
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * <code>Flusher</code> defines the background task
+	 * that collects and commits batches. An unexpected
+	 * failure fails the writes of the current batch
+	 * without stopping the task, so that no write is left
+	 * waiting.
+	 */
+	private final class Flusher implements Runnable {
+
+		@Override
+		public void run() {
+			final GroupCommitWriter writer = GroupCommitWriter.this;
+			final List<Write> batch = new ArrayList<Write>(writer.batchSize);
+			while (writer.running || !writer.queue.isEmpty()) {
+				batch.clear();
+				try {
+					if (writer.nextBatch(batch)) writer.flush(batch);
+				} catch (final InterruptedException e) {
+					// Stop accepting writes, since none would be
+					// flushed anymore.
+					writer.running = false;
+					writer.fail(batch, new SQLException("Group commit writer is closed."));
+					break;
+				} catch (final Throwable e) {
+					writer.fail(batch, e);
+				}
+			}
+			// Fail writes that can no longer be flushed.
+			final List<Write> remaining = new ArrayList<Write>();
+			writer.queue.drainTo(remaining);
+			for (final Write write : remaining) {
+				write.complete(new SQLException("Group commit writer is closed."));
+			}
+		}
+	}
+
+	/**
+	 * <code>Write</code> defines a single pending write
+	 * and its completion.
+	 */
+	private static final class Write {
+		/**
+		 * The <code>String</code> SQL statement.
+		 */
+		private final String sql;
+		/**
+		 * The <code>Object</code> array of parameters.
+		 */
+		private final Object[] parameters;
+		/**
+		 * The <code>CountDownLatch</code> released when
+		 * the write completes.
+		 */
+		private final CountDownLatch latch;
+		/**
+		 * The <code>int</code> update count.
+		 */
+		private volatile int count;
+		/**
+		 * The <code>SQLException</code> failure. Or
+		 * <code>null</code> if the write succeeded.
+		 */
+		private volatile SQLException failure;
+
+		/**
+		 * Constructor of <code>Write</code>.
+		 * @param sql The <code>String</code> SQL.
+		 * @param parameters The <code>Object</code>
+		 * parameters.
+		 */
+		private Write(final String sql, final Object[] parameters) {
+			this.sql = sql;
+			this.parameters = (parameters == null) ? new Object[0] : parameters;
+			this.latch = new CountDownLatch(1);
+		}
+
+		/**
+		 * Complete the write, unless it already completed.
+		 * Only the thread that owns the write, which is the
+		 * flusher once it took the write from the queue,
+		 * may complete it.
+		 * @param failure The <code>SQLException</code>
+		 * failure. Or <code>null</code> on success.
+		 */
+		private void complete(final SQLException failure) {
+			if (this.latch.getCount() == 0) return;
+			this.failure = failure;
+			this.latch.countDown();
+		}
+
+		/**
+		 * Wait for the write to complete.
+		 * @return The <code>int</code> update count.
+		 * @throws SQLException If the write failed.
+		 */
+		private int await() throws SQLException {
+			try {
+				this.latch.await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for commit.", e);
+			}
+			if (this.failure != null) throw new SQLException(this.failure.getMessage(), this.failure.getSQLState(), this.failure.getErrorCode(), this.failure);
+			return this.count;
+		}
+	}
+}
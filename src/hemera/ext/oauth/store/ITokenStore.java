@@ -0,0 +1,168 @@
+package hemera.ext.oauth.store;
+
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+
+import java.sql.SQLException;
+
+/**
+ * <code>ITokenStore</code> defines the interface of the
+ * persistent storage of authorization, access and
+ * refresh tokens, which provides the persistence hooks
+ * of <code>AbstractConsumer</code> through
+ * <code>AbstractStoreConsumer</code>.
+ * <p>
+ * The tokens created by a store write their expiration
+ * changes back to the same store with
+ * <code>updateExpiration</code>.
+ * <p>
+ * Implementations must be thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface ITokenStore {
+
+	/**
+	 * Insert a new authorization token.
+	 * @param value The <code>String</code> token value.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @param permissions The <code>String</code> granted
+	 * permissions.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 * @return The <code>AbstractAuthorizationToken</code>
+	 * inserted.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractAuthorizationToken insertAuthorizationToken(final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration) throws SQLException;
+
+	/**
+	 * Insert a new refresh token.
+	 * @param value The <code>String</code> token value.
+	 * @param accessTokenValue The <code>String</code>
+	 * associated access token value.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 * @return The <code>AbstractRefreshToken</code>
+	 * inserted.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException;
+
+	/**
+	 * Insert a new access token.
+	 * @param value The <code>String</code> token value.
+	 * @param refreshToken The associated
+	 * <code>AbstractRefreshToken</code>.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @param permissions The <code>String</code> granted
+	 * permissions.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 * @return The <code>AbstractAccessToken</code>
+	 * inserted.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String consumerKey,
+			final String permissions, final String userid, final long expiration) throws SQLException;
+
+	/**
+	 * Retrieve the authorization token with given value.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>AbstractAuthorizationToken</code>.
+	 * Or <code>null</code> if there is no such token.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractAuthorizationToken getAuthorizationToken(final String value) throws SQLException;
+
+	/**
+	 * Retrieve the access token with given value.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>AbstractAccessToken</code>. Or
+	 * <code>null</code> if there is no such token.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractAccessToken getAccessToken(final String value) throws SQLException;
+
+	/**
+	 * Retrieve the refresh token with given value.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>AbstractRefreshToken</code>. Or
+	 * <code>null</code> if there is no such token.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractRefreshToken getRefreshToken(final String value) throws SQLException;
+
+	/**
+	 * Retrieve the valid authorization token of the
+	 * given consumer for the given permissions and user.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @param permissions The <code>String</code>
+	 * permissions.
+	 * @param userid The <code>String</code> user ID.
+	 * @return The <code>AbstractAuthorizationToken</code>.
+	 * Or <code>null</code> if there is none.
+	 * @throws SQLException If storage access failed.
+	 */
+	public AbstractAuthorizationToken getValidAuthorizationToken(final String consumerKey, final String permissions, final String userid)
+			throws SQLException;
+
+	/**
+	 * Update the expiration of the token with given
+	 * value. This method is invoked by the tokens the
+	 * store created when their expiration changes.
+	 * @param value The <code>String</code> token value.
+	 * @param expiration The <code>long</code> new
+	 * expiration time in milliseconds.
+	 * @throws SQLException If storage access failed.
+	 */
+	public void updateExpiration(final String value, final long expiration) throws SQLException;
+
+	/**
+	 * Remove the token with given value.
+	 * @param value The <code>String</code> token value.
+	 * @return <code>true</code> if a token was removed.
+	 * <code>false</code> otherwise.
+	 * @throws SQLException If storage access failed.
+	 */
+	public boolean remove(final String value) throws SQLException;
+
+	/**
+	 * Revoke all the tokens granted by the given user,
+	 * which are the authorization and access tokens with
+	 * the user ID and the refresh tokens paired with
+	 * those access tokens. Revoked tokens are expired as
+	 * if invalidated, and the registered token listeners
+	 * are notified of each of them.
+	 * @param userid The <code>String</code> user ID.
+	 * @return The <code>long</code> number of valid
+	 * tokens revoked.
+	 * @throws SQLException If storage access failed.
+	 */
+	public long revokeByUser(final String userid) throws SQLException;
+
+	/**
+	 * Revoke all the tokens issued to the given consumer,
+	 * which are the authorization and access tokens with
+	 * the consumer key and the refresh tokens paired with
+	 * those access tokens. Revoked tokens are expired as
+	 * if invalidated, and the registered token listeners
+	 * are notified of each of them.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @return The <code>long</code> number of valid
+	 * tokens revoked.
+	 * @throws SQLException If storage access failed.
+	 */
+	public long revokeByConsumer(final String consumerKey) throws SQLException;
+}
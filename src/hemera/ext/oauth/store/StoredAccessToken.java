@@ -0,0 +1,47 @@
+package hemera.ext.oauth.store;
+
+import hemera.ext.oauth.token.AbstractAccessToken;
+
+import java.sql.SQLException;
+
+/**
+ * <code>StoredAccessToken</code> defines the access
+ * token created by an <code>ITokenStore</code>, which
+ * writes its expiration changes back to the store.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class StoredAccessToken extends AbstractAccessToken {
+	/**
+	 * The <code>ITokenStore</code> owning the token.
+	 */
+	private final ITokenStore store;
+
+	/**
+	 * Constructor of <code>StoredAccessToken</code>.
+	 * @param store The <code>ITokenStore</code> owning
+	 * the token.
+	 * @param value The <code>String</code> token value.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @param permissions The <code>String</code> token
+	 * permissions.
+	 * @param userid The <code>String</code> associated
+	 * user ID.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 * @param refreshToken The <code>String</code>
+	 * associated refresh token value.
+	 */
+	public StoredAccessToken(final ITokenStore store, final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration, final String refreshToken) {
+		super(value, consumerKey, permissions, userid, expiration, refreshToken);
+		this.store = store;
+	}
+
+	@Override
+	protected void setExpiration(final long value) throws SQLException {
+		this.store.updateExpiration(this.value, value);
+	}
+}
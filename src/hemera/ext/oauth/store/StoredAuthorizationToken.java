@@ -0,0 +1,45 @@
+package hemera.ext.oauth.store;
+
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+
+import java.sql.SQLException;
+
+/**
+ * <code>StoredAuthorizationToken</code> defines the
+ * authorization token created by an <code>ITokenStore</code>,
+ * which writes its expiration changes back to the store.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class StoredAuthorizationToken extends AbstractAuthorizationToken {
+	/**
+	 * The <code>ITokenStore</code> owning the token.
+	 */
+	private final ITokenStore store;
+
+	/**
+	 * Constructor of <code>StoredAuthorizationToken</code>.
+	 * @param store The <code>ITokenStore</code> owning
+	 * the token.
+	 * @param value The <code>String</code> token value.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @param permissions The <code>String</code> token
+	 * permissions.
+	 * @param userid The <code>String</code> associated
+	 * user ID.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 */
+	public StoredAuthorizationToken(final ITokenStore store, final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration) {
+		super(value, consumerKey, permissions, userid, expiration);
+		this.store = store;
+	}
+
+	@Override
+	protected void setExpiration(final long value) throws SQLException {
+		this.store.updateExpiration(this.value, value);
+	}
+}
@@ -0,0 +1,47 @@
+package hemera.ext.oauth.store;
+
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+
+import java.sql.SQLException;
+
+/**
+ * <code>StoredRefreshToken</code> defines the refresh
+ * token created by an <code>ITokenStore</code>, which
+ * writes its expiration changes back to the store and
+ * retrieves its associated access token from the store.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class StoredRefreshToken extends AbstractRefreshToken {
+	/**
+	 * The <code>ITokenStore</code> owning the token.
+	 */
+	private final ITokenStore store;
+
+	/**
+	 * Constructor of <code>StoredRefreshToken</code>.
+	 * @param store The <code>ITokenStore</code> owning
+	 * the token.
+	 * @param value The <code>String</code> token value.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 * @param accessToken The <code>String</code>
+	 * associated access token value.
+	 */
+	public StoredRefreshToken(final ITokenStore store, final String value, final long expiration, final String accessToken) {
+		super(value, expiration, accessToken);
+		this.store = store;
+	}
+
+	@Override
+	public AbstractAccessToken getAssociatedAccessToken() throws SQLException {
+		return this.store.getAccessToken(this.accessToken);
+	}
+
+	@Override
+	protected void setExpiration(final long value) throws SQLException {
+		this.store.updateExpiration(this.value, value);
+	}
+}
@@ -0,0 +1,68 @@
+package hemera.ext.oauth.store;
+
+/**
+ * <code>TokenKeys</code> defines the utility singleton
+ * that converts between hex encoded token values and
+ * their binary keys, as used by token stores that key
+ * their records by the binary form of the values.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum TokenKeys {
+	/**
+	 * The singleton instance.
+	 */
+	instance;
+
+	/**
+	 * The <code>int</code> maximum key length in bytes,
+	 * which is the binary length of the token values
+	 * generated by <code>AbstractConsumer</code>.
+	 */
+	public static final int MaxLength = 48;
+	/**
+	 * The <code>char</code> array of lower case hex
+	 * digits.
+	 */
+	private static final char[] HexDigits = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+	/**
+	 * Decode the given hex encoded token value into the
+	 * given array without allocating.
+	 * @param value The <code>String</code> token value.
+	 * @param into The <code>byte</code> array to decode
+	 * into.
+	 * @return The <code>int</code> key length. Or
+	 * <code>-1</code> if the value is <code>null</code>,
+	 * not hex encoded or longer than the given array.
+	 */
+	public int decode(final String value, final byte[] into) {
+		if (value == null) return -1;
+		final int length = value.length();
+		if ((length & 1) != 0 || (length >> 1) > into.length) return -1;
+		for (int i = 0; i < length; i += 2) {
+			final int high = Character.digit(value.charAt(i), 16);
+			final int low = Character.digit(value.charAt(i+1), 16);
+			if (high < 0 || low < 0) return -1;
+			into[i >> 1] = (byte)((high << 4) | low);
+		}
+		return length >> 1;
+	}
+
+	/**
+	 * Encode the given key into a lower case hex token
+	 * value.
+	 * @param key The <code>byte</code> array key.
+	 * @param length The <code>int</code> key length.
+	 * @return The <code>String</code> token value.
+	 */
+	public String encode(final byte[] key, final int length) {
+		final char[] digits = new char[length << 1];
+		for (int i = 0; i < length; i++) {
+			digits[i << 1] = TokenKeys.HexDigits[(key[i] >> 4) & 0xF];
+			digits[(i << 1) + 1] = TokenKeys.HexDigits[key[i] & 0xF];
+		}
+		return new String(digits);
+	}
+}
@@ -0,0 +1,140 @@
+package hemera.ext.oauth.store.compact;
+
+import java.util.Arrays;
+
+/**
+ * <code>ChainHeads</code> defines the primitive map of
+ * string identifiers to the first record identifier of
+ * their chain in a <code>TokenIndex</code>. Keys are
+ * located by linear probing, and removals shift the
+ * following entries back, so that the map allocates no
+ * object per entry and never accumulates removed slots.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+class ChainHeads {
+	/**
+	 * The <code>int</code> key of an empty slot.
+	 */
+	private static final int Empty = -1;
+	/**
+	 * The <code>int</code> array of keys.
+	 */
+	private int[] keys;
+	/**
+	 * The <code>int</code> array of values.
+	 */
+	private int[] values;
+	/**
+	 * The <code>int</code> number of entries.
+	 */
+	private int size;
+
+	/**
+	 * Constructor of <code>ChainHeads</code>.
+	 */
+	ChainHeads() {
+		this.keys = new int[16];
+		this.values = new int[16];
+		Arrays.fill(this.keys, ChainHeads.Empty);
+	}
+
+	/**
+	 * Retrieve the head of the given key.
+	 * @param key The non-negative <code>int</code> key.
+	 * @return The <code>int</code> head. Or <code>-1</code>
+	 * if there is none.
+	 */
+	int get(final int key) {
+		final int mask = this.keys.length - 1;
+		int index = ChainHeads.hash(key) & mask;
+		while (true) {
+			final int existing = this.keys[index];
+			if (existing == key) return this.values[index];
+			else if (existing == ChainHeads.Empty) return -1;
+			index = (index+1) & mask;
+		}
+	}
+
+	/**
+	 * Set the head of the given key.
+	 * @param key The non-negative <code>int</code> key.
+	 * @param head The non-negative <code>int</code> head.
+	 */
+	void put(final int key, final int head) {
+		if ((this.size+1) << 1 > this.keys.length) this.grow();
+		final int mask = this.keys.length - 1;
+		int index = ChainHeads.hash(key) & mask;
+		while (true) {
+			final int existing = this.keys[index];
+			if (existing == key) {
+				this.values[index] = head;
+				return;
+			} else if (existing == ChainHeads.Empty) {
+				this.keys[index] = key;
+				this.values[index] = head;
+				this.size++;
+				return;
+			}
+			index = (index+1) & mask;
+		}
+	}
+
+	/**
+	 * Remove the given key.
+	 * @param key The non-negative <code>int</code> key.
+	 */
+	void remove(final int key) {
+		final int mask = this.keys.length - 1;
+		int index = ChainHeads.hash(key) & mask;
+		while (true) {
+			final int existing = this.keys[index];
+			if (existing == ChainHeads.Empty) return;
+			else if (existing == key) break;
+			index = (index+1) & mask;
+		}
+		// Shift back the following entries whose probe
+		// sequence passes the emptied slot.
+		int gap = index;
+		int next = (gap+1) & mask;
+		while (this.keys[next] != ChainHeads.Empty) {
+			final int home = ChainHeads.hash(this.keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				this.keys[gap] = this.keys[next];
+				this.values[gap] = this.values[next];
+				gap = next;
+			}
+			next = (next+1) & mask;
+		}
+		this.keys[gap] = ChainHeads.Empty;
+		this.size--;
+	}
+
+	/**
+	 * Double the table.
+	 */
+	private void grow() {
+		final int[] keys = this.keys;
+		final int[] values = this.values;
+		this.keys = new int[keys.length << 1];
+		this.values = new int[keys.length << 1];
+		Arrays.fill(this.keys, ChainHeads.Empty);
+		this.size = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != ChainHeads.Empty) this.put(keys[i], values[i]);
+		}
+	}
+
+	/**
+	 * Hash the given key.
+	 * @param key The <code>int</code> key.
+	 * @return The <code>int</code> hash.
+	 */
+	private static int hash(final int key) {
+		final int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
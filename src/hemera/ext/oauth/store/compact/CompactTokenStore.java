@@ -0,0 +1,547 @@
+package hemera.ext.oauth.store.compact;
+
+import hemera.ext.oauth.store.AuthorizationKey;
+import hemera.ext.oauth.store.ITokenStore;
+import hemera.ext.oauth.store.StoredAccessToken;
+import hemera.ext.oauth.store.StoredAuthorizationToken;
+import hemera.ext.oauth.store.StoredRefreshToken;
+import hemera.ext.oauth.store.TokenKeys;
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.token.TokenEvents;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <code>CompactTokenStore</code> defines the in-memory
+ * implementation of <code>ITokenStore</code> optimized
+ * for memory footprint. Tokens are kept in partitioned
+ * <code>TokenIndex</code> instances keyed by the binary
+ * token value, without any object per token. Consumer
+ * keys, permissions and user IDs are interned, and the
+ * link between an access token and its refresh token is
+ * stored as a pair of record identifiers. The records
+ * of each user and each consumer are chained within each
+ * partition, so that revoking the tokens of a user or a
+ * consumer only visits those records.
+ * <p>
+ * Token instances are created on retrieval. Expiration
+ * changes are written back to the store.
+ * <p>
+ * Token values must be hex encoded and at most
+ * <code>96</code> characters long, which holds for the
+ * values generated by <code>AbstractConsumer</code>.
+ * Stateless access tokens are therefore not supported.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class CompactTokenStore implements ITokenStore {
+	/**
+	 * The <code>int</code> number of bits of the
+	 * partition index.
+	 */
+	private static final int PartitionBits = 6;
+	/**
+	 * The <code>int</code> number of partitions.
+	 */
+	private static final int PartitionCount = 1 << CompactTokenStore.PartitionBits;
+	/**
+	 * The <code>String</code> SQL state reported for
+	 * duplicate token values.
+	 */
+	private static final String DuplicateState = "23000";
+	/**
+	 * The <code>byte</code> authorization token type.
+	 */
+	private static final byte TypeAuthorization = 1;
+	/**
+	 * The <code>byte</code> access token type.
+	 */
+	private static final byte TypeAccess = 2;
+	/**
+	 * The <code>byte</code> refresh token type.
+	 */
+	private static final byte TypeRefresh = 3;
+	/**
+	 * The <code>TokenIndex</code> array of partitions.
+	 */
+	private final TokenIndex[] partitions;
+	/**
+	 * The <code>ReentrantReadWriteLock</code> array of
+	 * partition locks.
+	 */
+	private final ReentrantReadWriteLock[] locks;
+	/**
+	 * The <code>StringTable</code> of consumer keys.
+	 */
+	private final StringTable consumers;
+	/**
+	 * The <code>StringTable</code> of permissions.
+	 */
+	private final StringTable permissions;
+	/**
+	 * The <code>StringTable</code> of user IDs.
+	 */
+	private final StringTable users;
+	/**
+	 * The <code>ConcurrentHashMap</code> of
+	 * <code>AuthorizationKey</code> to the most recently
+	 * issued authorization token value.
+	 */
+	private final ConcurrentHashMap<AuthorizationKey, String> authorizationIndex;
+
+	/**
+	 * Constructor of <code>CompactTokenStore</code>.
+	 * @param initialCapacity The <code>int</code> initial
+	 * number of tokens.
+	 */
+	public CompactTokenStore(final int initialCapacity) {
+		this.partitions = new TokenIndex[CompactTokenStore.PartitionCount];
+		this.locks = new ReentrantReadWriteLock[CompactTokenStore.PartitionCount];
+		final int partitionCapacity = initialCapacity / CompactTokenStore.PartitionCount;
+		for (int i = 0; i < CompactTokenStore.PartitionCount; i++) {
+			this.partitions[i] = new TokenIndex(partitionCapacity);
+			this.locks[i] = new ReentrantReadWriteLock();
+		}
+		this.consumers = new StringTable();
+		this.permissions = new StringTable();
+		this.users = new StringTable();
+		this.authorizationIndex = new ConcurrentHashMap<AuthorizationKey, String>();
+	}
+
+	@Override
+	public AbstractAuthorizationToken insertAuthorizationToken(final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration) throws SQLException {
+		this.insert(value, CompactTokenStore.TypeAuthorization, expiration, -1, consumerKey, permissions, userid);
+		final StoredAuthorizationToken token = new StoredAuthorizationToken(this, value, consumerKey, permissions, userid, expiration);
+		// Key the index by the pooled strings of the token.
+		this.authorizationIndex.put(new AuthorizationKey(token.consumerKey, token.permissions, token.userid), value);
+		return token;
+	}
+
+	@Override
+	public AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException {
+		// The access token is linked once it is inserted.
+		this.insert(value, CompactTokenStore.TypeRefresh, expiration, -1, null, null, null);
+		return new StoredRefreshToken(this, value, expiration, accessTokenValue);
+	}
+
+	@Override
+	public AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String consumerKey,
+			final String permissions, final String userid, final long expiration) throws SQLException {
+		final String refreshTokenValue = (refreshToken == null) ? null : refreshToken.value;
+		final byte[] refreshKey = new byte[TokenIndex.MaxKeyLength];
+		final int refreshKeyLength = TokenKeys.instance.decode(refreshTokenValue, refreshKey);
+		final int refreshId = (refreshKeyLength <= 0) ? -1 : this.find(refreshKey, refreshKeyLength, CompactTokenStore.TypeRefresh);
+		final int accessId = this.insert(value, CompactTokenStore.TypeAccess, expiration, refreshId, consumerKey, permissions, userid);
+		// Link the refresh token back to the access token.
+		if (refreshId >= 0) {
+			final int partition = CompactTokenStore.partitionOf(refreshId);
+			final ReentrantReadWriteLock.WriteLock lock = this.locks[partition].writeLock();
+			lock.lock();
+			try {
+				final TokenIndex index = this.partitions[partition];
+				final int local = CompactTokenStore.localOf(refreshId);
+				if (index.getType(local) == CompactTokenStore.TypeRefresh) index.setLink(local, accessId);
+			} finally {
+				lock.unlock();
+			}
+		}
+		return new StoredAccessToken(this, value, consumerKey, permissions, userid, expiration, refreshTokenValue);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getAuthorizationToken(final String value) {
+		final Record record = this.read(value, CompactTokenStore.TypeAuthorization);
+		if (record == null) return null;
+		return new StoredAuthorizationToken(this, value, this.consumers.valueOf(record.consumer), this.permissions.valueOf(record.permissions),
+				this.users.valueOf(record.user), record.expiration);
+	}
+
+	@Override
+	public AbstractAccessToken getAccessToken(final String value) {
+		final Record record = this.read(value, CompactTokenStore.TypeAccess);
+		if (record == null) return null;
+		final String refreshTokenValue = this.readLink(record.link, CompactTokenStore.TypeRefresh, record.id);
+		return new StoredAccessToken(this, value, this.consumers.valueOf(record.consumer), this.permissions.valueOf(record.permissions),
+				this.users.valueOf(record.user), record.expiration, refreshTokenValue);
+	}
+
+	@Override
+	public AbstractRefreshToken getRefreshToken(final String value) {
+		final Record record = this.read(value, CompactTokenStore.TypeRefresh);
+		if (record == null) return null;
+		final String accessTokenValue = this.readLink(record.link, CompactTokenStore.TypeAccess, record.id);
+		return new StoredRefreshToken(this, value, record.expiration, accessTokenValue);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getValidAuthorizationToken(final String consumerKey, final String permissions, final String userid) {
+		final AuthorizationKey key = new AuthorizationKey(consumerKey, permissions, userid);
+		final String value = this.authorizationIndex.get(key);
+		if (value == null) return null;
+		final AbstractAuthorizationToken token = this.getAuthorizationToken(value);
+		if (token != null && token.isValid()) return token;
+		this.authorizationIndex.remove(key, value);
+		return null;
+	}
+
+	@Override
+	public void updateExpiration(final String value, final long expiration) {
+		final byte[] key = new byte[TokenIndex.MaxKeyLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength <= 0) return;
+		final int partition = CompactTokenStore.partitionOf(key, keyLength);
+		final ReentrantReadWriteLock.WriteLock lock = this.locks[partition].writeLock();
+		lock.lock();
+		try {
+			final TokenIndex index = this.partitions[partition];
+			final int local = index.find(key, keyLength);
+			if (local >= 0) index.setExpiration(local, expiration);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(final String value) {
+		final byte[] key = new byte[TokenIndex.MaxKeyLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength <= 0) return false;
+		final int partition = CompactTokenStore.partitionOf(key, keyLength);
+		final ReentrantReadWriteLock.WriteLock lock = this.locks[partition].writeLock();
+		lock.lock();
+		try {
+			return (this.partitions[partition].remove(key, keyLength) >= 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long revokeByUser(final String userid) {
+		final int user = this.users.find(userid);
+		if (user < 0) return 0;
+		return this.revoke(false, user);
+	}
+
+	@Override
+	public long revokeByConsumer(final String consumerKey) {
+		final int consumer = this.consumers.find(consumerKey);
+		if (consumer < 0) return 0;
+		return this.revoke(true, consumer);
+	}
+
+	/**
+	 * Revoke the authorization and access tokens of the
+	 * given consumer or user, and the refresh tokens
+	 * linked to the access tokens.
+	 * <p>
+	 * The chain of the consumer or user is walked in each
+	 * partition under its write lock, and the linked
+	 * refresh tokens are then expired by identifier.
+	 * Listeners are notified outside locks.
+	 * @param byConsumer <code>true</code> to match the
+	 * consumer identifier. <code>false</code> to match
+	 * the user identifier.
+	 * @param target The <code>int</code> identifier to
+	 * match.
+	 * @return The <code>long</code> number of valid
+	 * tokens revoked.
+	 */
+	private long revoke(final boolean byConsumer, final int target) {
+		final long now = System.currentTimeMillis();
+		final byte[] key = new byte[TokenIndex.MaxKeyLength];
+		final List<String> values = new ArrayList<String>();
+		int[] links = new int[16];
+		int linkCount = 0;
+		long count = 0;
+		// Expire the matching records, remembering the
+		// linked refresh token and the access token of
+		// each access record.
+		for (int partition = 0; partition < CompactTokenStore.PartitionCount; partition++) {
+			final ReentrantReadWriteLock.WriteLock lock = this.locks[partition].writeLock();
+			lock.lock();
+			try {
+				final TokenIndex index = this.partitions[partition];
+				int next = (byConsumer) ? index.firstOfConsumer(target) : index.firstOfUser(target);
+				while (next >= 0) {
+					final int local = next;
+					next = (byConsumer) ? index.nextOfConsumer(local) : index.nextOfUser(local);
+					final byte type = index.getType(local);
+					if (type != CompactTokenStore.TypeAuthorization && type != CompactTokenStore.TypeAccess) continue;
+					if (index.getExpiration(local) > now) count++;
+					index.setExpiration(local, Long.MIN_VALUE);
+					values.add(TokenKeys.instance.encode(key, index.getKey(local, key)));
+					final int link = index.getLink(local);
+					if (type == CompactTokenStore.TypeAccess && link >= 0) {
+						if (linkCount+2 > links.length) links = Arrays.copyOf(links, links.length << 1);
+						links[linkCount++] = link;
+						links[linkCount++] = (local << CompactTokenStore.PartitionBits) | partition;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			this.fireInvalidated(values);
+		}
+		// Expire the refresh tokens still linked back.
+		for (int i = 0; i < linkCount; i += 2) {
+			final int refreshId = links[i];
+			final int partition = CompactTokenStore.partitionOf(refreshId);
+			final ReentrantReadWriteLock.WriteLock lock = this.locks[partition].writeLock();
+			lock.lock();
+			try {
+				final TokenIndex index = this.partitions[partition];
+				final int local = CompactTokenStore.localOf(refreshId);
+				if (index.getType(local) != CompactTokenStore.TypeRefresh || index.getLink(local) != links[i+1]) continue;
+				if (index.getExpiration(local) > now) count++;
+				index.setExpiration(local, Long.MIN_VALUE);
+				values.add(TokenKeys.instance.encode(key, index.getKey(local, key)));
+			} finally {
+				lock.unlock();
+			}
+		}
+		this.fireInvalidated(values);
+		return count;
+	}
+
+	/**
+	 * Notify the token listeners that the tokens with
+	 * the given values have been invalidated, and clear
+	 * the given list.
+	 * @param values The <code>List</code> of token values.
+	 */
+	private void fireInvalidated(final List<String> values) {
+		for (int i = 0; i < values.size(); i++) {
+			TokenEvents.instance.fireInvalidated(values.get(i));
+		}
+		values.clear();
+	}
+
+	/**
+	 * Retrieve the number of stored tokens.
+	 * @return The <code>long</code> number of tokens.
+	 */
+	public long size() {
+		long size = 0;
+		for (int i = 0; i < CompactTokenStore.PartitionCount; i++) {
+			final ReentrantReadWriteLock.ReadLock lock = this.locks[i].readLock();
+			lock.lock();
+			try {
+				size += this.partitions[i].size();
+			} finally {
+				lock.unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Insert a new record.
+	 * @param value The <code>String</code> token value.
+	 * @param type The <code>byte</code> token type.
+	 * @param expiration The <code>long</code> expiration.
+	 * @param link The <code>int</code> linked record
+	 * identifier. Or <code>-1</code>.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key. Or <code>null</code>.
+	 * @param permissions The <code>String</code>
+	 * permissions. Or <code>null</code>.
+	 * @param userid The <code>String</code> user ID. Or
+	 * <code>null</code>.
+	 * @return The <code>int</code> record identifier.
+	 * @throws SQLException If the value is not supported
+	 * or already exists.
+	 */
+	private int insert(final String value, final byte type, final long expiration, final int link, final String consumerKey,
+			final String permissions, final String userid) throws SQLException {
+		final byte[] key = new byte[TokenIndex.MaxKeyLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength <= 0) throw new SQLException("Token value is not supported: " + value);
+		final int consumer = this.consumers.idOf(consumerKey);
+		final int permissionsId = this.permissions.idOf(permissions);
+		final int user = this.users.idOf(userid);
+		final int partition = CompactTokenStore.partitionOf(key, keyLength);
+		final int local;
+		final ReentrantReadWriteLock.WriteLock lock = this.locks[partition].writeLock();
+		lock.lock();
+		try {
+			local = this.partitions[partition].insert(key, keyLength, type, expiration, link, consumer, permissionsId, user);
+		} finally {
+			lock.unlock();
+		}
+		if (local < 0) throw new SQLException("Duplicate token value: " + value, CompactTokenStore.DuplicateState);
+		return (local << CompactTokenStore.PartitionBits) | partition;
+	}
+
+	/**
+	 * Find the record identifier of the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @param type The <code>byte</code> expected type.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if there is no such record.
+	 */
+	private int find(final byte[] key, final int keyLength, final byte type) {
+		final int partition = CompactTokenStore.partitionOf(key, keyLength);
+		final ReentrantReadWriteLock.ReadLock lock = this.locks[partition].readLock();
+		lock.lock();
+		try {
+			final TokenIndex index = this.partitions[partition];
+			final int local = index.find(key, keyLength);
+			if (local < 0 || index.getType(local) != type) return -1;
+			return (local << CompactTokenStore.PartitionBits) | partition;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Read the record of the given token value.
+	 * @param value The <code>String</code> token value.
+	 * @param type The <code>byte</code> expected type.
+	 * @return The <code>Record</code>. Or <code>null</code>
+	 * if there is no such token of the given type.
+	 */
+	private Record read(final String value, final byte type) {
+		final byte[] key = new byte[TokenIndex.MaxKeyLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength <= 0) return null;
+		final int partition = CompactTokenStore.partitionOf(key, keyLength);
+		final ReentrantReadWriteLock.ReadLock lock = this.locks[partition].readLock();
+		lock.lock();
+		try {
+			final TokenIndex index = this.partitions[partition];
+			final int local = index.find(key, keyLength);
+			if (local < 0 || index.getType(local) != type) return null;
+			return new Record((local << CompactTokenStore.PartitionBits) | partition, index.getExpiration(local), index.getLink(local),
+					index.getConsumer(local), index.getPermissions(local), index.getUser(local));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Read the token value of the given linked record.
+	 * Since record identifiers are reused, the link is
+	 * only followed if the linked record links back.
+	 * @param link The <code>int</code> linked record
+	 * identifier.
+	 * @param type The <code>byte</code> expected type of
+	 * the linked record.
+	 * @param id The <code>int</code> identifier of the
+	 * linking record.
+	 * @return The <code>String</code> linked token value.
+	 * Or <code>null</code> if the link is not valid.
+	 */
+	private String readLink(final int link, final byte type, final int id) {
+		if (link < 0) return null;
+		final int partition = CompactTokenStore.partitionOf(link);
+		final byte[] key = new byte[TokenIndex.MaxKeyLength];
+		final int keyLength;
+		final ReentrantReadWriteLock.ReadLock lock = this.locks[partition].readLock();
+		lock.lock();
+		try {
+			final TokenIndex index = this.partitions[partition];
+			final int local = CompactTokenStore.localOf(link);
+			if (index.getType(local) != type || index.getLink(local) != id) return null;
+			keyLength = index.getKey(local, key);
+		} finally {
+			lock.unlock();
+		}
+		return TokenKeys.instance.encode(key, keyLength);
+	}
+
+	/**
+	 * Retrieve the partition of the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return The <code>int</code> partition.
+	 */
+	private static int partitionOf(final byte[] key, final int keyLength) {
+		int hash = keyLength;
+		for (int i = 0; i < keyLength; i++) hash = (31 * hash) + key[i];
+		hash *= 0x9E3779B9;
+		return hash >>> (32 - CompactTokenStore.PartitionBits);
+	}
+
+	/**
+	 * Retrieve the partition of the given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> partition.
+	 */
+	private static int partitionOf(final int id) {
+		return id & (CompactTokenStore.PartitionCount-1);
+	}
+
+	/**
+	 * Retrieve the partition local identifier of the
+	 * given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> local identifier.
+	 */
+	private static int localOf(final int id) {
+		return id >>> CompactTokenStore.PartitionBits;
+	}
+
+	/**
+	 * <code>Record</code> defines the fields of a token
+	 * record read from a partition.
+	 */
+	private static final class Record {
+		/**
+		 * The <code>int</code> record identifier.
+		 */
+		private final int id;
+		/**
+		 * The <code>long</code> expiration.
+		 */
+		private final long expiration;
+		/**
+		 * The <code>int</code> linked record identifier.
+		 */
+		private final int link;
+		/**
+		 * The <code>int</code> consumer key identifier.
+		 */
+		private final int consumer;
+		/**
+		 * The <code>int</code> permissions identifier.
+		 */
+		private final int permissions;
+		/**
+		 * The <code>int</code> user ID identifier.
+		 */
+		private final int user;
+
+		/**
+		 * Constructor of <code>Record</code>.
+		 * @param id The <code>int</code> identifier.
+		 * @param expiration The <code>long</code>
+		 * expiration.
+		 * @param link The <code>int</code> link.
+		 * @param consumer The <code>int</code> consumer.
+		 * @param permissions The <code>int</code>
+		 * permissions.
+		 * @param user The <code>int</code> user.
+		 */
+		private Record(final int id, final long expiration, final int link, final int consumer, final int permissions, final int user) {
+			this.id = id;
+			this.expiration = expiration;
+			this.link = link;
+			this.consumer = consumer;
+			this.permissions = permissions;
+			this.user = user;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package hemera.ext.oauth.store.compact;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>StringTable</code> defines the table of interned
+ * strings, which assigns each distinct string a dense
+ * identifier, so that token records can refer to consumer
+ * keys, permissions and user IDs by identifier. Strings
+ * are never removed.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+class StringTable {
+	/**
+	 * The <code>ConcurrentHashMap</code> of string to
+	 * <code>Integer</code> identifier.
+	 */
+	private final ConcurrentHashMap<String, Integer> ids;
+	/**
+	 * The <code>ReentrantLock</code> guarding additions.
+	 */
+	private final ReentrantLock lock;
+	/**
+	 * The <code>String</code> array indexed by identifier.
+	 */
+	private volatile String[] values;
+	/**
+	 * The <code>int</code> number of strings.
+	 */
+	private volatile int count;
+
+	/**
+	 * Constructor of <code>StringTable</code>.
+	 */
+	StringTable() {
+		this.ids = new ConcurrentHashMap<String, Integer>();
+		this.lock = new ReentrantLock();
+		this.values = new String[16];
+	}
+
+	/**
+	 * Retrieve the identifier of the given string,
+	 * adding it if necessary.
+	 * @param value The <code>String</code> value.
+	 * @return The <code>int</code> identifier. Or
+	 * <code>-1</code> if the value is <code>null</code>.
+	 */
+	int idOf(final String value) {
+		if (value == null) return -1;
+		final Integer id = this.ids.get(value);
+		if (id != null) return id.intValue();
+		this.lock.lock();
+		try {
+			final Integer existing = this.ids.get(value);
+			if (existing != null) return existing.intValue();
+			final int count = this.count;
+			String[] values = this.values;
+			if (count == values.length) {
+				final String[] grown = new String[count << 1];
+				System.arraycopy(values, 0, grown, 0, count);
+				values = grown;
+			}
+			values[count] = value;
+			this.values = values;
+			this.count = count+1;
+			this.ids.put(value, Integer.valueOf(count));
+			return count;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieve the identifier of the given string
+	 * without adding it.
+	 * @param value The <code>String</code> value.
+	 * @return The <code>int</code> identifier. Or
+	 * <code>-1</code> if there is no such string.
+	 */
+	int find(final String value) {
+		if (value == null) return -1;
+		final Integer id = this.ids.get(value);
+		return (id == null) ? -1 : id.intValue();
+	}
+
+	/**
+	 * Retrieve the string with the given identifier.
+	 * @param id The <code>int</code> identifier.
+	 * @return The <code>String</code> value. Or
+	 * <code>null</code> if there is no such string.
+	 */
+	String valueOf(final int id) {
+		if (id < 0 || id >= this.count) return null;
+		return this.values[id];
+	}
+}
@@ -0,0 +1,641 @@
+package hemera.ext.oauth.store.compact;
+
+import hemera.ext.oauth.store.TokenKeys;
+
+/**
+ * <code>TokenIndex</code> defines the primitive index of
+ * token records keyed by the binary form of the token
+ * value. Records are stored in parallel primitive column
+ * arrays and located through an open-addressing table
+ * of record identifiers, so that the index allocates no
+ * object per token.
+ * <p>
+ * A record identifier is stable for the lifetime of the
+ * record, since growing the hash table only rehashes the
+ * identifiers. Records can therefore refer to each other
+ * by identifier. Identifiers of removed records are
+ * reused, so a reference must be validated by its target.
+ * <p>
+ * The records of each user and of each consumer are
+ * threaded on intrusive doubly linked chains, whose
+ * heads are kept in <code>ChainHeads</code>, so that the
+ * records of a user or a consumer are enumerated without
+ * scanning the index. The chains cost four identifier
+ * columns per record and are maintained on insertion
+ * and removal.
+ * <p>
+ * Keys are at most <code>48</code> bytes long, which is
+ * the binary length of the token values generated by
+ * <code>AbstractConsumer</code>.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class TokenIndex {
+	/**
+	 * The <code>int</code> maximum key length in bytes.
+	 */
+	public static final int MaxKeyLength = TokenKeys.MaxLength;
+	/**
+	 * The <code>int</code> number of key words per record.
+	 */
+	private static final int KeyWords = TokenIndex.MaxKeyLength / 8;
+	/**
+	 * The <code>int</code> table entry of an empty slot.
+	 */
+	private static final int Empty = 0;
+	/**
+	 * The <code>int</code> table entry of a removed slot.
+	 */
+	private static final int Removed = -1;
+	/**
+	 * The <code>long</code> array of key words.
+	 */
+	private long[] keys;
+	/**
+	 * The <code>long</code> array of expirations.
+	 */
+	private long[] expirations;
+	/**
+	 * The <code>int</code> array of linked record
+	 * identifiers, or the next free record identifier of
+	 * a free record.
+	 */
+	private int[] links;
+	/**
+	 * The <code>int</code> array of consumer key
+	 * identifiers.
+	 */
+	private int[] consumers;
+	/**
+	 * The <code>int</code> array of permissions
+	 * identifiers.
+	 */
+	private int[] permissions;
+	/**
+	 * The <code>int</code> array of user ID identifiers.
+	 */
+	private int[] users;
+	/**
+	 * The <code>int</code> array of the next record
+	 * identifiers of the same user. Or <code>-1</code>.
+	 */
+	private int[] userNext;
+	/**
+	 * The <code>int</code> array of the previous record
+	 * identifiers of the same user. Or <code>-1</code>.
+	 */
+	private int[] userPrevious;
+	/**
+	 * The <code>int</code> array of the next record
+	 * identifiers of the same consumer. Or <code>-1</code>.
+	 */
+	private int[] consumerNext;
+	/**
+	 * The <code>int</code> array of the previous record
+	 * identifiers of the same consumer. Or <code>-1</code>.
+	 */
+	private int[] consumerPrevious;
+	/**
+	 * The <code>ChainHeads</code> of user identifiers.
+	 */
+	private final ChainHeads userHeads;
+	/**
+	 * The <code>ChainHeads</code> of consumer identifiers.
+	 */
+	private final ChainHeads consumerHeads;
+	/**
+	 * The <code>byte</code> array of record types. Zero
+	 * for free records.
+	 */
+	private byte[] types;
+	/**
+	 * The <code>byte</code> array of key lengths.
+	 */
+	private byte[] keyLengths;
+	/**
+	 * The <code>int</code> number of allocated records.
+	 */
+	private int allocated;
+	/**
+	 * The <code>int</code> head of the free record list.
+	 */
+	private int free;
+	/**
+	 * The <code>int</code> array open-addressing table
+	 * of record identifiers plus one.
+	 */
+	private int[] table;
+	/**
+	 * The <code>int</code> number of live records.
+	 */
+	private int size;
+	/**
+	 * The <code>int</code> number of removed table slots.
+	 */
+	private int removed;
+
+	/**
+	 * Constructor of <code>TokenIndex</code>.
+	 * @param initialCapacity The <code>int</code> initial
+	 * number of records.
+	 */
+	public TokenIndex(final int initialCapacity) {
+		final int capacity = Math.max(initialCapacity, 16);
+		this.keys = new long[capacity * TokenIndex.KeyWords];
+		this.expirations = new long[capacity];
+		this.links = new int[capacity];
+		this.consumers = new int[capacity];
+		this.permissions = new int[capacity];
+		this.users = new int[capacity];
+		this.userNext = new int[capacity];
+		this.userPrevious = new int[capacity];
+		this.consumerNext = new int[capacity];
+		this.consumerPrevious = new int[capacity];
+		this.userHeads = new ChainHeads();
+		this.consumerHeads = new ChainHeads();
+		this.types = new byte[capacity];
+		this.keyLengths = new byte[capacity];
+		this.free = -1;
+		int tableSize = 16;
+		while (tableSize < (capacity << 1)) tableSize <<= 1;
+		this.table = new int[tableSize];
+	}
+
+	/**
+	 * Insert a new record.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @param type The non-zero <code>byte</code> type.
+	 * @param expiration The <code>long</code> expiration.
+	 * @param link The <code>int</code> linked record
+	 * identifier. Or <code>-1</code>.
+	 * @param consumer The <code>int</code> consumer key
+	 * identifier.
+	 * @param permissions The <code>int</code> permissions
+	 * identifier.
+	 * @param user The <code>int</code> user ID identifier.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if the key already exists.
+	 */
+	public int insert(final byte[] key, final int keyLength, final byte type, final long expiration, final int link, final int consumer,
+			final int permissions, final int user) {
+		if (keyLength <= 0 || keyLength > TokenIndex.MaxKeyLength) throw new IllegalArgumentException("Invalid key length.");
+		if (type == 0) throw new IllegalArgumentException("Invalid record type.");
+		if ((this.size + this.removed + 1) << 1 > this.table.length) this.rehash();
+		final long word0 = TokenIndex.word(key, keyLength, 0);
+		final int hash = this.hash(key, keyLength);
+		final int mask = this.table.length - 1;
+		int slot = -1;
+		int index = hash & mask;
+		while (true) {
+			final int entry = this.table[index];
+			if (entry == TokenIndex.Empty) {
+				if (slot < 0) slot = index;
+				break;
+			} else if (entry == TokenIndex.Removed) {
+				if (slot < 0) slot = index;
+			} else if (this.matches(entry-1, word0, key, keyLength)) {
+				return -1;
+			}
+			index = (index+1) & mask;
+		}
+		final int id = this.allocate();
+		final int offset = id * TokenIndex.KeyWords;
+		for (int i = 0; i < TokenIndex.KeyWords; i++) {
+			this.keys[offset+i] = TokenIndex.word(key, keyLength, i);
+		}
+		this.keyLengths[id] = (byte)keyLength;
+		this.types[id] = type;
+		this.expirations[id] = expiration;
+		this.links[id] = link;
+		this.consumers[id] = consumer;
+		this.permissions[id] = permissions;
+		this.users[id] = user;
+		this.link(id);
+		if (this.table[slot] == TokenIndex.Removed) this.removed--;
+		this.table[slot] = id+1;
+		this.size++;
+		return id;
+	}
+
+	/**
+	 * Find the record with the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if there is no such record.
+	 */
+	public int find(final byte[] key, final int keyLength) {
+		final int slot = this.slotOf(key, keyLength);
+		return (slot < 0) ? -1 : this.table[slot]-1;
+	}
+
+	/**
+	 * Remove the record with the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return The <code>int</code> removed record
+	 * identifier. Or <code>-1</code> if there is no such
+	 * record.
+	 */
+	public int remove(final byte[] key, final int keyLength) {
+		final int slot = this.slotOf(key, keyLength);
+		if (slot < 0) return -1;
+		final int id = this.table[slot]-1;
+		// A slot followed by an empty slot ends no probe
+		// sequence, so it can be emptied instead of removed.
+		if (this.table[(slot+1) & (this.table.length-1)] == TokenIndex.Empty) {
+			this.table[slot] = TokenIndex.Empty;
+		} else {
+			this.table[slot] = TokenIndex.Removed;
+			this.removed++;
+		}
+		this.unlink(id);
+		this.types[id] = 0;
+		this.links[id] = this.free;
+		this.free = id;
+		this.size--;
+		return id;
+	}
+
+	/**
+	 * Retrieve the number of live records.
+	 * @return The <code>int</code> size.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Retrieve the type of the given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>byte</code> type. Zero if the
+	 * record is free.
+	 */
+	public byte getType(final int id) {
+		return (id < 0 || id >= this.allocated) ? 0 : this.types[id];
+	}
+
+	/**
+	 * Retrieve the expiration of the given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>long</code> expiration.
+	 */
+	public long getExpiration(final int id) {
+		return this.expirations[id];
+	}
+
+	/**
+	 * Set the expiration of the given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @param expiration The <code>long</code> expiration.
+	 */
+	public void setExpiration(final int id, final long expiration) {
+		this.expirations[id] = expiration;
+	}
+
+	/**
+	 * Retrieve the linked record identifier of the
+	 * given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> linked identifier. Or
+	 * <code>-1</code> if there is none.
+	 */
+	public int getLink(final int id) {
+		return this.links[id];
+	}
+
+	/**
+	 * Set the linked record identifier of the given
+	 * record.
+	 * @param id The <code>int</code> record identifier.
+	 * @param link The <code>int</code> linked identifier.
+	 */
+	public void setLink(final int id, final int link) {
+		this.links[id] = link;
+	}
+
+	/**
+	 * Retrieve the consumer key identifier of the given
+	 * record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> consumer identifier.
+	 */
+	public int getConsumer(final int id) {
+		return this.consumers[id];
+	}
+
+	/**
+	 * Retrieve the permissions identifier of the given
+	 * record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> permissions identifier.
+	 */
+	public int getPermissions(final int id) {
+		return this.permissions[id];
+	}
+
+	/**
+	 * Retrieve the user ID identifier of the given
+	 * record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> user identifier.
+	 */
+	public int getUser(final int id) {
+		return this.users[id];
+	}
+
+	/**
+	 * Retrieve the first record of the given user.
+	 * @param user The <code>int</code> user identifier.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if the user has no record.
+	 */
+	public int firstOfUser(final int user) {
+		return (user < 0) ? -1 : this.userHeads.get(user);
+	}
+
+	/**
+	 * Retrieve the record following the given record on
+	 * the chain of its user.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if the chain ends.
+	 */
+	public int nextOfUser(final int id) {
+		return this.userNext[id];
+	}
+
+	/**
+	 * Retrieve the first record of the given consumer.
+	 * @param consumer The <code>int</code> consumer
+	 * identifier.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if the consumer has no record.
+	 */
+	public int firstOfConsumer(final int consumer) {
+		return (consumer < 0) ? -1 : this.consumerHeads.get(consumer);
+	}
+
+	/**
+	 * Retrieve the record following the given record on
+	 * the chain of its consumer.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> record identifier. Or
+	 * <code>-1</code> if the chain ends.
+	 */
+	public int nextOfConsumer(final int id) {
+		return this.consumerNext[id];
+	}
+
+	/**
+	 * Copy the key of the given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @param into The <code>byte</code> array to copy
+	 * into, of at least <code>MaxKeyLength</code> bytes.
+	 * @return The <code>int</code> key length.
+	 */
+	public int getKey(final int id, final byte[] into) {
+		final int length = this.keyLengths[id];
+		final int offset = id * TokenIndex.KeyWords;
+		for (int i = 0; i < length; i++) {
+			into[i] = (byte)(this.keys[offset + (i >>> 3)] >>> (56 - ((i & 7) << 3)));
+		}
+		return length;
+	}
+
+	/**
+	 * Push the given record onto the chains of its user
+	 * and its consumer.
+	 * @param id The <code>int</code> record identifier.
+	 */
+	private void link(final int id) {
+		final int user = this.users[id];
+		this.userPrevious[id] = -1;
+		this.userNext[id] = -1;
+		if (user >= 0) {
+			final int head = this.userHeads.get(user);
+			this.userNext[id] = head;
+			if (head >= 0) this.userPrevious[head] = id;
+			this.userHeads.put(user, id);
+		}
+		final int consumer = this.consumers[id];
+		this.consumerPrevious[id] = -1;
+		this.consumerNext[id] = -1;
+		if (consumer >= 0) {
+			final int head = this.consumerHeads.get(consumer);
+			this.consumerNext[id] = head;
+			if (head >= 0) this.consumerPrevious[head] = id;
+			this.consumerHeads.put(consumer, id);
+		}
+	}
+
+	/**
+	 * Remove the given record from the chains of its
+	 * user and its consumer.
+	 * @param id The <code>int</code> record identifier.
+	 */
+	private void unlink(final int id) {
+		final int user = this.users[id];
+		if (user >= 0) {
+			final int previous = this.userPrevious[id];
+			final int next = this.userNext[id];
+			if (next >= 0) this.userPrevious[next] = previous;
+			if (previous >= 0) this.userNext[previous] = next;
+			else if (next >= 0) this.userHeads.put(user, next);
+			else this.userHeads.remove(user);
+		}
+		final int consumer = this.consumers[id];
+		if (consumer >= 0) {
+			final int previous = this.consumerPrevious[id];
+			final int next = this.consumerNext[id];
+			if (next >= 0) this.consumerPrevious[next] = previous;
+			if (previous >= 0) this.consumerNext[previous] = next;
+			else if (next >= 0) this.consumerHeads.put(consumer, next);
+			else this.consumerHeads.remove(consumer);
+		}
+	}
+
+	/**
+	 * Find the table slot of the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return The <code>int</code> slot. Or <code>-1</code>
+	 * if there is no such key.
+	 */
+	private int slotOf(final byte[] key, final int keyLength) {
+		if (keyLength <= 0 || keyLength > TokenIndex.MaxKeyLength) return -1;
+		final long word0 = TokenIndex.word(key, keyLength, 0);
+		final int mask = this.table.length - 1;
+		int index = this.hash(key, keyLength) & mask;
+		while (true) {
+			final int entry = this.table[index];
+			if (entry == TokenIndex.Empty) return -1;
+			else if (entry != TokenIndex.Removed && this.matches(entry-1, word0, key, keyLength)) return index;
+			index = (index+1) & mask;
+		}
+	}
+
+	/**
+	 * Check if the given record has the given key.
+	 * @param id The <code>int</code> record identifier.
+	 * @param word0 The <code>long</code> first key word.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return <code>true</code> if the keys are equal.
+	 * <code>false</code> otherwise.
+	 */
+	private boolean matches(final int id, final long word0, final byte[] key, final int keyLength) {
+		final int offset = id * TokenIndex.KeyWords;
+		if (this.keys[offset] != word0 || this.keyLengths[id] != keyLength) return false;
+		for (int i = 1; i < TokenIndex.KeyWords; i++) {
+			if (this.keys[offset+i] != TokenIndex.word(key, keyLength, i)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Hash the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return The <code>int</code> hash.
+	 */
+	private int hash(final byte[] key, final int keyLength) {
+		long hash = keyLength;
+		for (int i = 0; i < TokenIndex.KeyWords; i++) {
+			hash = (hash * 0x9E3779B97F4A7C15L) ^ TokenIndex.word(key, keyLength, i);
+		}
+		return TokenIndex.mix(hash);
+	}
+
+	/**
+	 * Hash the key of the given record.
+	 * @param id The <code>int</code> record identifier.
+	 * @return The <code>int</code> hash.
+	 */
+	private int hash(final int id) {
+		final int offset = id * TokenIndex.KeyWords;
+		long hash = this.keyLengths[id];
+		for (int i = 0; i < TokenIndex.KeyWords; i++) {
+			hash = (hash * 0x9E3779B97F4A7C15L) ^ this.keys[offset+i];
+		}
+		return TokenIndex.mix(hash);
+	}
+
+	/**
+	 * Finalize the given hash.
+	 * @param hash The <code>long</code> hash.
+	 * @return The <code>int</code> mixed hash.
+	 */
+	private static int mix(long hash) {
+		hash ^= (hash >>> 33);
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= (hash >>> 33);
+		return (int)hash;
+	}
+
+	/**
+	 * Read the given big-endian word of the given key,
+	 * padded with zeros.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @param word The <code>int</code> word index.
+	 * @return The <code>long</code> word.
+	 */
+	private static long word(final byte[] key, final int keyLength, final int word) {
+		long value = 0;
+		final int start = word << 3;
+		for (int i = 0; i < 8; i++) {
+			final int index = start + i;
+			value = (value << 8) | ((index < keyLength) ? (key[index] & 0xFFL) : 0);
+		}
+		return value;
+	}
+
+	/**
+	 * Allocate a record identifier, growing the columns
+	 * if necessary.
+	 * @return The <code>int</code> record identifier.
+	 */
+	private int allocate() {
+		if (this.free >= 0) {
+			final int id = this.free;
+			this.free = this.links[id];
+			return id;
+		}
+		if (this.allocated == this.types.length) {
+			final int capacity = this.types.length + (this.types.length >> 1);
+			this.keys = TokenIndex.grow(this.keys, capacity * TokenIndex.KeyWords);
+			this.expirations = TokenIndex.grow(this.expirations, capacity);
+			this.links = TokenIndex.grow(this.links, capacity);
+			this.consumers = TokenIndex.grow(this.consumers, capacity);
+			this.permissions = TokenIndex.grow(this.permissions, capacity);
+			this.users = TokenIndex.grow(this.users, capacity);
+			this.userNext = TokenIndex.grow(this.userNext, capacity);
+			this.userPrevious = TokenIndex.grow(this.userPrevious, capacity);
+			this.consumerNext = TokenIndex.grow(this.consumerNext, capacity);
+			this.consumerPrevious = TokenIndex.grow(this.consumerPrevious, capacity);
+			this.types = TokenIndex.grow(this.types, capacity);
+			this.keyLengths = TokenIndex.grow(this.keyLengths, capacity);
+		}
+		return this.allocated++;
+	}
+
+	/**
+	 * Rebuild the table, doubling it if the live records
+	 * fill more than a quarter of it.
+	 */
+	private void rehash() {
+		int length = this.table.length;
+		if ((this.size + 1) << 2 > length) length <<= 1;
+		final int[] table = new int[length];
+		final int mask = length - 1;
+		for (int id = 0; id < this.allocated; id++) {
+			if (this.types[id] == 0) continue;
+			int index = this.hash(id) & mask;
+			while (table[index] != TokenIndex.Empty) index = (index+1) & mask;
+			table[index] = id+1;
+		}
+		this.table = table;
+		this.removed = 0;
+	}
+
+	/**
+	 * Grow the given array.
+	 * @param array The <code>long</code> array.
+	 * @param length The <code>int</code> new length.
+	 * @return The <code>long</code> grown array.
+	 */
+	private static long[] grow(final long[] array, final int length) {
+		final long[] grown = new long[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * Grow the given array.
+	 * @param array The <code>int</code> array.
+	 * @param length The <code>int</code> new length.
+	 * @return The <code>int</code> grown array.
+	 */
+	private static int[] grow(final int[] array, final int length) {
+		final int[] grown = new int[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * Grow the given array.
+	 * @param array The <code>byte</code> array.
+	 * @param length The <code>int</code> new length.
+	 * @return The <code>byte</code> grown array.
+	 */
+	private static byte[] grow(final byte[] array, final int length) {
+		final byte[] grown = new byte[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
@@ -0,0 +1,350 @@
+package hemera.ext.oauth.store.jdbc;
+
+import hemera.ext.oauth.store.GroupCommitWriter;
+import hemera.ext.oauth.store.ITokenStore;
+import hemera.ext.oauth.store.StoredAccessToken;
+import hemera.ext.oauth.store.StoredAuthorizationToken;
+import hemera.ext.oauth.store.StoredRefreshToken;
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.token.TokenEvents;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * <code>JdbcTokenStore</code> defines the implementation
+ * of <code>ITokenStore</code> backed by a relational
+ * database, which writes the token insertions, the
+ * expiration updates and the removals through a
+ * <code>GroupCommitWriter</code>. The writes of
+ * concurrent requests are therefore committed together,
+ * while every request still waits for its own write to
+ * be committed. Reads are executed directly on the data
+ * source.
+ * <p>
+ * All the tokens are stored in a single table, which
+ * must be created as follows, with column types adapted
+ * to the database:
+ * <pre>
+ * CREATE TABLE &lt;table&gt; (
+ *   value VARCHAR(255) PRIMARY KEY,
+ *   type SMALLINT NOT NULL,
+ *   consumer_key VARCHAR(255),
+ *   permissions VARCHAR(1024),
+ *   userid VARCHAR(255),
+ *   expiration BIGINT NOT NULL,
+ *   pair_value VARCHAR(255)
+ * );
+ * CREATE INDEX &lt;table&gt;_user ON &lt;table&gt; (userid);
+ * CREATE INDEX &lt;table&gt;_consumer ON &lt;table&gt; (consumer_key, permissions, userid);
+ * </pre>
+ * The pair value is the refresh token value of an access
+ * token, and the access token value of a refresh token.
+ * <p>
+ * Revocations are rare administrative operations, and
+ * are executed in their own transaction rather than
+ * through the writer.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class JdbcTokenStore implements ITokenStore {
+	/**
+	 * The <code>int</code> type of authorization tokens.
+	 */
+	private static final int Authorization = 0;
+	/**
+	 * The <code>int</code> type of access tokens.
+	 */
+	private static final int Access = 1;
+	/**
+	 * The <code>int</code> type of refresh tokens.
+	 */
+	private static final int Refresh = 2;
+	/**
+	 * The <code>DataSource</code> to read from.
+	 */
+	private final DataSource dataSource;
+	/**
+	 * The <code>GroupCommitWriter</code> to write with.
+	 */
+	private final GroupCommitWriter writer;
+	/**
+	 * The <code>String</code> insert statement.
+	 */
+	private final String insertSQL;
+	/**
+	 * The <code>String</code> select statement of a token
+	 * by value and type.
+	 */
+	private final String selectSQL;
+	/**
+	 * The <code>String</code> select statement of the
+	 * valid authorization tokens of a combination.
+	 */
+	private final String selectValidSQL;
+	/**
+	 * The <code>String</code> expiration update statement.
+	 */
+	private final String updateSQL;
+	/**
+	 * The <code>String</code> delete statement.
+	 */
+	private final String deleteSQL;
+	/**
+	 * The <code>String</code> select statement of the
+	 * authorization and access tokens of a user.
+	 */
+	private final String selectUserSQL;
+	/**
+	 * The <code>String</code> select statement of the
+	 * authorization and access tokens of a consumer.
+	 */
+	private final String selectConsumerSQL;
+	/**
+	 * The <code>String</code> statement revoking a valid
+	 * token.
+	 */
+	private final String revokeSQL;
+
+	/**
+	 * Constructor of <code>JdbcTokenStore</code>.
+	 * @param dataSource The <code>DataSource</code> to
+	 * read from.
+	 * @param writer The <code>GroupCommitWriter</code>
+	 * writing to the same database. The caller remains
+	 * responsible for closing it.
+	 * @param table The <code>String</code> name of the
+	 * token table.
+	 */
+	public JdbcTokenStore(final DataSource dataSource, final GroupCommitWriter writer, final String table) {
+		if (dataSource == null) throw new IllegalArgumentException("Data source must be specified.");
+		if (writer == null) throw new IllegalArgumentException("Group commit writer must be specified.");
+		if (table == null || table.trim().isEmpty()) throw new IllegalArgumentException("Token table must be specified.");
+		this.dataSource = dataSource;
+		this.writer = writer;
+		this.insertSQL = "INSERT INTO " + table + " (value, type, consumer_key, permissions, userid, expiration, pair_value) VALUES (?, ?, ?, ?, ?, ?, ?)";
+		this.selectSQL = "SELECT consumer_key, permissions, userid, expiration, pair_value FROM " + table + " WHERE value = ? AND type = ?";
+		this.selectValidSQL = "SELECT value, expiration FROM " + table
+				+ " WHERE consumer_key = ? AND permissions = ? AND userid = ? AND type = ? AND expiration > ? ORDER BY expiration DESC";
+		this.updateSQL = "UPDATE " + table + " SET expiration = ? WHERE value = ?";
+		this.deleteSQL = "DELETE FROM " + table + " WHERE value = ?";
+		this.selectUserSQL = "SELECT value, pair_value FROM " + table + " WHERE userid = ? AND type <> ?";
+		this.selectConsumerSQL = "SELECT value, pair_value FROM " + table + " WHERE consumer_key = ? AND type <> ?";
+		this.revokeSQL = "UPDATE " + table + " SET expiration = ? WHERE value = ? AND expiration > ?";
+	}
+
+	@Override
+	public AbstractAuthorizationToken insertAuthorizationToken(final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration) throws SQLException {
+		this.writer.execute(this.insertSQL, value, JdbcTokenStore.Authorization, consumerKey, permissions, userid, expiration, null);
+		return new StoredAuthorizationToken(this, value, consumerKey, permissions, userid, expiration);
+	}
+
+	@Override
+	public AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException {
+		this.writer.execute(this.insertSQL, value, JdbcTokenStore.Refresh, null, null, null, expiration, accessTokenValue);
+		return new StoredRefreshToken(this, value, expiration, accessTokenValue);
+	}
+
+	@Override
+	public AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String consumerKey,
+			final String permissions, final String userid, final long expiration) throws SQLException {
+		final String refreshTokenValue = (refreshToken == null) ? null : refreshToken.value;
+		this.writer.execute(this.insertSQL, value, JdbcTokenStore.Access, consumerKey, permissions, userid, expiration, refreshTokenValue);
+		return new StoredAccessToken(this, value, consumerKey, permissions, userid, expiration, refreshTokenValue);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getAuthorizationToken(final String value) throws SQLException {
+		final Connection connection = this.dataSource.getConnection();
+		try {
+			final PreparedStatement statement = this.select(connection, value, JdbcTokenStore.Authorization);
+			try {
+				final ResultSet result = statement.executeQuery();
+				if (!result.next()) return null;
+				return new StoredAuthorizationToken(this, value, result.getString(1), result.getString(2), result.getString(3), result.getLong(4));
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Override
+	public AbstractAccessToken getAccessToken(final String value) throws SQLException {
+		final Connection connection = this.dataSource.getConnection();
+		try {
+			final PreparedStatement statement = this.select(connection, value, JdbcTokenStore.Access);
+			try {
+				final ResultSet result = statement.executeQuery();
+				if (!result.next()) return null;
+				return new StoredAccessToken(this, value, result.getString(1), result.getString(2), result.getString(3), result.getLong(4),
+						result.getString(5));
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Override
+	public AbstractRefreshToken getRefreshToken(final String value) throws SQLException {
+		final Connection connection = this.dataSource.getConnection();
+		try {
+			final PreparedStatement statement = this.select(connection, value, JdbcTokenStore.Refresh);
+			try {
+				final ResultSet result = statement.executeQuery();
+				if (!result.next()) return null;
+				return new StoredRefreshToken(this, value, result.getLong(4), result.getString(5));
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Prepare the statement selecting the token with
+	 * given value and type.
+	 * @param connection The <code>Connection</code>.
+	 * @param value The <code>String</code> token value.
+	 * @param type The <code>int</code> token type.
+	 * @return The <code>PreparedStatement</code>.
+	 * @throws SQLException If database access failed.
+	 */
+	private PreparedStatement select(final Connection connection, final String value, final int type) throws SQLException {
+		final PreparedStatement statement = connection.prepareStatement(this.selectSQL);
+		statement.setString(1, value);
+		statement.setInt(2, type);
+		return statement;
+	}
+
+	@Override
+	public AbstractAuthorizationToken getValidAuthorizationToken(final String consumerKey, final String permissions, final String userid)
+			throws SQLException {
+		final Connection connection = this.dataSource.getConnection();
+		try {
+			final PreparedStatement statement = connection.prepareStatement(this.selectValidSQL);
+			try {
+				statement.setMaxRows(1);
+				statement.setString(1, consumerKey);
+				statement.setString(2, permissions);
+				statement.setString(3, userid);
+				statement.setInt(4, JdbcTokenStore.Authorization);
+				statement.setLong(5, System.currentTimeMillis());
+				final ResultSet result = statement.executeQuery();
+				if (!result.next()) return null;
+				return new StoredAuthorizationToken(this, result.getString(1), consumerKey, permissions, userid, result.getLong(2));
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Override
+	public void updateExpiration(final String value, final long expiration) throws SQLException {
+		this.writer.execute(this.updateSQL, expiration, value);
+	}
+
+	@Override
+	public boolean remove(final String value) throws SQLException {
+		return (this.writer.execute(this.deleteSQL, value) != 0);
+	}
+
+	@Override
+	public long revokeByUser(final String userid) throws SQLException {
+		if (userid == null) return 0;
+		return this.revoke(this.selectUserSQL, userid);
+	}
+
+	@Override
+	public long revokeByConsumer(final String consumerKey) throws SQLException {
+		if (consumerKey == null) return 0;
+		return this.revoke(this.selectConsumerSQL, consumerKey);
+	}
+
+	/**
+	 * Revoke the authorization and access tokens selected
+	 * by the given statement, and the refresh tokens paired
+	 * with the access tokens, in a single transaction. The
+	 * token listeners are notified once it is committed.
+	 * @param selectSQL The <code>String</code> select
+	 * statement of the tokens.
+	 * @param key The <code>String</code> user ID or
+	 * consumer key.
+	 * @return The <code>long</code> number of valid
+	 * tokens revoked.
+	 * @throws SQLException If database access failed.
+	 */
+	private long revoke(final String selectSQL, final String key) throws SQLException {
+		final List<String> revoked = new ArrayList<String>();
+		final Connection connection = this.dataSource.getConnection();
+		try {
+			connection.setAutoCommit(false);
+			try {
+				final List<String> values = new ArrayList<String>();
+				final PreparedStatement select = connection.prepareStatement(selectSQL);
+				try {
+					select.setString(1, key);
+					select.setInt(2, JdbcTokenStore.Refresh);
+					final ResultSet result = select.executeQuery();
+					while (result.next()) {
+						values.add(result.getString(1));
+						final String pair = result.getString(2);
+						if (pair != null) values.add(pair);
+					}
+				} finally {
+					select.close();
+				}
+				if (!values.isEmpty()) {
+					final long now = System.currentTimeMillis();
+					final PreparedStatement update = connection.prepareStatement(this.revokeSQL);
+					try {
+						for (final String value : values) {
+							update.setLong(1, Long.MIN_VALUE);
+							update.setString(2, value);
+							update.setLong(3, now);
+							update.addBatch();
+						}
+						final int[] counts = update.executeBatch();
+						for (int i = 0; i < counts.length && i < values.size(); i++) {
+							if (counts[i] > 0) revoked.add(values.get(i));
+						}
+					} finally {
+						update.close();
+					}
+				}
+				connection.commit();
+			} catch (final Throwable e) {
+				try {
+					connection.rollback();
+				} catch (final SQLException rollbackFailure) {
+					e.addSuppressed(rollbackFailure);
+				}
+				throw e;
+			}
+		} finally {
+			connection.close();
+		}
+		for (final String value : revoked) {
+			TokenEvents.instance.fireInvalidated(value);
+		}
+		return revoked.size();
+	}
+}
@@ -0,0 +1,1002 @@
+package hemera.ext.oauth.store.mapped;
+
+import hemera.ext.oauth.store.AuthorizationKey;
+import hemera.ext.oauth.store.ITokenStore;
+import hemera.ext.oauth.store.StoredAccessToken;
+import hemera.ext.oauth.store.StoredAuthorizationToken;
+import hemera.ext.oauth.store.StoredRefreshToken;
+import hemera.ext.oauth.store.TokenKeys;
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+import hemera.ext.oauth.token.TokenEvents;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>MappedTokenStore</code> defines the off-heap
+ * implementation of <code>ITokenStore</code> backed by a
+ * memory-mapped file. Tokens do not occupy the heap, and
+ * survive process restarts. Opening an existing store
+ * only maps the file and reads its header, so the store
+ * is available within milliseconds regardless of the
+ * number of tokens.
+ * <p>
+ * The file is a fixed capacity open-addressing hash
+ * table of <code>256</code> byte records, keyed by the
+ * binary form of the hex encoded token value. A record
+ * holds the token type, the expiration, the binary value
+ * of the linked token, which is the refresh token of an
+ * access token and the access token of a refresh token,
+ * the consumer key, the user ID and the identifier of
+ * the permissions in a separate <code>PermissionDictionary</code>
+ * file. The table is split into independently locked
+ * partitions, each probed linearly. Removing a record
+ * shifts the following records of its probe sequence
+ * back, so that removals leave no deleted slots behind
+ * and lookups of absent keys stop at the end of their
+ * cluster even under sustained insertion and removal.
+ * While a record is shifted, it is hidden before its
+ * copy is published, so that a process crash may lose
+ * the record being shifted but never duplicates it.
+ * <p>
+ * Token values must be hex encoded and at most
+ * <code>96</code> characters long, which holds for the
+ * values generated by <code>AbstractConsumer</code>.
+ * Stateless access tokens are therefore not supported.
+ * Consumer keys are limited to <code>62</code> bytes and
+ * user IDs to <code>78</code> bytes in <code>UTF-8</code>.
+ * <p>
+ * Writes reach the operating system's page cache
+ * immediately, and therefore survive a process crash.
+ * <code>flush</code> forces them to the storage device.
+ * The index of valid authorization tokens is kept on
+ * the heap and is not restored on reopen, in which case
+ * consumers simply issue new authorization tokens.
+ * <p>
+ * The store keeps no index of the tokens of a user or a
+ * consumer, since the fixed records have no room for
+ * chain links and an index on the heap would not survive
+ * a reopen. Revoking the tokens of a user or a consumer
+ * therefore scans every record, locking one partition at
+ * a time, and costs time proportional to the capacity.
+ * Deployments that revoke frequently should prefer
+ * <code>CompactTokenStore</code> or <code>MemoryTokenStore</code>.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class MappedTokenStore implements ITokenStore {
+	/**
+	 * The <code>int</code> file format magic number.
+	 */
+	private static final int Magic = 0x484F544B;
+	/**
+	 * The <code>int</code> file format version.
+	 */
+	private static final int Version = 1;
+	/**
+	 * The <code>int</code> header size in bytes.
+	 */
+	private static final int HeaderSize = 4096;
+	/**
+	 * The <code>int</code> header offset of the per
+	 * partition record counts.
+	 */
+	private static final int HeaderCounts = 64;
+	/**
+	 * The <code>int</code> record size in bytes.
+	 */
+	private static final int RecordSize = 256;
+	/**
+	 * The <code>int</code> number of partitions.
+	 */
+	private static final int PartitionCount = 64;
+	/**
+	 * The <code>int</code> number of bits of a mapped
+	 * segment size.
+	 */
+	private static final int SegmentBits = 30;
+	/**
+	 * The <code>float</code> maximum partition load.
+	 */
+	private static final float MaxLoad = 0.9f;
+	/**
+	 * The <code>String</code> SQL state reported for
+	 * duplicate token values.
+	 */
+	private static final String DuplicateState = "23000";
+	/**
+	 * The <code>Charset</code> of strings in records.
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/**
+	 * The <code>byte</code> state of an empty slot.
+	 */
+	private static final byte StateEmpty = 0;
+	/**
+	 * The <code>byte</code> state of a used slot.
+	 */
+	private static final byte StateUsed = 1;
+	/**
+	 * The <code>byte</code> state of a deleted slot,
+	 * which continues probe sequences. Deleted slots only
+	 * exist while records are shifted back, or in files
+	 * written by earlier versions, and are reclaimed by
+	 * later removals.
+	 */
+	private static final byte StateDeleted = 2;
+	/**
+	 * The <code>byte</code> authorization token type.
+	 */
+	private static final byte TypeAuthorization = 1;
+	/**
+	 * The <code>byte</code> access token type.
+	 */
+	private static final byte TypeAccess = 2;
+	/**
+	 * The <code>byte</code> refresh token type.
+	 */
+	private static final byte TypeRefresh = 3;
+	/**
+	 * The <code>int</code> offset of the state.
+	 */
+	private static final int FieldState = 0;
+	/**
+	 * The <code>int</code> offset of the type.
+	 */
+	private static final int FieldType = 1;
+	/**
+	 * The <code>int</code> offset of the key length.
+	 */
+	private static final int FieldKeyLength = 2;
+	/**
+	 * The <code>int</code> offset of the linked key
+	 * length.
+	 */
+	private static final int FieldLinkLength = 3;
+	/**
+	 * The <code>int</code> offset of the permissions
+	 * identifier.
+	 */
+	private static final int FieldPermissions = 4;
+	/**
+	 * The <code>int</code> offset of the expiration.
+	 */
+	private static final int FieldExpiration = 8;
+	/**
+	 * The <code>int</code> offset of the key.
+	 */
+	private static final int FieldKey = 16;
+	/**
+	 * The <code>int</code> offset of the linked key.
+	 */
+	private static final int FieldLink = 64;
+	/**
+	 * The <code>int</code> offset of the consumer key.
+	 */
+	private static final int FieldConsumerKey = 112;
+	/**
+	 * The <code>int</code> offset of the user ID.
+	 */
+	private static final int FieldUserid = 176;
+	/**
+	 * The <code>int</code> maximum consumer key length
+	 * in bytes.
+	 */
+	private static final int MaxConsumerKeyLength = 62;
+	/**
+	 * The <code>int</code> maximum user ID length in
+	 * bytes.
+	 */
+	private static final int MaxUseridLength = 78;
+	/**
+	 * The <code>RandomAccessFile</code> of records.
+	 */
+	private final RandomAccessFile file;
+	/**
+	 * The <code>MappedByteBuffer</code> header.
+	 */
+	private final MappedByteBuffer header;
+	/**
+	 * The <code>MappedByteBuffer</code> array of record
+	 * segments.
+	 */
+	private final MappedByteBuffer[] segments;
+	/**
+	 * The <code>int</code> number of slots per partition.
+	 */
+	private final int partitionSlots;
+	/**
+	 * The <code>int</code> maximum number of records
+	 * per partition.
+	 */
+	private final int partitionLimit;
+	/**
+	 * The <code>ReentrantLock</code> array of partition
+	 * locks.
+	 */
+	private final ReentrantLock[] locks;
+	/**
+	 * The <code>PermissionDictionary</code>.
+	 */
+	private final PermissionDictionary dictionary;
+	/**
+	 * The <code>ConcurrentHashMap</code> of
+	 * <code>AuthorizationKey</code> to the most recently
+	 * issued authorization token value.
+	 */
+	private final ConcurrentHashMap<AuthorizationKey, String> authorizationIndex;
+
+	/**
+	 * Constructor of <code>MappedTokenStore</code>. If
+	 * the file exists, the store is reopened with its
+	 * existing capacity. Otherwise a new store is created.
+	 * @param path The <code>File</code> path of the store.
+	 * The permission dictionary is stored next to it with
+	 * the <code>.permissions</code> suffix.
+	 * @param capacity The <code>long</code> minimum number
+	 * of tokens of a new store.
+	 * @throws IOException If opening the file failed or
+	 * the file is not a valid store.
+	 */
+	public MappedTokenStore(final File path, final long capacity) throws IOException {
+		final boolean exists = path.exists() && path.length() > 0;
+		this.file = new RandomAccessFile(path, "rw");
+		try {
+			final FileChannel channel = this.file.getChannel();
+			final int partitionSlots;
+			if (exists) {
+				this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, MappedTokenStore.HeaderSize);
+				if (this.header.getInt(0) != MappedTokenStore.Magic || this.header.getInt(4) != MappedTokenStore.Version ||
+						this.header.getInt(8) != MappedTokenStore.RecordSize || this.header.getInt(12) != MappedTokenStore.PartitionCount) {
+					throw new IOException("Not a valid token store: " + path);
+				}
+				partitionSlots = this.header.getInt(16);
+			} else {
+				if (capacity <= 0) throw new IllegalArgumentException("Token store capacity must be positive.");
+				final long minimum = (long)Math.ceil(capacity / (double)MappedTokenStore.PartitionCount / MappedTokenStore.MaxLoad);
+				int slots = 64;
+				while (slots < minimum) {
+					if (slots >= (1 << 28)) throw new IllegalArgumentException("Token store capacity is too large.");
+					slots <<= 1;
+				}
+				partitionSlots = slots;
+				this.file.setLength(MappedTokenStore.HeaderSize + ((long)slots * MappedTokenStore.PartitionCount * MappedTokenStore.RecordSize));
+				this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, MappedTokenStore.HeaderSize);
+				this.header.putInt(4, MappedTokenStore.Version);
+				this.header.putInt(8, MappedTokenStore.RecordSize);
+				this.header.putInt(12, MappedTokenStore.PartitionCount);
+				this.header.putInt(16, partitionSlots);
+				// Magic number last marks the header complete.
+				this.header.putInt(0, MappedTokenStore.Magic);
+			}
+			this.partitionSlots = partitionSlots;
+			this.partitionLimit = (int)(partitionSlots * MappedTokenStore.MaxLoad);
+			final long recordBytes = (long)partitionSlots * MappedTokenStore.PartitionCount * MappedTokenStore.RecordSize;
+			final long segmentSize = 1L << MappedTokenStore.SegmentBits;
+			final int segmentCount = (int)((recordBytes + segmentSize - 1) / segmentSize);
+			this.segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				final long start = i * segmentSize;
+				final long size = Math.min(segmentSize, recordBytes - start);
+				this.segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, MappedTokenStore.HeaderSize + start, size);
+			}
+			this.locks = new ReentrantLock[MappedTokenStore.PartitionCount];
+			for (int i = 0; i < this.locks.length; i++) {
+				this.locks[i] = new ReentrantLock();
+			}
+			this.dictionary = new PermissionDictionary(new File(path.getPath() + ".permissions"));
+			this.authorizationIndex = new ConcurrentHashMap<AuthorizationKey, String>();
+		} catch (final IOException e) {
+			this.file.close();
+			throw e;
+		} catch (final RuntimeException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public AbstractAuthorizationToken insertAuthorizationToken(final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration) throws SQLException {
+		this.insert(MappedTokenStore.TypeAuthorization, value, null, consumerKey, permissions, userid, expiration);
+		final StoredAuthorizationToken token = new StoredAuthorizationToken(this, value, consumerKey, permissions, userid, expiration);
+		// Key the index by the pooled strings of the token.
+		this.authorizationIndex.put(new AuthorizationKey(token.consumerKey, token.permissions, token.userid), value);
+		return token;
+	}
+
+	@Override
+	public AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException {
+		this.insert(MappedTokenStore.TypeRefresh, value, accessTokenValue, null, null, null, expiration);
+		return new StoredRefreshToken(this, value, expiration, accessTokenValue);
+	}
+
+	@Override
+	public AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String consumerKey,
+			final String permissions, final String userid, final long expiration) throws SQLException {
+		final String refreshTokenValue = (refreshToken == null) ? null : refreshToken.value;
+		this.insert(MappedTokenStore.TypeAccess, value, refreshTokenValue, consumerKey, permissions, userid, expiration);
+		return new StoredAccessToken(this, value, consumerKey, permissions, userid, expiration, refreshTokenValue);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getAuthorizationToken(final String value) {
+		final Record record = this.read(value, MappedTokenStore.TypeAuthorization);
+		if (record == null) return null;
+		return new StoredAuthorizationToken(this, value, record.consumerKey, record.permissions, record.userid, record.expiration);
+	}
+
+	@Override
+	public AbstractAccessToken getAccessToken(final String value) {
+		final Record record = this.read(value, MappedTokenStore.TypeAccess);
+		if (record == null) return null;
+		return new StoredAccessToken(this, value, record.consumerKey, record.permissions, record.userid, record.expiration, record.link);
+	}
+
+	@Override
+	public AbstractRefreshToken getRefreshToken(final String value) {
+		final Record record = this.read(value, MappedTokenStore.TypeRefresh);
+		if (record == null) return null;
+		return new StoredRefreshToken(this, value, record.expiration, record.link);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getValidAuthorizationToken(final String consumerKey, final String permissions, final String userid) {
+		final AuthorizationKey key = new AuthorizationKey(consumerKey, permissions, userid);
+		final String value = this.authorizationIndex.get(key);
+		if (value == null) return null;
+		final AbstractAuthorizationToken token = this.getAuthorizationToken(value);
+		if (token != null && token.isValid()) return token;
+		this.authorizationIndex.remove(key, value);
+		return null;
+	}
+
+	@Override
+	public void updateExpiration(final String value, final long expiration) {
+		final byte[] key = new byte[TokenKeys.MaxLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength < 0) return;
+		final int hash = MappedTokenStore.hash(key, keyLength);
+		final int partition = MappedTokenStore.partitionOf(hash);
+		final ReentrantLock lock = this.locks[partition];
+		lock.lock();
+		try {
+			final long slot = this.find(partition, hash, key, keyLength);
+			if (slot < 0) return;
+			this.segment(slot).putLong(MappedTokenStore.position(slot) + MappedTokenStore.FieldExpiration, expiration);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(final String value) {
+		final byte[] key = new byte[TokenKeys.MaxLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength < 0) return false;
+		final int hash = MappedTokenStore.hash(key, keyLength);
+		final int partition = MappedTokenStore.partitionOf(hash);
+		final ReentrantLock lock = this.locks[partition];
+		lock.lock();
+		try {
+			final long slot = this.find(partition, hash, key, keyLength);
+			if (slot < 0) return false;
+			this.setState(slot, MappedTokenStore.StateDeleted);
+			this.shiftBack(partition, slot);
+			this.addCount(partition, -1);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long revokeByUser(final String userid) {
+		if (userid == null) return 0;
+		return this.revoke(MappedTokenStore.FieldUserid, userid.getBytes(MappedTokenStore.UTF8));
+	}
+
+	@Override
+	public long revokeByConsumer(final String consumerKey) {
+		if (consumerKey == null) return 0;
+		return this.revoke(MappedTokenStore.FieldConsumerKey, consumerKey.getBytes(MappedTokenStore.UTF8));
+	}
+
+	/**
+	 * Revoke the authorization and access tokens whose
+	 * given string field equals the given bytes, and the
+	 * refresh tokens linked to the access tokens.
+	 * <p>
+	 * Records are matched by a single scan of each
+	 * partition under its lock, comparing the field in
+	 * place.
+	 * The linked refresh tokens are then expired by key.
+	 * Listeners are notified outside locks.
+	 * @param field The <code>int</code> field position.
+	 * @param target The <code>byte</code> array to match.
+	 * @return The <code>long</code> number of valid
+	 * tokens revoked.
+	 */
+	private long revoke(final int field, final byte[] target) {
+		final long now = System.currentTimeMillis();
+		final List<String> values = new ArrayList<String>();
+		final List<byte[]> links = new ArrayList<byte[]>();
+		long count = 0;
+		for (int partition = 0; partition < MappedTokenStore.PartitionCount; partition++) {
+			final long base = (long)partition * this.partitionSlots;
+			final ReentrantLock lock = this.locks[partition];
+			lock.lock();
+			try {
+				for (int i = 0; i < this.partitionSlots; i++) {
+					final long slot = base + i;
+					final MappedByteBuffer segment = this.segment(slot);
+					final int position = MappedTokenStore.position(slot);
+					if (segment.get(position + MappedTokenStore.FieldState) != MappedTokenStore.StateUsed) continue;
+					final byte type = segment.get(position + MappedTokenStore.FieldType);
+					if (type != MappedTokenStore.TypeAuthorization && type != MappedTokenStore.TypeAccess) continue;
+					if (!MappedTokenStore.stringEquals(segment, position + field, target)) continue;
+					if (segment.getLong(position + MappedTokenStore.FieldExpiration) > now) count++;
+					segment.putLong(position + MappedTokenStore.FieldExpiration, Long.MIN_VALUE);
+					final byte[] key = new byte[segment.get(position + MappedTokenStore.FieldKeyLength)];
+					for (int j = 0; j < key.length; j++) key[j] = segment.get(position + MappedTokenStore.FieldKey + j);
+					values.add(TokenKeys.instance.encode(key, key.length));
+					final int linkLength = segment.get(position + MappedTokenStore.FieldLinkLength);
+					if (type == MappedTokenStore.TypeAccess && linkLength > 0) {
+						final byte[] link = new byte[linkLength];
+						for (int j = 0; j < linkLength; j++) link[j] = segment.get(position + MappedTokenStore.FieldLink + j);
+						links.add(link);
+						links.add(key);
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			this.fireInvalidated(values);
+		}
+		// Expire the refresh tokens still linked back.
+		for (int i = 0; i < links.size(); i += 2) {
+			final byte[] key = links.get(i);
+			final byte[] access = links.get(i+1);
+			final int hash = MappedTokenStore.hash(key, key.length);
+			final int partition = MappedTokenStore.partitionOf(hash);
+			final ReentrantLock lock = this.locks[partition];
+			lock.lock();
+			try {
+				final long slot = this.find(partition, hash, key, key.length);
+				if (slot < 0) continue;
+				final MappedByteBuffer segment = this.segment(slot);
+				final int position = MappedTokenStore.position(slot);
+				if (segment.get(position + MappedTokenStore.FieldType) != MappedTokenStore.TypeRefresh) continue;
+				if (!MappedTokenStore.linkEquals(segment, position, access)) continue;
+				if (segment.getLong(position + MappedTokenStore.FieldExpiration) > now) count++;
+				segment.putLong(position + MappedTokenStore.FieldExpiration, Long.MIN_VALUE);
+				values.add(TokenKeys.instance.encode(key, key.length));
+			} finally {
+				lock.unlock();
+			}
+		}
+		this.fireInvalidated(values);
+		return count;
+	}
+
+	/**
+	 * Notify the token listeners that the tokens with
+	 * the given values have been invalidated, and clear
+	 * the given list.
+	 * @param values The <code>List</code> of token values.
+	 */
+	private void fireInvalidated(final List<String> values) {
+		for (int i = 0; i < values.size(); i++) {
+			TokenEvents.instance.fireInvalidated(values.get(i));
+		}
+		values.clear();
+	}
+
+	/**
+	 * Retrieve the number of stored tokens.
+	 * @return The <code>long</code> number of tokens.
+	 */
+	public long size() {
+		long size = 0;
+		for (int i = 0; i < MappedTokenStore.PartitionCount; i++) {
+			this.locks[i].lock();
+			try {
+				size += this.header.getInt(MappedTokenStore.HeaderCounts + (i*4));
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Retrieve the maximum number of tokens.
+	 * @return The <code>long</code> capacity.
+	 */
+	public long getCapacity() {
+		return (long)this.partitionLimit * MappedTokenStore.PartitionCount;
+	}
+
+	/**
+	 * Force all the writes to the storage device.
+	 * @throws IOException If writing failed.
+	 */
+	public void flush() throws IOException {
+		for (int i = 0; i < this.locks.length; i++) this.locks[i].lock();
+		try {
+			for (int i = 0; i < this.segments.length; i++) this.segments[i].force();
+			this.header.force();
+		} finally {
+			for (int i = 0; i < this.locks.length; i++) this.locks[i].unlock();
+		}
+		this.dictionary.force();
+	}
+
+	/**
+	 * Flush and close the store. The mapped memory is
+	 * released once the store is garbage collected.
+	 * @throws IOException If closing failed.
+	 */
+	public void close() throws IOException {
+		try {
+			this.flush();
+		} finally {
+			this.dictionary.close();
+			this.file.close();
+		}
+	}
+
+	/**
+	 * Insert a new record.
+	 * @param type The <code>byte</code> token type.
+	 * @param value The <code>String</code> token value.
+	 * @param link The <code>String</code> linked token
+	 * value. Or <code>null</code>.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key. Or <code>null</code>.
+	 * @param permissions The <code>String</code>
+	 * permissions. Or <code>null</code>.
+	 * @param userid The <code>String</code> user ID. Or
+	 * <code>null</code>.
+	 * @param expiration The <code>long</code> expiration.
+	 * @throws SQLException If the record cannot be stored.
+	 */
+	private void insert(final byte type, final String value, final String link, final String consumerKey, final String permissions,
+			final String userid, final long expiration) throws SQLException {
+		final byte[] key = new byte[TokenKeys.MaxLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength <= 0) throw new SQLException("Token value is not supported: " + value);
+		final byte[] linkKey = new byte[TokenKeys.MaxLength];
+		final int linkLength = (link == null) ? 0 : TokenKeys.instance.decode(link, linkKey);
+		if (linkLength < 0) throw new SQLException("Linked token value is not supported: " + link);
+		final byte[] consumerKeyBytes = MappedTokenStore.encode(consumerKey, MappedTokenStore.MaxConsumerKeyLength, "Consumer key");
+		final byte[] useridBytes = MappedTokenStore.encode(userid, MappedTokenStore.MaxUseridLength, "User ID");
+		final int permissionsId;
+		try {
+			permissionsId = (permissions == null) ? -1 : this.dictionary.idOf(permissions);
+		} catch (final IOException e) {
+			throw new SQLException("Storing permissions failed.", e);
+		}
+		final int hash = MappedTokenStore.hash(key, keyLength);
+		final int partition = MappedTokenStore.partitionOf(hash);
+		final long base = (long)partition * this.partitionSlots;
+		final ReentrantLock lock = this.locks[partition];
+		lock.lock();
+		try {
+			if (this.header.getInt(MappedTokenStore.HeaderCounts + (partition*4)) >= this.partitionLimit) {
+				throw new SQLException("Token store is full.");
+			}
+			// Probe for duplicates, remembering the first free slot.
+			long free = -1;
+			for (int i = 0; i < this.partitionSlots; i++) {
+				final long slot = base + ((hash + i) & (this.partitionSlots-1));
+				final MappedByteBuffer segment = this.segment(slot);
+				final int position = MappedTokenStore.position(slot);
+				final byte state = segment.get(position + MappedTokenStore.FieldState);
+				if (state == MappedTokenStore.StateEmpty) {
+					if (free < 0) free = slot;
+					break;
+				} else if (state == MappedTokenStore.StateDeleted) {
+					if (free < 0) free = slot;
+				} else if (MappedTokenStore.keyEquals(segment, position, key, keyLength)) {
+					throw new SQLException("Duplicate token value: " + value, MappedTokenStore.DuplicateState);
+				}
+			}
+			if (free < 0) throw new SQLException("Token store is full.");
+			final MappedByteBuffer segment = this.segment(free);
+			final int position = MappedTokenStore.position(free);
+			segment.put(position + MappedTokenStore.FieldType, type);
+			segment.put(position + MappedTokenStore.FieldKeyLength, (byte)keyLength);
+			segment.put(position + MappedTokenStore.FieldLinkLength, (byte)linkLength);
+			segment.putInt(position + MappedTokenStore.FieldPermissions, permissionsId);
+			segment.putLong(position + MappedTokenStore.FieldExpiration, expiration);
+			for (int i = 0; i < keyLength; i++) segment.put(position + MappedTokenStore.FieldKey + i, key[i]);
+			for (int i = 0; i < linkLength; i++) segment.put(position + MappedTokenStore.FieldLink + i, linkKey[i]);
+			MappedTokenStore.putString(segment, position + MappedTokenStore.FieldConsumerKey, consumerKeyBytes);
+			MappedTokenStore.putString(segment, position + MappedTokenStore.FieldUserid, useridBytes);
+			// State last marks the record complete.
+			segment.put(position + MappedTokenStore.FieldState, MappedTokenStore.StateUsed);
+			this.addCount(partition, 1);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Read the record of the given token value.
+	 * @param value The <code>String</code> token value.
+	 * @param type The <code>byte</code> expected type.
+	 * @return The <code>Record</code>. Or <code>null</code>
+	 * if there is no such token of the given type.
+	 */
+	private Record read(final String value, final byte type) {
+		final byte[] key = new byte[TokenKeys.MaxLength];
+		final int keyLength = TokenKeys.instance.decode(value, key);
+		if (keyLength <= 0) return null;
+		final int hash = MappedTokenStore.hash(key, keyLength);
+		final int partition = MappedTokenStore.partitionOf(hash);
+		final byte[] link;
+		final byte[] consumerKey;
+		final byte[] userid;
+		final int permissionsId;
+		final long expiration;
+		final ReentrantLock lock = this.locks[partition];
+		lock.lock();
+		try {
+			final long slot = this.find(partition, hash, key, keyLength);
+			if (slot < 0) return null;
+			final MappedByteBuffer segment = this.segment(slot);
+			final int position = MappedTokenStore.position(slot);
+			if (segment.get(position + MappedTokenStore.FieldType) != type) return null;
+			link = new byte[segment.get(position + MappedTokenStore.FieldLinkLength)];
+			for (int i = 0; i < link.length; i++) link[i] = segment.get(position + MappedTokenStore.FieldLink + i);
+			consumerKey = MappedTokenStore.getString(segment, position + MappedTokenStore.FieldConsumerKey);
+			userid = MappedTokenStore.getString(segment, position + MappedTokenStore.FieldUserid);
+			permissionsId = segment.getInt(position + MappedTokenStore.FieldPermissions);
+			expiration = segment.getLong(position + MappedTokenStore.FieldExpiration);
+		} finally {
+			lock.unlock();
+		}
+		final String linkValue = (link.length == 0) ? null : TokenKeys.instance.encode(link, link.length);
+		final String consumerKeyValue = (consumerKey == null) ? null : new String(consumerKey, MappedTokenStore.UTF8);
+		final String useridValue = (userid == null) ? null : new String(userid, MappedTokenStore.UTF8);
+		return new Record(linkValue, consumerKeyValue, this.dictionary.permissionsOf(permissionsId), useridValue, expiration);
+	}
+
+	/**
+	 * Find the slot of the given key. The partition lock
+	 * must be held.
+	 * @param partition The <code>int</code> partition.
+	 * @param hash The <code>int</code> key hash.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return The <code>long</code> slot. Or <code>-1</code>
+	 * if the key is not stored.
+	 */
+	private long find(final int partition, final int hash, final byte[] key, final int keyLength) {
+		final long base = (long)partition * this.partitionSlots;
+		for (int i = 0; i < this.partitionSlots; i++) {
+			final long slot = base + ((hash + i) & (this.partitionSlots-1));
+			final MappedByteBuffer segment = this.segment(slot);
+			final int position = MappedTokenStore.position(slot);
+			final byte state = segment.get(position + MappedTokenStore.FieldState);
+			if (state == MappedTokenStore.StateEmpty) return -1;
+			else if (state == MappedTokenStore.StateUsed && MappedTokenStore.keyEquals(segment, position, key, keyLength)) return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 * Fill the given deleted slot by shifting back the
+	 * following records whose probe sequence passes it,
+	 * then empty the last vacated slot along with the
+	 * deleted slots before it. The partition lock must be
+	 * held.
+	 * @param partition The <code>int</code> partition.
+	 * @param slot The <code>long</code> deleted slot.
+	 */
+	private void shiftBack(final int partition, final long slot) {
+		final long base = (long)partition * this.partitionSlots;
+		final int mask = this.partitionSlots-1;
+		long gap = slot;
+		long next = base + ((gap - base + 1) & mask);
+		for (int i = 1; i < this.partitionSlots; i++) {
+			final MappedByteBuffer segment = this.segment(next);
+			final int position = MappedTokenStore.position(next);
+			final byte state = segment.get(position + MappedTokenStore.FieldState);
+			if (state == MappedTokenStore.StateEmpty) break;
+			else if (state == MappedTokenStore.StateUsed) {
+				final long home = MappedTokenStore.recordHash(segment, position) & mask;
+				final long offset = next - base;
+				if (((offset - home) & mask) >= ((offset - (gap - base)) & mask)) {
+					// Hide the record before publishing its copy.
+					this.copy(next, gap);
+					segment.put(position + MappedTokenStore.FieldState, MappedTokenStore.StateDeleted);
+					this.setState(gap, MappedTokenStore.StateUsed);
+					gap = next;
+				}
+			}
+			next = base + ((next - base + 1) & mask);
+		}
+		// Without a following empty slot, which only occurs
+		// with deleted slots of earlier versions, the gap
+		// must continue probe sequences.
+		if (this.segment(next).get(MappedTokenStore.position(next) + MappedTokenStore.FieldState) != MappedTokenStore.StateEmpty) return;
+		// A slot followed by an empty slot ends no probe
+		// sequence, so the gap and the deleted slots before
+		// it can be emptied.
+		long previous = gap;
+		do {
+			this.setState(previous, MappedTokenStore.StateEmpty);
+			previous = base + ((previous - base - 1) & mask);
+		} while (previous != gap && this.segment(previous).get(MappedTokenStore.position(previous) + MappedTokenStore.FieldState) ==
+				MappedTokenStore.StateDeleted);
+	}
+
+	/**
+	 * Copy the fields of the record in the given source
+	 * slot to the given target slot, without its state.
+	 * The partition lock must be held.
+	 * @param source The <code>long</code> source slot.
+	 * @param target The <code>long</code> target slot.
+	 */
+	private void copy(final long source, final long target) {
+		final MappedByteBuffer sourceSegment = this.segment(source);
+		final MappedByteBuffer targetSegment = this.segment(target);
+		final int sourcePosition = MappedTokenStore.position(source);
+		final int targetPosition = MappedTokenStore.position(target);
+		for (int i = MappedTokenStore.FieldType; i < MappedTokenStore.FieldExpiration; i++) {
+			targetSegment.put(targetPosition + i, sourceSegment.get(sourcePosition + i));
+		}
+		for (int i = MappedTokenStore.FieldExpiration; i < MappedTokenStore.RecordSize; i += 8) {
+			targetSegment.putLong(targetPosition + i, sourceSegment.getLong(sourcePosition + i));
+		}
+	}
+
+	/**
+	 * Set the state of the given slot. The partition
+	 * lock must be held.
+	 * @param slot The <code>long</code> slot.
+	 * @param state The <code>byte</code> state.
+	 */
+	private void setState(final long slot, final byte state) {
+		this.segment(slot).put(MappedTokenStore.position(slot) + MappedTokenStore.FieldState, state);
+	}
+
+	/**
+	 * Update the record count of the given partition.
+	 * The partition lock must be held.
+	 * @param partition The <code>int</code> partition.
+	 * @param delta The <code>int</code> count change.
+	 */
+	private void addCount(final int partition, final int delta) {
+		final int index = MappedTokenStore.HeaderCounts + (partition*4);
+		this.header.putInt(index, this.header.getInt(index) + delta);
+	}
+
+	/**
+	 * Retrieve the segment containing the given slot.
+	 * @param slot The <code>long</code> slot.
+	 * @return The <code>MappedByteBuffer</code> segment.
+	 */
+	private MappedByteBuffer segment(final long slot) {
+		return this.segments[(int)((slot * MappedTokenStore.RecordSize) >>> MappedTokenStore.SegmentBits)];
+	}
+
+	/**
+	 * Retrieve the position of the given slot in its
+	 * segment.
+	 * @param slot The <code>long</code> slot.
+	 * @return The <code>int</code> position.
+	 */
+	private static int position(final long slot) {
+		return (int)((slot * MappedTokenStore.RecordSize) & ((1L << MappedTokenStore.SegmentBits) - 1));
+	}
+
+	/**
+	 * Retrieve the partition of the given hash.
+	 * @param hash The <code>int</code> key hash.
+	 * @return The <code>int</code> partition.
+	 */
+	private static int partitionOf(final int hash) {
+		return hash >>> 26;
+	}
+
+	/**
+	 * Hash the given key.
+	 * @param key The <code>byte</code> array key.
+	 * @param length The <code>int</code> key length.
+	 * @return The <code>int</code> hash.
+	 */
+	private static int hash(final byte[] key, final int length) {
+		int hash = length;
+		for (int i = 0; i < length; i++) hash = (31 * hash) + key[i];
+		return MappedTokenStore.spread(hash);
+	}
+
+	/**
+	 * Hash the key of the record at the given position,
+	 * as <code>hash</code> does for the decoded key.
+	 * @param segment The <code>MappedByteBuffer</code>.
+	 * @param position The <code>int</code> record position.
+	 * @return The <code>int</code> hash.
+	 */
+	private static int recordHash(final MappedByteBuffer segment, final int position) {
+		final int length = segment.get(position + MappedTokenStore.FieldKeyLength);
+		int hash = length;
+		for (int i = 0; i < length; i++) hash = (31 * hash) + segment.get(position + MappedTokenStore.FieldKey + i);
+		return MappedTokenStore.spread(hash);
+	}
+
+	/**
+	 * Spread the given key hash.
+	 * @param hash The <code>int</code> hash.
+	 * @return The <code>int</code> spread hash.
+	 */
+	private static int spread(final int hash) {
+		final int spread = hash * 0x9E3779B9;
+		return spread ^ (spread >>> 16);
+	}
+
+	/**
+	 * Check if the record at the given position has the
+	 * given key.
+	 * @param segment The <code>MappedByteBuffer</code>.
+	 * @param position The <code>int</code> record position.
+	 * @param key The <code>byte</code> array key.
+	 * @param keyLength The <code>int</code> key length.
+	 * @return <code>true</code> if the keys are equal.
+	 * <code>false</code> otherwise.
+	 */
+	private static boolean keyEquals(final MappedByteBuffer segment, final int position, final byte[] key, final int keyLength) {
+		if (segment.get(position + MappedTokenStore.FieldKeyLength) != keyLength) return false;
+		for (int i = 0; i < keyLength; i++) {
+			if (segment.get(position + MappedTokenStore.FieldKey + i) != key[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the record at the given position links
+	 * to the given key.
+	 * @param segment The <code>MappedByteBuffer</code>.
+	 * @param position The <code>int</code> record position.
+	 * @param key The <code>byte</code> array key.
+	 * @return <code>true</code> if the linked key is equal.
+	 * <code>false</code> otherwise.
+	 */
+	private static boolean linkEquals(final MappedByteBuffer segment, final int position, final byte[] key) {
+		if (segment.get(position + MappedTokenStore.FieldLinkLength) != key.length) return false;
+		for (int i = 0; i < key.length; i++) {
+			if (segment.get(position + MappedTokenStore.FieldLink + i) != key[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the given string field equals the given
+	 * bytes without decoding it.
+	 * @param segment The <code>MappedByteBuffer</code>.
+	 * @param position The <code>int</code> field position.
+	 * @param bytes The <code>byte</code> array.
+	 * @return <code>true</code> if the field is equal.
+	 * <code>false</code> otherwise.
+	 */
+	private static boolean stringEquals(final MappedByteBuffer segment, final int position, final byte[] bytes) {
+		if (segment.getShort(position) != bytes.length) return false;
+		for (int i = 0; i < bytes.length; i++) {
+			if (segment.get(position + 2 + i) != bytes[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Encode the given string field.
+	 * @param value The <code>String</code> value. Or
+	 * <code>null</code>.
+	 * @param maxLength The <code>int</code> maximum
+	 * encoded length.
+	 * @param name The <code>String</code> field name.
+	 * @return The <code>byte</code> array. Or
+	 * <code>null</code> if the value is <code>null</code>.
+	 * @throws SQLException If the value is too long.
+	 */
+	private static byte[] encode(final String value, final int maxLength, final String name) throws SQLException {
+		if (value == null) return null;
+		final byte[] bytes = value.getBytes(MappedTokenStore.UTF8);
+		if (bytes.length > maxLength) throw new SQLException(name + " is too long: " + value);
+		return bytes;
+	}
+
+	/**
+	 * Write the given string field.
+	 * @param segment The <code>MappedByteBuffer</code>.
+	 * @param position The <code>int</code> field position.
+	 * @param bytes The <code>byte</code> array. Or
+	 * <code>null</code>.
+	 */
+	private static void putString(final MappedByteBuffer segment, final int position, final byte[] bytes) {
+		if (bytes == null) {
+			segment.putShort(position, (short)-1);
+			return;
+		}
+		segment.putShort(position, (short)bytes.length);
+		for (int i = 0; i < bytes.length; i++) segment.put(position + 2 + i, bytes[i]);
+	}
+
+	/**
+	 * Read the given string field.
+	 * @param segment The <code>MappedByteBuffer</code>.
+	 * @param position The <code>int</code> field position.
+	 * @return The <code>byte</code> array. Or
+	 * <code>null</code> if the field is empty.
+	 */
+	private static byte[] getString(final MappedByteBuffer segment, final int position) {
+		final short length = segment.getShort(position);
+		if (length < 0) return null;
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) bytes[i] = segment.get(position + 2 + i);
+		return bytes;
+	}
+
+	/**
+	 * <code>Record</code> defines the decoded fields of
+	 * a token record.
+	 */
+	private static final class Record {
+		/**
+		 * The <code>String</code> linked token value.
+		 */
+		private final String link;
+		/**
+		 * The <code>String</code> consumer key.
+		 */
+		private final String consumerKey;
+		/**
+		 * The <code>String</code> permissions.
+		 */
+		private final String permissions;
+		/**
+		 * The <code>String</code> user ID.
+		 */
+		private final String userid;
+		/**
+		 * The <code>long</code> expiration.
+		 */
+		private final long expiration;
+
+		/**
+		 * Constructor of <code>Record</code>.
+		 * @param link The <code>String</code> linked
+		 * token value.
+		 * @param consumerKey The <code>String</code>
+		 * consumer key.
+		 * @param permissions The <code>String</code>
+		 * permissions.
+		 * @param userid The <code>String</code> user ID.
+		 * @param expiration The <code>long</code>
+		 * expiration.
+		 */
+		private Record(final String link, final String consumerKey, final String permissions, final String userid, final long expiration) {
+			this.link = link;
+			this.consumerKey = consumerKey;
+			this.permissions = permissions;
+			this.userid = userid;
+			this.expiration = expiration;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package hemera.ext.oauth.store.mapped;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>PermissionDictionary</code> defines the persistent
+ * append-only dictionary of permission strings, which
+ * allows token records to refer to their permissions by
+ * a fixed size identifier. The number of distinct
+ * permission strings is expected to be small.
+ * <p>
+ * Each entry is appended as a modified UTF-8 string, and
+ * the identifier of an entry is its position in the file.
+ * A partially written trailing entry is discarded when
+ * the dictionary is opened.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+class PermissionDictionary {
+	/**
+	 * The <code>RandomAccessFile</code> of entries.
+	 */
+	private final RandomAccessFile file;
+	/**
+	 * The <code>ConcurrentHashMap</code> of permissions
+	 * to <code>Integer</code> identifier.
+	 */
+	private final ConcurrentHashMap<String, Integer> ids;
+	/**
+	 * The <code>ReentrantLock</code> guarding appends.
+	 */
+	private final ReentrantLock lock;
+	/**
+	 * The <code>String</code> array of permissions
+	 * indexed by identifier. Replaced on append.
+	 */
+	private volatile String[] permissions;
+
+	/**
+	 * Constructor of <code>PermissionDictionary</code>.
+	 * @param path The <code>File</code> path of the
+	 * dictionary.
+	 * @throws IOException If reading the dictionary
+	 * failed.
+	 */
+	PermissionDictionary(final File path) throws IOException {
+		this.file = new RandomAccessFile(path, "rw");
+		this.ids = new ConcurrentHashMap<String, Integer>();
+		this.lock = new ReentrantLock();
+		String[] permissions = new String[16];
+		int count = 0;
+		long end = 0;
+		this.file.seek(0);
+		while (true) {
+			final String entry;
+			try {
+				entry = this.file.readUTF();
+			} catch (final EOFException e) {
+				break;
+			}
+			if (count == permissions.length) {
+				final String[] grown = new String[count << 1];
+				System.arraycopy(permissions, 0, grown, 0, count);
+				permissions = grown;
+			}
+			this.ids.put(entry, Integer.valueOf(count));
+			permissions[count++] = entry;
+			end = this.file.getFilePointer();
+		}
+		// Discard a partially written entry.
+		this.file.setLength(end);
+		final String[] exact = new String[count];
+		System.arraycopy(permissions, 0, exact, 0, count);
+		this.permissions = exact;
+	}
+
+	/**
+	 * Retrieve the identifier of the given permissions,
+	 * appending a new entry if necessary.
+	 * @param permissions The <code>String</code>
+	 * permissions.
+	 * @return The <code>int</code> identifier.
+	 * @throws IOException If appending failed.
+	 */
+	int idOf(final String permissions) throws IOException {
+		final Integer id = this.ids.get(permissions);
+		if (id != null) return id.intValue();
+		this.lock.lock();
+		try {
+			final Integer existing = this.ids.get(permissions);
+			if (existing != null) return existing.intValue();
+			final String[] current = this.permissions;
+			this.file.seek(this.file.length());
+			this.file.writeUTF(permissions);
+			final String[] updated = new String[current.length+1];
+			System.arraycopy(current, 0, updated, 0, current.length);
+			updated[current.length] = permissions;
+			this.permissions = updated;
+			this.ids.put(permissions, Integer.valueOf(current.length));
+			return current.length;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrieve the permissions with given identifier.
+	 * @param id The <code>int</code> identifier.
+	 * @return The <code>String</code> permissions. Or
+	 * <code>null</code> if there is no such entry.
+	 */
+	String permissionsOf(final int id) {
+		final String[] permissions = this.permissions;
+		if (id < 0 || id >= permissions.length) return null;
+		return permissions[id];
+	}
+
+	/**
+	 * Force the dictionary to storage.
+	 * @throws IOException If writing failed.
+	 */
+	void force() throws IOException {
+		this.file.getChannel().force(false);
+	}
+
+	/**
+	 * Close the dictionary.
+	 * @throws IOException If closing failed.
+	 */
+	void close() throws IOException {
+		this.file.close();
+	}
+}
@@ -0,0 +1,99 @@
+package hemera.ext.oauth.store.memory;
+
+import hemera.ext.oauth.store.StoredAuthorizationToken;
+
+import java.util.ArrayList;
+
+/**
+ * <code>AuthorizationSlot</code> defines the entry of
+ * the authorization index of <code>MemoryTokenStore</code>
+ * for one combination of consumer key, permissions and
+ * user ID. It holds every authorization token of the
+ * combination that may still be valid, and publishes
+ * the one with the latest expiration, so that a lookup
+ * is a single hash probe followed by a field read.
+ * <p>
+ * Once the published token is consumed or expires, the
+ * next valid token is published instead, rather than
+ * losing the older tokens of the combination. Token
+ * expirations only ever decrease, so invalid tokens are
+ * dropped for good.
+ * <p>
+ * Modifications must be serialized by the caller, which
+ * performs them within the atomic computations of the
+ * index map. Retrieving the published token does not
+ * require synchronization.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+final class AuthorizationSlot {
+	/**
+	 * The <code>ArrayList</code> of tokens that may
+	 * still be valid.
+	 */
+	private final ArrayList<StoredAuthorizationToken> tokens;
+	/**
+	 * The published <code>StoredAuthorizationToken</code>
+	 * with the latest expiration. Or <code>null</code>.
+	 */
+	private volatile StoredAuthorizationToken newest;
+
+	/**
+	 * Constructor of <code>AuthorizationSlot</code>.
+	 */
+	AuthorizationSlot() {
+		this.tokens = new ArrayList<StoredAuthorizationToken>(2);
+	}
+
+	/**
+	 * Retrieve the published token.
+	 * @return The <code>StoredAuthorizationToken</code>
+	 * with the latest expiration. Or <code>null</code>
+	 * if there is none.
+	 */
+	StoredAuthorizationToken getNewest() {
+		return this.newest;
+	}
+
+	/**
+	 * Add the given token.
+	 * @param token The <code>StoredAuthorizationToken</code>.
+	 */
+	void add(final StoredAuthorizationToken token) {
+		this.tokens.add(token);
+		final StoredAuthorizationToken newest = this.newest;
+		if (newest == null || !newest.isValid() || token.getExpiration() > newest.getExpiration()) this.publish();
+	}
+
+	/**
+	 * Remove the given token.
+	 * @param token The <code>StoredAuthorizationToken</code>.
+	 */
+	void remove(final StoredAuthorizationToken token) {
+		if (this.tokens.remove(token) && token == this.newest) this.publish();
+	}
+
+	/**
+	 * Drop the invalid tokens and publish the valid token
+	 * with the latest expiration.
+	 */
+	void publish() {
+		StoredAuthorizationToken newest = null;
+		for (int i = this.tokens.size()-1; i >= 0; i--) {
+			final StoredAuthorizationToken token = this.tokens.get(i);
+			if (!token.isValid()) this.tokens.remove(i);
+			else if (newest == null || token.getExpiration() > newest.getExpiration()) newest = token;
+		}
+		this.newest = newest;
+	}
+
+	/**
+	 * Check if the slot holds no tokens.
+	 * @return <code>true</code> if empty.
+	 * <code>false</code> otherwise.
+	 */
+	boolean isEmpty() {
+		return this.tokens.isEmpty();
+	}
+}
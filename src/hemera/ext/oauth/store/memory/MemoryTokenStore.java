@@ -0,0 +1,500 @@
+package hemera.ext.oauth.store.memory;
+
+import hemera.ext.oauth.store.AuthorizationKey;
+import hemera.ext.oauth.store.ExpirationSweeper;
+import hemera.ext.oauth.store.ITokenStore;
+import hemera.ext.oauth.store.StoredAccessToken;
+import hemera.ext.oauth.store.StoredAuthorizationToken;
+import hemera.ext.oauth.store.StoredRefreshToken;
+import hemera.ext.oauth.token.AbstractAccessToken;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AbstractRefreshToken;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * <code>MemoryTokenStore</code> defines the reference
+ * in-memory implementation of <code>ITokenStore</code>,
+ * suitable for single node deployments, as a cache tier
+ * in front of a persistent store, and as the baseline
+ * of benchmarks.
+ * <p>
+ * Tokens are kept in concurrent hash maps keyed by token
+ * value, one per token type, so that retrievals never
+ * block and insertions only contend on the same map bin.
+ * A secondary index maps each combination of consumer
+ * key, permissions and user ID to an <code>AuthorizationSlot</code>
+ * publishing its valid authorization token with the
+ * latest expiration, which is maintained as tokens are
+ * issued, consumed and expire. Looking up the valid
+ * authorization token is therefore a single hash probe.
+ * Reverse indexes map each
+ * user ID and each consumer key to the values of their
+ * authorization and access tokens, so that revoking all
+ * the tokens of a user or a consumer only visits those
+ * tokens. Revocation marks the shared token instances
+ * invalid in place, without a write per token.
+ * <p>
+ * Expired and invalidated tokens remain retrievable
+ * until they are removed, since a refresh token may
+ * still reference its expired access token. Once the
+ * expiration sweeper is enabled, authorization and
+ * refresh tokens are removed when they expire or are
+ * invalidated, and access tokens are removed once both
+ * they and their refresh token have expired.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class MemoryTokenStore implements ITokenStore {
+	/**
+	 * The <code>String</code> SQL state reported for
+	 * duplicate token values.
+	 */
+	private static final String DuplicateState = "23000";
+	/**
+	 * The <code>Function</code> creating the token value
+	 * set of a reverse index key.
+	 */
+	private static final Function<String, TokenValueSet> NewValueSet = new Function<String, TokenValueSet>() {
+		@Override
+		public TokenValueSet apply(final String key) {
+			return new TokenValueSet();
+		}
+	};
+	/**
+	 * The <code>BiFunction</code> removing the token value
+	 * set of a reverse index key once it is empty.
+	 */
+	private static final BiFunction<String, TokenValueSet, TokenValueSet> RetireValueSet = new BiFunction<String, TokenValueSet, TokenValueSet>() {
+		@Override
+		public TokenValueSet apply(final String key, final TokenValueSet set) {
+			return (set.retireIfEmpty()) ? null : set;
+		}
+	};
+	/**
+	 * The <code>BiFunction</code> dropping the invalid
+	 * tokens of an <code>AuthorizationSlot</code>, and
+	 * removing the slot once it is empty.
+	 */
+	private static final BiFunction<AuthorizationKey, AuthorizationSlot, AuthorizationSlot> Republish =
+			new BiFunction<AuthorizationKey, AuthorizationSlot, AuthorizationSlot>() {
+		@Override
+		public AuthorizationSlot apply(final AuthorizationKey key, final AuthorizationSlot slot) {
+			slot.publish();
+			return (slot.isEmpty()) ? null : slot;
+		}
+	};
+	/**
+	 * The <code>ConcurrentHashMap</code> of value to
+	 * <code>StoredAuthorizationToken</code>.
+	 */
+	private final ConcurrentHashMap<String, StoredAuthorizationToken> authorizationTokens;
+	/**
+	 * The <code>ConcurrentHashMap</code> of value to
+	 * <code>StoredAccessToken</code>.
+	 */
+	private final ConcurrentHashMap<String, StoredAccessToken> accessTokens;
+	/**
+	 * The <code>ConcurrentHashMap</code> of value to
+	 * <code>StoredRefreshToken</code>.
+	 */
+	private final ConcurrentHashMap<String, StoredRefreshToken> refreshTokens;
+	/**
+	 * The <code>ConcurrentHashMap</code> of
+	 * <code>AuthorizationKey</code> to the
+	 * <code>AuthorizationSlot</code> of its tokens.
+	 */
+	private final ConcurrentHashMap<AuthorizationKey, AuthorizationSlot> authorizationIndex;
+	/**
+	 * The <code>ConcurrentHashMap</code> of user ID to
+	 * the <code>TokenValueSet</code> of its authorization
+	 * and access token values.
+	 */
+	private final ConcurrentHashMap<String, TokenValueSet> userIndex;
+	/**
+	 * The <code>ConcurrentHashMap</code> of consumer key
+	 * to the <code>TokenValueSet</code> of its
+	 * authorization and access token values.
+	 */
+	private final ConcurrentHashMap<String, TokenValueSet> consumerIndex;
+	/**
+	 * The <code>ExpirationSweeper</code> removing expired
+	 * tokens. Or <code>null</code> if disabled.
+	 */
+	private volatile ExpirationSweeper sweeper;
+
+	/**
+	 * Constructor of <code>MemoryTokenStore</code>.
+	 */
+	public MemoryTokenStore() {
+		this(1024, 16);
+	}
+
+	/**
+	 * Constructor of <code>MemoryTokenStore</code>.
+	 * @param initialCapacity The <code>int</code> initial
+	 * capacity of each token map.
+	 * @param concurrencyLevel The <code>int</code> estimated
+	 * number of concurrently updating threads.
+	 */
+	public MemoryTokenStore(final int initialCapacity, final int concurrencyLevel) {
+		this.authorizationTokens = new ConcurrentHashMap<String, StoredAuthorizationToken>(initialCapacity, 0.75f, concurrencyLevel);
+		this.accessTokens = new ConcurrentHashMap<String, StoredAccessToken>(initialCapacity, 0.75f, concurrencyLevel);
+		this.refreshTokens = new ConcurrentHashMap<String, StoredRefreshToken>(initialCapacity, 0.75f, concurrencyLevel);
+		this.authorizationIndex = new ConcurrentHashMap<AuthorizationKey, AuthorizationSlot>(initialCapacity, 0.75f, concurrencyLevel);
+		this.userIndex = new ConcurrentHashMap<String, TokenValueSet>(initialCapacity, 0.75f, concurrencyLevel);
+		this.consumerIndex = new ConcurrentHashMap<String, TokenValueSet>(16, 0.75f, concurrencyLevel);
+	}
+
+	/**
+	 * Enable the removal of expired tokens by a
+	 * background expiration sweeper. Tokens already in
+	 * the store are scheduled as well. If the sweeper
+	 * is already enabled, it is replaced.
+	 * @param tickDuration The <code>long</code> sweep
+	 * granularity in milliseconds.
+	 */
+	public synchronized void enableExpirationSweeper(final long tickDuration) {
+		this.disableExpirationSweeper();
+		final ExpirationSweeper sweeper = new ExpirationSweeper(this, tickDuration);
+		this.sweeper = sweeper;
+		for (final Map.Entry<String, StoredAuthorizationToken> entry : this.authorizationTokens.entrySet()) {
+			sweeper.schedule(entry.getKey(), entry.getValue().getExpiration());
+		}
+		for (final Map.Entry<String, StoredRefreshToken> entry : this.refreshTokens.entrySet()) {
+			sweeper.schedule(entry.getKey(), entry.getValue().getExpiration());
+		}
+		for (final Map.Entry<String, StoredAccessToken> entry : this.accessTokens.entrySet()) {
+			final StoredAccessToken token = entry.getValue();
+			final StoredRefreshToken refreshToken = (token.refreshToken == null) ? null : this.refreshTokens.get(token.refreshToken);
+			sweeper.schedule(entry.getKey(), MemoryTokenStore.retention(token.getExpiration(), refreshToken));
+		}
+		sweeper.start();
+	}
+
+	/**
+	 * Disable the expiration sweeper.
+	 */
+	public synchronized void disableExpirationSweeper() {
+		final ExpirationSweeper sweeper = this.sweeper;
+		if (sweeper == null) return;
+		this.sweeper = null;
+		sweeper.shutdown();
+	}
+
+	/**
+	 * Retrieve the expiration sweeper.
+	 * @return The <code>ExpirationSweeper</code>. Or
+	 * <code>null</code> if disabled.
+	 */
+	public ExpirationSweeper getExpirationSweeper() {
+		return this.sweeper;
+	}
+
+	/**
+	 * Schedule the eviction of the token with given
+	 * value if the sweeper is enabled.
+	 * @param value The <code>String</code> token value.
+	 * @param deadline The <code>long</code> eviction
+	 * time in milliseconds.
+	 */
+	private void schedule(final String value, final long deadline) {
+		final ExpirationSweeper sweeper = this.sweeper;
+		if (sweeper != null) sweeper.schedule(value, deadline);
+	}
+
+	/**
+	 * Retrieve the time until which an access token
+	 * must be retained, which is the later of its own
+	 * expiration and its refresh token's expiration.
+	 * @param expiration The <code>long</code> access
+	 * token expiration.
+	 * @param refreshToken The associated
+	 * <code>AbstractRefreshToken</code>. Or <code>null</code>.
+	 * @return The <code>long</code> retention time in
+	 * milliseconds.
+	 */
+	private static long retention(final long expiration, final AbstractRefreshToken refreshToken) {
+		if (refreshToken == null) return expiration;
+		return Math.max(expiration, refreshToken.getExpiration());
+	}
+
+	@Override
+	public AbstractAuthorizationToken insertAuthorizationToken(final String value, final String consumerKey, final String permissions,
+			final String userid, final long expiration) throws SQLException {
+		final StoredAuthorizationToken token = new StoredAuthorizationToken(this, value, consumerKey, permissions, userid, expiration);
+		if (this.authorizationTokens.putIfAbsent(value, token) != null) throw MemoryTokenStore.duplicate(value);
+		// Key by the pooled strings of the token.
+		final AuthorizationKey key = new AuthorizationKey(token.consumerKey, token.permissions, token.userid);
+		this.authorizationIndex.compute(key, new BiFunction<AuthorizationKey, AuthorizationSlot, AuthorizationSlot>() {
+			@Override
+			public AuthorizationSlot apply(final AuthorizationKey key, final AuthorizationSlot slot) {
+				final AuthorizationSlot updated = (slot == null) ? new AuthorizationSlot() : slot;
+				updated.add(token);
+				return updated;
+			}
+		});
+		this.link(value, token.consumerKey, token.userid);
+		this.schedule(value, expiration);
+		return token;
+	}
+
+	@Override
+	public AbstractRefreshToken insertRefreshToken(final String value, final String accessTokenValue, final long expiration) throws SQLException {
+		final StoredRefreshToken token = new StoredRefreshToken(this, value, expiration, accessTokenValue);
+		if (this.refreshTokens.putIfAbsent(value, token) != null) throw MemoryTokenStore.duplicate(value);
+		this.schedule(value, expiration);
+		return token;
+	}
+
+	@Override
+	public AbstractAccessToken insertAccessToken(final String value, final AbstractRefreshToken refreshToken, final String consumerKey,
+			final String permissions, final String userid, final long expiration) throws SQLException {
+		final String refreshTokenValue = (refreshToken == null) ? null : refreshToken.value;
+		final StoredAccessToken token = new StoredAccessToken(this, value, consumerKey, permissions, userid, expiration, refreshTokenValue);
+		if (this.accessTokens.putIfAbsent(value, token) != null) throw MemoryTokenStore.duplicate(value);
+		this.link(value, token.consumerKey, token.userid);
+		this.schedule(value, MemoryTokenStore.retention(expiration, refreshToken));
+		return token;
+	}
+
+	/**
+	 * Create the exception reporting a duplicate token
+	 * value.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>SQLException</code>.
+	 */
+	private static SQLException duplicate(final String value) {
+		return new SQLException("Duplicate token value: " + value, MemoryTokenStore.DuplicateState);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getAuthorizationToken(final String value) {
+		return this.authorizationTokens.get(value);
+	}
+
+	@Override
+	public AbstractAccessToken getAccessToken(final String value) {
+		return this.accessTokens.get(value);
+	}
+
+	@Override
+	public AbstractRefreshToken getRefreshToken(final String value) {
+		return this.refreshTokens.get(value);
+	}
+
+	@Override
+	public AbstractAuthorizationToken getValidAuthorizationToken(final String consumerKey, final String permissions, final String userid) {
+		final AuthorizationKey key = new AuthorizationKey(consumerKey, permissions, userid);
+		final AuthorizationSlot slot = this.authorizationIndex.get(key);
+		if (slot == null) return null;
+		final StoredAuthorizationToken token = slot.getNewest();
+		if (token != null && token.isValid()) return token;
+		// The published token expired since, so publish the
+		// next valid token of the combination.
+		final AuthorizationSlot updated = this.authorizationIndex.computeIfPresent(key, MemoryTokenStore.Republish);
+		if (updated == null) return null;
+		final StoredAuthorizationToken next = updated.getNewest();
+		return (next != null && next.isValid()) ? next : null;
+	}
+
+	@Override
+	public void updateExpiration(final String value, final long expiration) {
+		// Token instances are shared, so they already carry the
+		// new expiration. Only the index and the sweeper need
+		// maintenance. Access tokens are retained for their
+		// refresh token.
+		if (expiration > System.currentTimeMillis()) return;
+		final StoredAuthorizationToken token = this.authorizationTokens.get(value);
+		if (token != null) {
+			this.unindex(token);
+			this.schedule(value, expiration);
+		} else {
+			final StoredRefreshToken refreshToken = this.refreshTokens.get(value);
+			if (refreshToken == null) return;
+			this.schedule(value, expiration);
+			// The access token no longer needs to be retained.
+			final StoredAccessToken accessToken = this.accessTokens.get(refreshToken.accessToken);
+			if (accessToken != null) this.schedule(accessToken.value, accessToken.getExpiration());
+		}
+	}
+
+	@Override
+	public boolean remove(final String value) {
+		final StoredAuthorizationToken authorizationToken = this.authorizationTokens.remove(value);
+		if (authorizationToken != null) {
+			this.unindex(authorizationToken);
+			this.unlink(value, authorizationToken.consumerKey, authorizationToken.userid);
+			return true;
+		}
+		final StoredAccessToken accessToken = this.accessTokens.remove(value);
+		if (accessToken != null) {
+			this.unlink(value, accessToken.consumerKey, accessToken.userid);
+			return true;
+		}
+		return (this.refreshTokens.remove(value) != null);
+	}
+
+	@Override
+	public long revokeByUser(final String userid) {
+		if (userid == null) return 0;
+		return this.revoke(this.userIndex.get(userid));
+	}
+
+	@Override
+	public long revokeByConsumer(final String consumerKey) {
+		if (consumerKey == null) return 0;
+		return this.revoke(this.consumerIndex.get(consumerKey));
+	}
+
+	/**
+	 * Revoke the tokens with the given values, and the
+	 * refresh tokens paired with the access tokens.
+	 * @param values The <code>TokenValueSet</code> of
+	 * authorization and access token values. Or
+	 * <code>null</code>.
+	 * @return The <code>long</code> number of valid
+	 * tokens revoked.
+	 */
+	private long revoke(final TokenValueSet values) {
+		if (values == null) return 0;
+		long count = 0;
+		for (final String value : values) {
+			final StoredAuthorizationToken authorizationToken = this.authorizationTokens.get(value);
+			if (authorizationToken != null) {
+				if (authorizationToken.isValid()) count++;
+				authorizationToken.markInvalid();
+				this.unindex(authorizationToken);
+				this.schedule(value, Long.MIN_VALUE);
+				continue;
+			}
+			final StoredAccessToken accessToken = this.accessTokens.get(value);
+			if (accessToken == null) continue;
+			if (accessToken.isValid()) count++;
+			accessToken.markInvalid();
+			final StoredRefreshToken refreshToken = (accessToken.refreshToken == null) ? null : this.refreshTokens.get(accessToken.refreshToken);
+			if (refreshToken != null) {
+				if (refreshToken.isValid()) count++;
+				refreshToken.markInvalid();
+				this.schedule(refreshToken.value, Long.MIN_VALUE);
+			}
+			// The access token no longer needs to be retained.
+			this.schedule(value, Long.MIN_VALUE);
+		}
+		return count;
+	}
+
+	/**
+	 * Remove the given authorization token from the
+	 * authorization index, publishing the next valid
+	 * token of its combination if it was published.
+	 * @param token The <code>StoredAuthorizationToken</code>.
+	 */
+	private void unindex(final StoredAuthorizationToken token) {
+		final AuthorizationKey key = new AuthorizationKey(token.consumerKey, token.permissions, token.userid);
+		this.authorizationIndex.computeIfPresent(key, new BiFunction<AuthorizationKey, AuthorizationSlot, AuthorizationSlot>() {
+			@Override
+			public AuthorizationSlot apply(final AuthorizationKey key, final AuthorizationSlot slot) {
+				slot.remove(token);
+				return (slot.isEmpty()) ? null : slot;
+			}
+		});
+	}
+
+	/**
+	 * Add the given token to the user and consumer
+	 * reverse indexes.
+	 * @param value The <code>String</code> token value.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key of the token.
+	 * @param userid The <code>String</code> user ID of
+	 * the token.
+	 */
+	private void link(final String value, final String consumerKey, final String userid) {
+		if (userid != null) MemoryTokenStore.link(this.userIndex, userid, value);
+		if (consumerKey != null) MemoryTokenStore.link(this.consumerIndex, consumerKey, value);
+	}
+
+	/**
+	 * Add the given token value to the set of the given
+	 * key in the given reverse index.
+	 * <p>
+	 * The value is added outside of the map computations,
+	 * so that insertions of the same user or consumer only
+	 * contend on the concurrent set. If the set is retired
+	 * concurrently, the value is added again to the
+	 * replacing set.
+	 * @param index The reverse index
+	 * <code>ConcurrentHashMap</code>.
+	 * @param key The <code>String</code> user ID or
+	 * consumer key.
+	 * @param value The <code>String</code> token value.
+	 */
+	private static void link(final ConcurrentHashMap<String, TokenValueSet> index, final String key, final String value) {
+		boolean added = false;
+		while (!added) {
+			added = index.computeIfAbsent(key, MemoryTokenStore.NewValueSet).add(value);
+		}
+	}
+
+	/**
+	 * Remove the given token from the user and consumer
+	 * reverse indexes, dropping emptied entries.
+	 * @param value The <code>String</code> token value.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key of the token.
+	 * @param userid The <code>String</code> user ID of
+	 * the token.
+	 */
+	private void unlink(final String value, final String consumerKey, final String userid) {
+		if (userid != null) MemoryTokenStore.unlink(this.userIndex, userid, value);
+		if (consumerKey != null) MemoryTokenStore.unlink(this.consumerIndex, consumerKey, value);
+	}
+
+	/**
+	 * Remove the given token value from the set of the
+	 * given key in the given reverse index, atomically
+	 * retiring the set once it is empty.
+	 * @param index The reverse index
+	 * <code>ConcurrentHashMap</code>.
+	 * @param key The <code>String</code> user ID or
+	 * consumer key.
+	 * @param value The <code>String</code> token value.
+	 */
+	private static void unlink(final ConcurrentHashMap<String, TokenValueSet> index, final String key, final String value) {
+		final TokenValueSet set = index.get(key);
+		if (set == null) return;
+		set.remove(value);
+		// The thread removing the last value observes the
+		// set as empty, so that non-empty sets skip the
+		// map computation.
+		if (set.mayBeEmpty()) index.computeIfPresent(key, MemoryTokenStore.RetireValueSet);
+	}
+
+	/**
+	 * Retrieve the total number of stored tokens.
+	 * @return The <code>int</code> number of tokens.
+	 */
+	public int size() {
+		return this.authorizationTokens.size() + this.accessTokens.size() + this.refreshTokens.size();
+	}
+
+	/**
+	 * Remove all the tokens.
+	 */
+	public void clear() {
+		this.authorizationIndex.clear();
+		this.userIndex.clear();
+		this.consumerIndex.clear();
+		this.authorizationTokens.clear();
+		this.accessTokens.clear();
+		this.refreshTokens.clear();
+	}
+}
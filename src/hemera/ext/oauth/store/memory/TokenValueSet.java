@@ -0,0 +1,101 @@
+package hemera.ext.oauth.store.memory;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>TokenValueSet</code> defines the entry of the
+ * user and consumer reverse indexes of
+ * <code>MemoryTokenStore</code>. It holds the values of
+ * the authorization and access tokens of one user or
+ * consumer.
+ * <p>
+ * Values are added outside of the computations of the
+ * index map, so that insertions for the same user or
+ * consumer only contend on the concurrent set. An empty
+ * set is removed from the index by retiring it within
+ * the atomic computation of the index map. Retiring
+ * marks the set before checking that it is empty, while
+ * adding inserts the value before checking the mark, so
+ * that either the retirement sees the value and keeps
+ * the set, or the addition sees the mark and adds the
+ * value to the replacing set.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+final class TokenValueSet implements Iterable<String> {
+	/**
+	 * The concurrent <code>Set</code> of token values.
+	 */
+	private final Set<String> values;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * set is being or has been removed from its index.
+	 */
+	private volatile boolean retired;
+
+	/**
+	 * Constructor of <code>TokenValueSet</code>.
+	 */
+	TokenValueSet() {
+		this.values = ConcurrentHashMap.<String>newKeySet();
+	}
+
+	/**
+	 * Add the given token value.
+	 * @param value The <code>String</code> token value.
+	 * @return <code>true</code> if the value was added
+	 * to a set that remains indexed. <code>false</code>
+	 * if the set may have been retired, in which case the
+	 * value must be added to the replacing set.
+	 */
+	boolean add(final String value) {
+		this.values.add(value);
+		return !this.retired;
+	}
+
+	/**
+	 * Remove the given token value.
+	 * @param value The <code>String</code> token value.
+	 */
+	void remove(final String value) {
+		this.values.remove(value);
+	}
+
+	/**
+	 * Check if the set may be empty. The check is cheap,
+	 * but may report an empty set while a value is being
+	 * added.
+	 * @return <code>true</code> if the set may be empty.
+	 * <code>false</code> if it holds values.
+	 */
+	boolean mayBeEmpty() {
+		return this.values.isEmpty();
+	}
+
+	/**
+	 * Retire the set if it is empty. This method must be
+	 * invoked within the computation removing the set
+	 * from its index.
+	 * @return <code>true</code> if the set is retired and
+	 * must be removed. <code>false</code> if it holds
+	 * values and must be kept.
+	 */
+	boolean retireIfEmpty() {
+		this.retired = true;
+		// Check the entries rather than the size, which is
+		// only updated after a value is inserted.
+		if (!this.values.iterator().hasNext()) return true;
+		this.retired = false;
+		return false;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return this.values.iterator();
+	}
+}
@@ -1,9 +1,14 @@
 package hemera.ext.oauth.token;
 
+import hemera.ext.oauth.util.StringPool;
+
 /**
  * <code>AbstractConsumerToken</code> defines the data
  * structure abstraction for tokens that contain the
- * associated consumer data.
+ * associated consumer data. The consumer key, user ID
+ * and permissions are canonicalized through the shared
+ * <code>StringPool</code>, since they are repeated
+ * across many live tokens.
  *
  * @author Yi Wang (Neakor)
  * @version 1.0.0
@@ -17,6 +22,11 @@ abstract class AbstractConsumerToken extends AbstractToken {
 	 * The <code>String</code> permissions.
 	 */
 	public final String permissions;
+	/**
+	 * The <code>PermissionSet</code> compiled from the
+	 * permissions.
+	 */
+	public final PermissionSet permissionSet;
 	/**
 	 * The <code>String</code> associated user ID.
 	 */
@@ -37,8 +47,36 @@ abstract class AbstractConsumerToken extends AbstractToken {
 	AbstractConsumerToken(final String value, final String consumerKey, final String permissions,
 			final String userid, final long expiration) {
 		super(value, expiration);
-		this.consumerKey = consumerKey;
-		this.permissions = permissions;
-		this.userid = userid;
+		this.consumerKey = StringPool.Default.intern(consumerKey);
+		this.permissions = StringPool.Default.intern(permissions);
+		this.permissionSet = PermissionRegistry.instance.compile(this.permissions);
+		this.userid = StringPool.Default.intern(userid);
+	}
+
+	/**
+	 * Check if the token grants the permission with
+	 * the given name. Only names registered with
+	 * <code>PermissionRegistry</code> can be granted.
+	 * @param name The <code>String</code> permission
+	 * name, which is trimmed.
+	 * @return <code>true</code> if the permission is
+	 * granted. <code>false</code> otherwise.
+	 */
+	public boolean hasPermission(final String name) {
+		return this.permissionSet.contains(name);
+	}
+
+	/**
+	 * Check if the token grants all the given required
+	 * permissions. The required set should be compiled
+	 * once with <code>PermissionRegistry</code> and
+	 * reused across requests.
+	 * @param required The <code>PermissionSet</code> of
+	 * required permissions.
+	 * @return <code>true</code> if all permissions are
+	 * granted. <code>false</code> otherwise.
+	 */
+	public boolean hasAll(final PermissionSet required) {
+		return this.permissionSet.containsAll(required);
 	}
 }
@@ -34,9 +34,25 @@ abstract class AbstractToken implements IToken {
 	@Override
 	public final void invalidate() throws SQLException {
 		this.expiration = Long.MIN_VALUE;
-		this.setExpiration(this.expiration);
+		try {
+			this.setExpiration(this.expiration);
+		} finally {
+			// Evict cached copies even if the update failed.
+			TokenEvents.instance.fireInvalidated(this.value);
+		}
 	}
 	
+	/**
+	 * Mark this token as invalid without persisting the
+	 * change. This method should only be used by stores
+	 * that have already persisted the invalidation of
+	 * this token, for instance as part of a batch.
+	 */
+	public final void markInvalid() {
+		this.expiration = Long.MIN_VALUE;
+		TokenEvents.instance.fireInvalidated(this.value);
+	}
+
 	/**
 	 * Set the expiration value of this token to the
 	 * given value.
@@ -0,0 +1,19 @@
+package hemera.ext.oauth.token;
+
+/**
+ * <code>ITokenListener</code> defines the interface of
+ * a unit that is notified of token state changes, such
+ * as a cache of resolved tokens.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface ITokenListener {
+
+	/**
+	 * Notify the listener that the token with given
+	 * value has been invalidated.
+	 * @param value The <code>String</code> token value.
+	 */
+	public void invalidated(final String value);
+}
@@ -0,0 +1,24 @@
+package hemera.ext.oauth.token;
+
+import java.io.IOException;
+
+/**
+ * <code>ITokenPairSink</code> defines the interface of
+ * a unit that receives the token pairs issued in bulk
+ * as they are inserted, such as a writer exporting them
+ * to the provisioned services.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface ITokenPairSink {
+
+	/**
+	 * Receive the given issued token pair.
+	 * @param pair The <code>AccessTokenPair</code>
+	 * inserted.
+	 * @throws IOException If the pair cannot be accepted,
+	 * which stops the issuance.
+	 */
+	public void accept(final AccessTokenPair pair) throws IOException;
+}
@@ -0,0 +1,64 @@
+package hemera.ext.oauth.token;
+
+/**
+ * <code>PendingTokenPair</code> defines the immutable
+ * data structure that contains the generated values of
+ * a refresh token and its paired access token, which
+ * are yet to be inserted.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class PendingTokenPair {
+	/**
+	 * The <code>String</code> refresh token value.
+	 */
+	public final String refreshTokenValue;
+	/**
+	 * The <code>long</code> refresh token expiration
+	 * in milliseconds.
+	 */
+	public final long refreshExpiration;
+	/**
+	 * The <code>String</code> access token value.
+	 */
+	public final String accessTokenValue;
+	/**
+	 * The <code>String</code> granted permissions.
+	 */
+	public final String permissions;
+	/**
+	 * The <code>String</code> ID of the granting user.
+	 */
+	public final String userid;
+	/**
+	 * The <code>long</code> access token expiration
+	 * in milliseconds.
+	 */
+	public final long accessExpiration;
+
+	/**
+	 * Constructor of <code>PendingTokenPair</code>.
+	 * @param refreshTokenValue The <code>String</code>
+	 * refresh token value.
+	 * @param refreshExpiration The <code>long</code>
+	 * refresh token expiration in milliseconds.
+	 * @param accessTokenValue The <code>String</code>
+	 * access token value.
+	 * @param permissions The <code>String</code> granted
+	 * permissions.
+	 * @param userid The <code>String</code> ID of the
+	 * granting user.
+	 * @param accessExpiration The <code>long</code>
+	 * access token expiration in milliseconds.
+	 */
+	public PendingTokenPair(final String refreshTokenValue, final long refreshExpiration, final String accessTokenValue, final String permissions,
+			final String userid, final long accessExpiration) {
+		this.refreshTokenValue = refreshTokenValue;
+		this.refreshExpiration = refreshExpiration;
+		this.accessTokenValue = accessTokenValue;
+		this.permissions = permissions;
+		this.userid = userid;
+		this.accessExpiration = accessExpiration;
+	}
+}
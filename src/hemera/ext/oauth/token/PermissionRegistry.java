@@ -0,0 +1,170 @@
+package hemera.ext.oauth.token;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>PermissionRegistry</code> defines the utility
+ * singleton that interns permission names to dense bit
+ * indices and compiles comma separated permissions
+ * strings into <code>PermissionSet</code>. Indices are
+ * assigned on registration and never reused, so they
+ * are only stable within a single process and should
+ * not be persisted.
+ * <p>
+ * Permissions strings come from client requests, so
+ * compiling never registers names. The permissions
+ * that consumers grant and resources check must be
+ * registered with <code>register</code>, typically at
+ * startup. Unregistered names compile to the shared
+ * unknown bit, which keeps the registry and the sets
+ * bounded by the registered names, and which never
+ * satisfies a permission check.
+ * <p>
+ * Compiled sets are cached by permissions string, so
+ * tokens with the same permissions share a single set.
+ * The cache is bounded, strings with unregistered names
+ * are not cached, and strings beyond the bound are
+ * compiled on every use.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum PermissionRegistry {
+	/**
+	 * The singleton instance.
+	 */
+	instance;
+
+	/**
+	 * The <code>int</code> maximum number of cached
+	 * compiled permissions strings.
+	 */
+	private static final int MaxCachedSets = 4096;
+	/**
+	 * The <code>int</code> bit index shared by all the
+	 * unregistered permission names.
+	 */
+	static final int Unknown = 0;
+
+	/**
+	 * The <code>ConcurrentHashMap</code> of permission
+	 * name to <code>Integer</code> index.
+	 */
+	private final ConcurrentHashMap<String, Integer> indices = new ConcurrentHashMap<String, Integer>();
+	/**
+	 * The <code>ConcurrentHashMap</code> of permissions
+	 * string to compiled <code>PermissionSet</code>.
+	 */
+	private final ConcurrentHashMap<String, PermissionSet> sets = new ConcurrentHashMap<String, PermissionSet>();
+	/**
+	 * The <code>String</code> array of permission names
+	 * indexed by bit index.
+	 */
+	private volatile String[] names = new String[64];
+	/**
+	 * The <code>int</code> number of registered
+	 * permissions.
+	 */
+	private volatile int count = PermissionRegistry.Unknown+1;
+
+	/**
+	 * Retrieve the index of the given permission name,
+	 * registering it if necessary. Only names known to
+	 * consumers or resources should be registered, since
+	 * registered names are never reclaimed.
+	 * @param name The <code>String</code> permission
+	 * name, which is trimmed.
+	 * @return The <code>int</code> bit index.
+	 */
+	public int register(final String name) {
+		if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Permission name must be specified.");
+		final String trimmed = name.trim();
+		final Integer index = this.indices.get(trimmed);
+		if (index != null) return index.intValue();
+		synchronized (this.indices) {
+			final Integer existing = this.indices.get(trimmed);
+			if (existing != null) return existing.intValue();
+			final int count = this.count;
+			String[] names = this.names;
+			if (count == names.length) {
+				final String[] grown = new String[count << 1];
+				System.arraycopy(names, 0, grown, 0, count);
+				names = grown;
+			}
+			names[count] = trimmed;
+			this.names = names;
+			this.count = count+1;
+			this.indices.put(trimmed, Integer.valueOf(count));
+			return count;
+		}
+	}
+
+	/**
+	 * Retrieve the index of the given permission name
+	 * without registering it.
+	 * @param name The <code>String</code> permission
+	 * name, which is trimmed.
+	 * @return The <code>int</code> bit index. Or
+	 * <code>-1</code> if the name is not registered.
+	 */
+	public int find(final String name) {
+		if (name == null) return -1;
+		final Integer index = this.indices.get(name.trim());
+		return (index == null) ? -1 : index.intValue();
+	}
+
+	/**
+	 * Retrieve the permission name with the given
+	 * index.
+	 * @param index The <code>int</code> bit index.
+	 * @return The <code>String</code> permission name.
+	 * Or <code>null</code> if there is no such index.
+	 */
+	public String nameOf(final int index) {
+		if (index <= PermissionRegistry.Unknown || index >= this.count) return null;
+		return this.names[index];
+	}
+
+	/**
+	 * Compile the given comma separated permissions
+	 * string into a set. Names are trimmed, empty names
+	 * are ignored, and unregistered names are compiled
+	 * to the unknown bit.
+	 * @param permissions The <code>String</code>
+	 * permissions. Or <code>null</code>.
+	 * @return The <code>PermissionSet</code>.
+	 */
+	public PermissionSet compile(final String permissions) {
+		if (permissions == null) return PermissionSet.Empty;
+		final PermissionSet cached = this.sets.get(permissions);
+		if (cached != null) return cached;
+		long[] words = new long[1];
+		final int length = permissions.length();
+		int start = 0;
+		while (start <= length) {
+			int end = permissions.indexOf(',', start);
+			if (end < 0) end = length;
+			final String name = permissions.substring(start, end).trim();
+			if (!name.isEmpty()) {
+				final int found = this.find(name);
+				final int index = (found < 0) ? PermissionRegistry.Unknown : found;
+				final int word = index >>> 6;
+				if (word >= words.length) {
+					final long[] grown = new long[word+1];
+					System.arraycopy(words, 0, grown, 0, words.length);
+					words = grown;
+				}
+				words[word] |= 1L << index;
+			}
+			start = end+1;
+		}
+		final PermissionSet set = new PermissionSet(words);
+		if (!set.containsUnknown() && this.sets.size() < PermissionRegistry.MaxCachedSets) {
+			final PermissionSet existing = this.sets.putIfAbsent(permissions, set);
+			if (existing != null) return existing;
+		}
+		return set;
+	}
+}
@@ -0,0 +1,164 @@
+package hemera.ext.oauth.token;
+
+import java.util.Arrays;
+
+/**
+ * <code>PermissionSet</code> defines the immutable set
+ * of permissions compiled from a comma separated
+ * permissions string. Each permission is represented
+ * by the bit at its index assigned by the
+ * <code>PermissionRegistry</code>, so membership checks
+ * are constant time and do not allocate.
+ * <p>
+ * Unregistered names share the unknown bit, which
+ * records their presence but never grants or satisfies
+ * a permission, so a required set with an unregistered
+ * name is never contained.
+ * <p>
+ * Instances are created by the registry and shared by
+ * all tokens with the same permissions string.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class PermissionSet {
+	/**
+	 * The <code>PermissionSet</code> without any
+	 * permission.
+	 */
+	public static final PermissionSet Empty = new PermissionSet(new long[0]);
+
+	/**
+	 * The <code>long</code> array of bit words, without
+	 * trailing zero words.
+	 */
+	private final long[] words;
+	/**
+	 * The <code>int</code> number of permissions.
+	 */
+	private final int size;
+
+	/**
+	 * Constructor of <code>PermissionSet</code>.
+	 * @param words The <code>long</code> array of bit
+	 * words, which is trimmed and not copied.
+	 */
+	PermissionSet(final long[] words) {
+		int length = words.length;
+		while (length > 0 && words[length-1] == 0) length--;
+		this.words = (length == words.length) ? words : Arrays.copyOf(words, length);
+		int size = 0;
+		for (int i = 0; i < length; i++) size += Long.bitCount(this.words[i]);
+		this.size = size;
+	}
+
+	/**
+	 * Check if the set contains the permission with
+	 * the given registry index.
+	 * @param index The <code>int</code> permission
+	 * index.
+	 * @return <code>true</code> if the permission is
+	 * contained. <code>false</code> otherwise.
+	 */
+	public boolean contains(final int index) {
+		if (index <= PermissionRegistry.Unknown) return false;
+		final int word = index >>> 6;
+		if (word >= this.words.length) return false;
+		return (this.words[word] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Check if the set contains the permission with
+	 * the given name.
+	 * @param name The <code>String</code> permission
+	 * name.
+	 * @return <code>true</code> if the permission is
+	 * contained. <code>false</code> otherwise.
+	 */
+	public boolean contains(final String name) {
+		return this.contains(PermissionRegistry.instance.find(name));
+	}
+
+	/**
+	 * Check if the set contains all the permissions of
+	 * the given set.
+	 * @param required The <code>PermissionSet</code> of
+	 * required permissions.
+	 * @return <code>true</code> if all the permissions
+	 * are contained. <code>false</code> otherwise.
+	 */
+	public boolean containsAll(final PermissionSet required) {
+		if (required.containsUnknown()) return false;
+		if (required == this) return true;
+		final long[] others = required.words;
+		if (others.length > this.words.length) return false;
+		for (int i = 0; i < others.length; i++) {
+			if ((others[i] & ~this.words[i]) != 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the set was compiled from any permission
+	 * name that is not registered.
+	 * @return <code>true</code> if there are unknown
+	 * permissions. <code>false</code> otherwise.
+	 */
+	public boolean containsUnknown() {
+		return this.words.length > 0 && (this.words[0] & (1L << PermissionRegistry.Unknown)) != 0;
+	}
+
+	/**
+	 * Retrieve the number of permissions, counting all
+	 * the unknown permissions as one.
+	 * @return The <code>int</code> number of
+	 * permissions.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Check if the set does not contain any permission.
+	 * @return <code>true</code> if the set is empty.
+	 * <code>false</code> otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean equals(final Object object) {
+		if (object == this) return true;
+		if (!(object instanceof PermissionSet)) return false;
+		return Arrays.equals(this.words, ((PermissionSet)object).words);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(this.words);
+	}
+
+	/**
+	 * Retrieve the registered permission names in
+	 * registry index order, separated by commas.
+	 * @return The <code>String</code> permissions.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < this.words.length; i++) {
+			long word = this.words[i];
+			while (word != 0) {
+				final int index = (i << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+				if (index == PermissionRegistry.Unknown) continue;
+				if (builder.length() > 0) builder.append(',');
+				builder.append(PermissionRegistry.instance.nameOf(index));
+			}
+		}
+		return builder.toString();
+	}
+}
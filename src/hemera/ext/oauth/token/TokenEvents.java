@@ -0,0 +1,57 @@
+package hemera.ext.oauth.token;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <code>TokenEvents</code> defines the utility singleton
+ * that dispatches token state changes to the registered
+ * <code>ITokenListener</code>. Tokens notify the listeners
+ * when they are invalidated, and token stores may notify
+ * them when tokens are invalidated without a token
+ * instance.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum TokenEvents {
+	/**
+	 * The singleton instance.
+	 */
+	instance;
+
+	/**
+	 * The <code>CopyOnWriteArrayList</code> of registered
+	 * <code>ITokenListener</code>.
+	 */
+	private final CopyOnWriteArrayList<ITokenListener> listeners = new CopyOnWriteArrayList<ITokenListener>();
+
+	/**
+	 * Register the given listener.
+	 * @param listener The <code>ITokenListener</code>.
+	 */
+	public void addListener(final ITokenListener listener) {
+		if (listener == null) throw new IllegalArgumentException("Token listener must be specified.");
+		this.listeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Unregister the given listener.
+	 * @param listener The <code>ITokenListener</code>.
+	 */
+	public void removeListener(final ITokenListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Notify all the listeners that the token with
+	 * given value has been invalidated.
+	 * @param value The <code>String</code> token value.
+	 */
+	public void fireInvalidated(final String value) {
+		for (final ITokenListener listener : this.listeners) {
+			listener.invalidated(value);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package hemera.ext.oauth.util;
+
+import java.io.UnsupportedEncodingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * <code>CipherEngine</code> defines the AES encryption
+ * engine scoped to a single encryption key. The engine
+ * parses the hex encoded key once at construction, and
+ * keeps one initialized encryption and one initialized
+ * decryption <code>Cipher</code> per thread, so that
+ * repeated operations do not pay for the provider
+ * lookup and key setup.
+ * <p>
+ * The produced values are identical to the ones produced
+ * by <code>AESUtils</code> with the same key. Encrypted
+ * values are hex encoded, and plain text values are
+ * <code>UTF-8</code> encoded.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class CipherEngine {
+	/**
+	 * The <code>String</code> cipher transformation.
+	 */
+	private static final String Transformation = "AES";
+	/**
+	 * The <code>String</code> plain text encoding.
+	 */
+	private static final String Encoding = "UTF-8";
+	/**
+	 * The <code>SecretKeySpec</code> parsed key.
+	 */
+	private final SecretKeySpec key;
+	/**
+	 * The <code>ThreadLocal</code> of initialized
+	 * encryption <code>Cipher</code>.
+	 */
+	private final ThreadLocal<Cipher> encryptors;
+	/**
+	 * The <code>ThreadLocal</code> of initialized
+	 * decryption <code>Cipher</code>.
+	 */
+	private final ThreadLocal<Cipher> decryptors;
+
+	/**
+	 * Constructor of <code>CipherEngine</code>.
+	 * @param encryptionKey The hex encoded <code>String</code>
+	 * AES encryption key.
+	 * @throws DecoderException If the key is not a valid
+	 * hex encoded value.
+	 */
+	public CipherEngine(final String encryptionKey) throws DecoderException {
+		this.key = new SecretKeySpec(Hex.decodeHex(encryptionKey.toCharArray()), CipherEngine.Transformation);
+		this.encryptors = new ThreadLocal<Cipher>();
+		this.decryptors = new ThreadLocal<Cipher>();
+	}
+
+	/**
+	 * Encrypt the given plain text value.
+	 * @param value The <code>String</code> value to
+	 * encrypt.
+	 * @return The hex encoded <code>String</code>
+	 * encrypted value.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the encryption key
+	 * is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 */
+	public String encrypt(final String value) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+	IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException {
+		return this.encrypt(value.getBytes(CipherEngine.Encoding));
+	}
+
+	/**
+	 * Encrypt the given plain text bytes.
+	 * @param value The <code>byte</code> array of
+	 * plain text to encrypt.
+	 * @return The hex encoded <code>String</code>
+	 * encrypted value.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the encryption key
+	 * is invalid.
+	 * @throws IllegalBlockSizeException If the AES
+	 * encryption algorithm is unable to process the
+	 * input data provided.
+	 * @throws BadPaddingException Should not occur.
+	 */
+	public String encrypt(final byte[] value) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+	IllegalBlockSizeException, BadPaddingException {
+		final Cipher cipher = this.getCipher(this.encryptors, Cipher.ENCRYPT_MODE);
+		boolean completed = false;
+		try {
+			final byte[] encrypted = cipher.doFinal(value);
+			completed = true;
+			return new String(Hex.encodeHex(encrypted));
+		} finally {
+			// Discard a cipher left in an unknown state.
+			if (!completed) this.encryptors.remove();
+		}
+	}
+
+	/**
+	 * Decrypt the given hex encoded encrypted value.
+	 * @param value The hex encoded <code>String</code>
+	 * value to decrypt.
+	 * @return The <code>String</code> plain text value.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the encryption key
+	 * is invalid.
+	 * @throws IllegalBlockSizeException If the given
+	 * value is not a multiple of the block size.
+	 * @throws BadPaddingException If the given value
+	 * was not encrypted with this engine's key.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 * @throws DecoderException If the given value is
+	 * not a valid hex encoded value.
+	 */
+	public String decrypt(final String value) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+	IllegalBlockSizeException, BadPaddingException, UnsupportedEncodingException, DecoderException {
+		final byte[] encrypted = Hex.decodeHex(value.toCharArray());
+		final Cipher cipher = this.getCipher(this.decryptors, Cipher.DECRYPT_MODE);
+		boolean completed = false;
+		try {
+			final byte[] decrypted = cipher.doFinal(encrypted);
+			completed = true;
+			return new String(decrypted, CipherEngine.Encoding);
+		} finally {
+			// Discard a cipher left in an unknown state.
+			if (!completed) this.decryptors.remove();
+		}
+	}
+
+	/**
+	 * Retrieve the calling thread's cipher from the
+	 * given thread local, creating and initializing
+	 * it with the given mode if necessary. A cipher
+	 * returns to its initialized state after each
+	 * <code>doFinal</code> invocation, therefore it
+	 * can be reused for subsequent operations.
+	 * @param local The <code>ThreadLocal</code> of
+	 * <code>Cipher</code>.
+	 * @param mode The <code>int</code> cipher mode.
+	 * @return The initialized <code>Cipher</code>.
+	 * @throws NoSuchAlgorithmException If AES is not
+	 * supported.
+	 * @throws NoSuchPaddingException If transformation
+	 * contains a padding that is not available.
+	 * @throws InvalidKeyException If the encryption key
+	 * is invalid.
+	 */
+	private Cipher getCipher(final ThreadLocal<Cipher> local, final int mode) throws NoSuchAlgorithmException, NoSuchPaddingException,
+	InvalidKeyException {
+		Cipher cipher = local.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance(CipherEngine.Transformation);
+			cipher.init(mode, this.key);
+			local.set(cipher);
+		}
+		return cipher;
+	}
+}
@@ -0,0 +1,320 @@
+package hemera.ext.oauth.util;
+
+import java.util.Locale;
+
+/**
+ * <code>RedirectMatcher</code> defines the precompiled
+ * matcher of redirect URLs against the set of domains a
+ * consumer registered. A domain is either an exact host
+ * name, such as <code>example.com</code>, or a wildcard
+ * of the form <code>*.example.com</code>, which matches
+ * any sub-domain of <code>example.com</code> but not
+ * <code>example.com</code> itself. Host names are
+ * matched case-insensitively.
+ * <p>
+ * Matching locates the host of the URL in place without
+ * allocating, then hashes it in a single backward scan
+ * that probes open-addressing hash tables of exact hosts
+ * and wildcard suffixes. The cost is therefore linear in
+ * the length of the host and independent of the number
+ * of registered domains.
+ * <p>
+ * The host extraction follows <code>java.net.URL</code>
+ * for hierarchical URLs of the form
+ * <code>scheme://[userinfo@]host[:port][/path]</code>.
+ * Only the <code>http</code> and <code>https</code>
+ * schemes are accepted, ignoring case. URLs without an
+ * authority, and hosts with an empty label, such as
+ * <code>x..example.com</code>, never match.
+ * <p>
+ * This class is immutable and thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class RedirectMatcher {
+	/**
+	 * The <code>String</code> wildcard domain prefix.
+	 */
+	private static final String WildcardPrefix = "*.";
+	/**
+	 * The <code>String</code> HTTP scheme.
+	 */
+	private static final String HTTP = "http";
+	/**
+	 * The <code>String</code> HTTPS scheme.
+	 */
+	private static final String HTTPS = "https";
+	/**
+	 * The <code>Table</code> of exact host names.
+	 */
+	private final Table exact;
+	/**
+	 * The <code>Table</code> of wildcard suffixes,
+	 * without the leading <code>*.</code>.
+	 */
+	private final Table wildcard;
+
+	/**
+	 * Constructor of <code>RedirectMatcher</code>.
+	 * @param domains The <code>String</code> array of
+	 * registered domains. <code>null</code> and empty
+	 * entries are ignored.
+	 */
+	public RedirectMatcher(final String... domains) {
+		int exactCount = 0;
+		int wildcardCount = 0;
+		for (int i = 0; i < domains.length; i++) {
+			final String domain = RedirectMatcher.normalize(domains[i]);
+			if (domain == null) continue;
+			else if (domain.startsWith(RedirectMatcher.WildcardPrefix)) wildcardCount++;
+			else exactCount++;
+		}
+		this.exact = new Table(exactCount);
+		this.wildcard = new Table(wildcardCount);
+		for (int i = 0; i < domains.length; i++) {
+			final String domain = RedirectMatcher.normalize(domains[i]);
+			if (domain == null) continue;
+			else if (domain.startsWith(RedirectMatcher.WildcardPrefix)) this.wildcard.add(domain.substring(RedirectMatcher.WildcardPrefix.length()));
+			else this.exact.add(domain);
+		}
+	}
+
+	/**
+	 * Normalize the given domain.
+	 * @param domain The <code>String</code> domain.
+	 * @return The lower case <code>String</code> domain.
+	 * <code>null</code> if the domain is empty.
+	 */
+	private static String normalize(final String domain) {
+		if (domain == null) return null;
+		final String trimmed = domain.trim();
+		if (trimmed.isEmpty() || trimmed.equals(RedirectMatcher.WildcardPrefix)) return null;
+		return trimmed.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Check if the host of the given URL matches one of
+	 * the registered domains.
+	 * @param url The <code>String</code> URL.
+	 * @return <code>true</code> if the URL host matches.
+	 * <code>false</code> otherwise.
+	 */
+	public boolean matches(final String url) {
+		if (url == null) return false;
+		// Scheme.
+		final int length = url.length();
+		int index = 0;
+		while (index < length && RedirectMatcher.isSchemeChar(url.charAt(index), index)) index++;
+		if (!RedirectMatcher.isHTTPScheme(url, index) || !url.startsWith("://", index)) return false;
+		// Authority.
+		final int authorityStart = index + 3;
+		int authorityEnd = authorityStart;
+		while (authorityEnd < length) {
+			final char c = url.charAt(authorityEnd);
+			if (c == '/' || c == '?' || c == '#') break;
+			authorityEnd++;
+		}
+		// Host follows the last user info separator.
+		int hostStart = authorityStart;
+		for (int i = authorityEnd-1; i >= authorityStart; i--) {
+			if (url.charAt(i) == '@') {
+				hostStart = i+1;
+				break;
+			}
+		}
+		// Host ends before the port separator, which follows
+		// the closing bracket of an IPv6 literal.
+		int hostEnd = authorityEnd;
+		int portSearchStart = hostStart;
+		if (hostStart < authorityEnd && url.charAt(hostStart) == '[') {
+			final int closing = url.indexOf(']', hostStart);
+			if (closing < 0 || closing >= authorityEnd) return false;
+			portSearchStart = closing+1;
+		}
+		for (int i = portSearchStart; i < authorityEnd; i++) {
+			if (url.charAt(i) == ':') {
+				hostEnd = i;
+				break;
+			}
+		}
+		if (hostEnd <= hostStart) return false;
+		return this.matchesHost(url, hostStart, hostEnd);
+	}
+
+	/**
+	 * Check if the scheme of the given URL is HTTP or
+	 * HTTPS, ignoring case.
+	 * @param url The <code>String</code> URL.
+	 * @param length The <code>int</code> length of the
+	 * scheme.
+	 * @return <code>true</code> if the scheme is HTTP or
+	 * HTTPS. <code>false</code> otherwise.
+	 */
+	private static boolean isHTTPScheme(final String url, final int length) {
+		if (length == RedirectMatcher.HTTP.length()) return url.regionMatches(true, 0, RedirectMatcher.HTTP, 0, length);
+		else if (length == RedirectMatcher.HTTPS.length()) return url.regionMatches(true, 0, RedirectMatcher.HTTPS, 0, length);
+		else return false;
+	}
+
+	/**
+	 * Check if the given scheme character is valid.
+	 * @param c The <code>char</code> to check.
+	 * @param index The <code>int</code> index of the
+	 * character in the scheme.
+	 * @return <code>true</code> if the character is
+	 * valid. <code>false</code> otherwise.
+	 */
+	private static boolean isSchemeChar(final char c, final int index) {
+		if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) return true;
+		else if (index == 0) return false;
+		else return (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+	}
+
+	/**
+	 * Check if the host in the given region matches one
+	 * of the registered domains. The host is hashed from
+	 * its end, so that the hash of every dot-separated
+	 * suffix is available during the same scan. Hosts
+	 * with an empty label never match.
+	 * @param url The <code>String</code> URL.
+	 * @param start The <code>int</code> inclusive host
+	 * start index.
+	 * @param end The <code>int</code> exclusive host
+	 * end index.
+	 * @return <code>true</code> if the host matches.
+	 * <code>false</code> otherwise.
+	 */
+	private boolean matchesHost(final String url, final int start, final int end) {
+		boolean wildcardMatched = false;
+		int hash = 0;
+		for (int i = end-1; i >= start; i--) {
+			final char c = url.charAt(i);
+			if (c == '.') {
+				// The remaining labels must still be checked
+				// after a wildcard suffix matched.
+				if (i == start || i == end-1 || url.charAt(i+1) == '.') return false;
+				else if (!wildcardMatched && this.wildcard.contains(hash, url, i+1, end)) wildcardMatched = true;
+			}
+			hash = Table.hash(hash, c);
+		}
+		return wildcardMatched || this.exact.contains(hash, url, start, end);
+	}
+
+	/**
+	 * <code>Table</code> defines the open-addressing hash
+	 * table of lower case host names, hashed from their
+	 * last character to their first.
+	 */
+	private static final class Table {
+		/**
+		 * The <code>String</code> array of host names.
+		 */
+		private final String[] names;
+		/**
+		 * The <code>int</code> array of host name hashes.
+		 */
+		private final int[] hashes;
+		/**
+		 * The <code>int</code> index mask.
+		 */
+		private final int mask;
+		/**
+		 * The <code>int</code> number of host names.
+		 */
+		private int size;
+
+		/**
+		 * Constructor of <code>Table</code>.
+		 * @param expected The <code>int</code> expected
+		 * number of host names.
+		 */
+		private Table(final int expected) {
+			int capacity = 2;
+			while (capacity < (expected << 1)) capacity <<= 1;
+			this.names = new String[capacity];
+			this.hashes = new int[capacity];
+			this.mask = capacity-1;
+		}
+
+		/**
+		 * Update the given hash with the given character,
+		 * ignoring case.
+		 * @param hash The <code>int</code> current hash.
+		 * @param c The <code>char</code> to add.
+		 * @return The <code>int</code> updated hash.
+		 */
+		private static int hash(final int hash, final char c) {
+			final char lower;
+			if (c >= 'A' && c <= 'Z') lower = (char)(c + ('a' - 'A'));
+			else if (c < 0x80) lower = c;
+			else lower = Character.toLowerCase(c);
+			return (31 * hash) + lower;
+		}
+
+		/**
+		 * Spread the given hash for indexing.
+		 * @param hash The <code>int</code> hash.
+		 * @return The <code>int</code> table index.
+		 */
+		private int index(final int hash) {
+			final int spread = hash * 0x9E3779B9;
+			return (spread ^ (spread >>> 16)) & this.mask;
+		}
+
+		/**
+		 * Add the given lower case host name.
+		 * @param name The <code>String</code> name.
+		 */
+		private void add(final String name) {
+			int hash = 0;
+			for (int i = name.length()-1; i >= 0; i--) {
+				hash = Table.hash(hash, name.charAt(i));
+			}
+			int index = this.index(hash);
+			while (this.names[index] != null) {
+				if (this.names[index].equals(name)) return;
+				index = (index+1) & this.mask;
+			}
+			this.names[index] = name;
+			this.hashes[index] = hash;
+			this.size++;
+		}
+
+		/**
+		 * Check if the table is empty.
+		 * @return <code>true</code> if there are no host
+		 * names. <code>false</code> otherwise.
+		 */
+		private boolean isEmpty() {
+			return (this.size == 0);
+		}
+
+		/**
+		 * Check if the table contains the host name in
+		 * the given region.
+		 * @param hash The <code>int</code> hash of the
+		 * region.
+		 * @param source The <code>String</code> source.
+		 * @param start The <code>int</code> inclusive
+		 * region start index.
+		 * @param end The <code>int</code> exclusive
+		 * region end index.
+		 * @return <code>true</code> if the host name is
+		 * contained. <code>false</code> otherwise.
+		 */
+		private boolean contains(final int hash, final String source, final int start, final int end) {
+			if (this.size == 0) return false;
+			final int length = end - start;
+			int index = this.index(hash);
+			String name;
+			while ((name = this.names[index]) != null) {
+				if (this.hashes[index] == hash && name.length() == length && name.regionMatches(true, 0, source, start, length)) {
+					return true;
+				}
+				index = (index+1) & this.mask;
+			}
+			return false;
+		}
+	}
+}
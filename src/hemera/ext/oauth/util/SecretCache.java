@@ -0,0 +1,101 @@
+package hemera.ext.oauth.util;
+
+/**
+ * <code>SecretCache</code> defines the bounded cache of
+ * consumer secret values that have already been verified
+ * against a consumer. Since a consumer's secret never
+ * changes, a cached secret can be accepted without the
+ * decryption. Only verified secrets are cached, so that
+ * invalid values presented by clients cannot displace
+ * valid entries.
+ * <p>
+ * Lookups compare the presented value with the cached
+ * values in constant time, independent of the position
+ * of the first mismatching character.
+ * <p>
+ * This class is thread-safe. Lookups are lock-free,
+ * modifications copy the small backing array.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class SecretCache {
+	/**
+	 * The <code>int</code> maximum number of cached
+	 * secrets.
+	 */
+	private final int capacity;
+	/**
+	 * The <code>String</code> array of cached secrets.
+	 */
+	private volatile String[] secrets;
+
+	/**
+	 * Constructor of <code>SecretCache</code>.
+	 * @param capacity The <code>int</code> maximum
+	 * number of cached secrets.
+	 */
+	public SecretCache(final int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Secret cache capacity must be positive.");
+		this.capacity = capacity;
+		this.secrets = new String[0];
+	}
+
+	/**
+	 * Check if the given secret has been verified.
+	 * @param secret The <code>String</code> secret.
+	 * @return <code>true</code> if the secret has been
+	 * verified. <code>false</code> otherwise.
+	 */
+	public boolean contains(final String secret) {
+		final String[] secrets = this.secrets;
+		for (int i = 0; i < secrets.length; i++) {
+			if (SecretCache.constantTimeEquals(secrets[i], secret)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Add the given verified secret. If the cache is
+	 * full, the oldest secret is evicted.
+	 * @param secret The <code>String</code> verified
+	 * secret.
+	 */
+	public synchronized void add(final String secret) {
+		if (this.contains(secret)) return;
+		final String[] current = this.secrets;
+		final int retained = (current.length<this.capacity) ? current.length : this.capacity-1;
+		final String[] updated = new String[retained+1];
+		System.arraycopy(current, current.length-retained, updated, 0, retained);
+		updated[retained] = secret;
+		this.secrets = updated;
+	}
+
+	/**
+	 * Evict all the cached secrets. This should be
+	 * invoked when the consumer is rotated.
+	 */
+	public synchronized void clear() {
+		this.secrets = new String[0];
+	}
+
+	/**
+	 * Compare the given values in time that only depends
+	 * on their lengths.
+	 * @param expected The <code>String</code> cached
+	 * value.
+	 * @param actual The <code>String</code> presented
+	 * value.
+	 * @return <code>true</code> if the values are equal.
+	 * <code>false</code> otherwise.
+	 */
+	private static boolean constantTimeEquals(final String expected, final String actual) {
+		final int length = expected.length();
+		if (actual.length() != length) return false;
+		int difference = 0;
+		for (int i = 0; i < length; i++) {
+			difference |= expected.charAt(i) ^ actual.charAt(i);
+		}
+		return (difference == 0);
+	}
+}
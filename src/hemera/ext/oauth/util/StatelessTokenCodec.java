@@ -0,0 +1,299 @@
+package hemera.ext.oauth.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * <code>StatelessTokenCodec</code> defines the codec of
+ * self-validating access token values. A stateless token
+ * value carries the claims of the access token, which
+ * are the user ID, the permissions, the expiration and
+ * the associated refresh token value. The claims are
+ * encrypted and authenticated with AES-GCM, so that a
+ * token can be validated without accessing the storage.
+ * <p>
+ * A token value has the form <code>consumerKey.payload</code>,
+ * where the hex encoded payload consists of the random
+ * initialization vector, the encrypted claims and the
+ * authentication tag. The consumer key is in plain text,
+ * so that resource servers can locate the consumer, and
+ * is authenticated as additional data.
+ * <p>
+ * The cipher key is derived from the consumer's encryption
+ * key, so that the same key is never used with two
+ * different cipher modes.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class StatelessTokenCodec {
+	/**
+	 * The <code>char</code> separator between the consumer
+	 * key and the payload.
+	 */
+	private static final char Separator = '.';
+	/**
+	 * The <code>byte</code> payload format version.
+	 */
+	private static final byte Version = 1;
+	/**
+	 * The <code>int</code> initialization vector length
+	 * in bytes.
+	 */
+	private static final int IVLength = 12;
+	/**
+	 * The <code>int</code> authentication tag length in
+	 * bits.
+	 */
+	private static final int TagLength = 128;
+	/**
+	 * The <code>String</code> label used to derive the
+	 * cipher key.
+	 */
+	private static final String KeyLabel = "hemera-oauth-stateless-access-token";
+	/**
+	 * The <code>ThreadLocal</code> of per-thread
+	 * <code>SecureRandom</code> generating initialization
+	 * vectors.
+	 */
+	private static final ThreadLocal<SecureRandom> Randoms = new ThreadLocal<SecureRandom>() {
+		@Override
+		protected SecureRandom initialValue() {
+			return new SecureRandom();
+		}
+	};
+	/**
+	 * The <code>String</code> consumer key.
+	 */
+	private final String consumerKey;
+	/**
+	 * The <code>byte</code> array additional data.
+	 */
+	private final byte[] additionalData;
+	/**
+	 * The <code>SecretKeySpec</code> derived key.
+	 */
+	private final SecretKeySpec key;
+	/**
+	 * The <code>ThreadLocal</code> of per-thread
+	 * <code>Cipher</code>.
+	 */
+	private final ThreadLocal<Cipher> ciphers;
+
+	/**
+	 * Constructor of <code>StatelessTokenCodec</code>.
+	 * @param consumerKey The <code>String</code> consumer
+	 * key.
+	 * @param encryptionKey The hex encoded <code>String</code>
+	 * consumer encryption key.
+	 * @throws DecoderException If the encryption key is
+	 * not a valid hex encoded value.
+	 * @throws NoSuchAlgorithmException If HMAC-SHA256 is
+	 * not supported.
+	 * @throws InvalidKeyException If the encryption key
+	 * is invalid.
+	 * @throws UnsupportedEncodingException If UTF-8
+	 * encoding is not supported.
+	 */
+	public StatelessTokenCodec(final String consumerKey, final String encryptionKey) throws DecoderException, NoSuchAlgorithmException,
+	InvalidKeyException, UnsupportedEncodingException {
+		this.consumerKey = consumerKey;
+		this.additionalData = consumerKey.getBytes("UTF-8");
+		final byte[] master = Hex.decodeHex(encryptionKey.toCharArray());
+		final Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(master, "HmacSHA256"));
+		final byte[] derived = mac.doFinal(StatelessTokenCodec.KeyLabel.getBytes("UTF-8"));
+		this.key = new SecretKeySpec(derived, 0, master.length, "AES");
+		this.ciphers = new ThreadLocal<Cipher>();
+	}
+
+	/**
+	 * Check if the given token value has the stateless
+	 * form.
+	 * @param value The <code>String</code> token value.
+	 * @return <code>true</code> if the value is stateless.
+	 * <code>false</code> otherwise.
+	 */
+	public static boolean isStateless(final String value) {
+		return (value != null && value.lastIndexOf(StatelessTokenCodec.Separator) > 0);
+	}
+
+	/**
+	 * Retrieve the consumer key of the given stateless
+	 * token value without validating the token.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>String</code> consumer key. Or
+	 * <code>null</code> if the value is not stateless.
+	 */
+	public static String consumerKeyOf(final String value) {
+		if (!StatelessTokenCodec.isStateless(value)) return null;
+		return value.substring(0, value.lastIndexOf(StatelessTokenCodec.Separator));
+	}
+
+	/**
+	 * Encode the given claims into a new token value.
+	 * @param userid The <code>String</code> user ID.
+	 * @param permissions The <code>String</code>
+	 * permissions.
+	 * @param refreshToken The <code>String</code>
+	 * associated refresh token value.
+	 * @param expiration The <code>long</code> expiration
+	 * time in milliseconds.
+	 * @return The <code>String</code> token value.
+	 * @throws GeneralSecurityException If encryption
+	 * failed.
+	 */
+	public String encode(final String userid, final String permissions, final String refreshToken, final long expiration)
+			throws GeneralSecurityException {
+		final byte[] claims;
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+			final DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(StatelessTokenCodec.Version);
+			output.writeLong(expiration);
+			output.writeUTF(userid);
+			output.writeUTF(permissions);
+			output.writeUTF(refreshToken);
+			output.flush();
+			claims = bytes.toByteArray();
+		} catch (final IOException e) {
+			throw new IllegalArgumentException("Access token claims are too long.", e);
+		}
+		final byte[] payload = new byte[StatelessTokenCodec.IVLength + claims.length + (StatelessTokenCodec.TagLength/8)];
+		final byte[] iv = new byte[StatelessTokenCodec.IVLength];
+		StatelessTokenCodec.Randoms.get().nextBytes(iv);
+		System.arraycopy(iv, 0, payload, 0, iv.length);
+		final Cipher cipher = this.getCipher();
+		cipher.init(Cipher.ENCRYPT_MODE, this.key, new GCMParameterSpec(StatelessTokenCodec.TagLength, iv));
+		cipher.updateAAD(this.additionalData);
+		cipher.doFinal(claims, 0, claims.length, payload, iv.length);
+		final StringBuilder builder = new StringBuilder(this.consumerKey.length() + 1 + (payload.length*2));
+		builder.append(this.consumerKey).append(StatelessTokenCodec.Separator).append(Hex.encodeHex(payload));
+		return builder.toString();
+	}
+
+	/**
+	 * Decode and authenticate the given token value.
+	 * This method does not check the expiration.
+	 * @param value The <code>String</code> token value.
+	 * @return The <code>Claims</code>. Or <code>null</code>
+	 * if the value is malformed, belongs to a different
+	 * consumer or fails authentication.
+	 */
+	public Claims decode(final String value) {
+		if (value == null || !this.consumerKey.equals(StatelessTokenCodec.consumerKeyOf(value))) return null;
+		final byte[] payload;
+		try {
+			payload = Hex.decodeHex(value.substring(this.consumerKey.length()+1).toCharArray());
+		} catch (final DecoderException e) {
+			return null;
+		}
+		if (payload.length <= StatelessTokenCodec.IVLength + (StatelessTokenCodec.TagLength/8)) return null;
+		final byte[] claims;
+		try {
+			final Cipher cipher = this.getCipher();
+			final GCMParameterSpec spec = new GCMParameterSpec(StatelessTokenCodec.TagLength, payload, 0, StatelessTokenCodec.IVLength);
+			cipher.init(Cipher.DECRYPT_MODE, this.key, spec);
+			cipher.updateAAD(this.additionalData);
+			claims = cipher.doFinal(payload, StatelessTokenCodec.IVLength, payload.length-StatelessTokenCodec.IVLength);
+		} catch (final GeneralSecurityException e) {
+			// Forged or corrupted value.
+			this.ciphers.remove();
+			return null;
+		}
+		try {
+			final DataInputStream input = new DataInputStream(new ByteArrayInputStream(claims));
+			if (input.readByte() != StatelessTokenCodec.Version) return null;
+			final long expiration = input.readLong();
+			final String userid = input.readUTF();
+			final String permissions = input.readUTF();
+			final String refreshToken = input.readUTF();
+			return new Claims(this.consumerKey, userid, permissions, refreshToken, expiration);
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieve the calling thread's cipher.
+	 * @return The <code>Cipher</code>.
+	 * @throws GeneralSecurityException If AES-GCM is
+	 * not supported.
+	 */
+	private Cipher getCipher() throws GeneralSecurityException {
+		Cipher cipher = this.ciphers.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			this.ciphers.set(cipher);
+		}
+		return cipher;
+	}
+
+	/**
+	 * <code>Claims</code> defines the immutable data
+	 * structure holding the claims of a stateless access
+	 * token.
+	 */
+	public static final class Claims {
+		/**
+		 * The <code>String</code> consumer key.
+		 */
+		public final String consumerKey;
+		/**
+		 * The <code>String</code> user ID.
+		 */
+		public final String userid;
+		/**
+		 * The <code>String</code> permissions.
+		 */
+		public final String permissions;
+		/**
+		 * The <code>String</code> associated refresh
+		 * token value.
+		 */
+		public final String refreshToken;
+		/**
+		 * The <code>long</code> expiration time in
+		 * milliseconds.
+		 */
+		public final long expiration;
+
+		/**
+		 * Constructor of <code>Claims</code>.
+		 * @param consumerKey The <code>String</code>
+		 * consumer key.
+		 * @param userid The <code>String</code> user ID.
+		 * @param permissions The <code>String</code>
+		 * permissions.
+		 * @param refreshToken The <code>String</code>
+		 * refresh token value.
+		 * @param expiration The <code>long</code>
+		 * expiration time.
+		 */
+		private Claims(final String consumerKey, final String userid, final String permissions, final String refreshToken, final long expiration) {
+			this.consumerKey = consumerKey;
+			this.userid = userid;
+			this.permissions = permissions;
+			this.refreshToken = refreshToken;
+			this.expiration = expiration;
+		}
+	}
+}
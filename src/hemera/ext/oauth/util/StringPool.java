@@ -0,0 +1,141 @@
+package hemera.ext.oauth.util;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>StringPool</code> defines the bounded pool that
+ * canonicalizes equal strings to a single instance, so
+ * that the consumer keys, user IDs and permissions
+ * repeated across many live tokens share their storage.
+ * <p>
+ * The pool is a direct mapped table of weak references
+ * indexed by string hash. A string that collides with a
+ * different pooled string replaces it, so the pool never
+ * grows beyond its capacity, and pooled strings that are
+ * no longer referenced by any token are reclaimed by the
+ * garbage collector. Canonicalization is best effort:
+ * equal strings are only guaranteed to share an instance
+ * while they remain in the same slot.
+ * <p>
+ * The pool counts the hits where a distinct instance was
+ * replaced by the pooled one, and estimates the bytes
+ * saved by those replacements, assuming compact Latin-1
+ * strings on a 64-bit virtual machine with compressed
+ * references.
+ * <p>
+ * This class is thread-safe and lock-free.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class StringPool {
+	/**
+	 * The <code>StringPool</code> shared by the token
+	 * constructors.
+	 */
+	public static final StringPool Default = new StringPool(1 << 16);
+	/**
+	 * The <code>int</code> estimated bytes of a string
+	 * instance and its backing array headers.
+	 */
+	private static final int StringOverhead = 40;
+
+	/**
+	 * The <code>AtomicReferenceArray</code> of pooled
+	 * string <code>WeakReference</code>.
+	 */
+	private final AtomicReferenceArray<WeakReference<String>> table;
+	/**
+	 * The <code>int</code> slot mask.
+	 */
+	private final int mask;
+	/**
+	 * The <code>LongAdder</code> number of lookups that
+	 * replaced a distinct instance.
+	 */
+	private final LongAdder hits;
+	/**
+	 * The <code>LongAdder</code> number of lookups that
+	 * pooled the given instance.
+	 */
+	private final LongAdder misses;
+	/**
+	 * The <code>LongAdder</code> estimated bytes saved.
+	 */
+	private final LongAdder bytesSaved;
+
+	/**
+	 * Constructor of <code>StringPool</code>.
+	 * @param capacity The <code>int</code> maximum
+	 * number of pooled strings, which is rounded up to
+	 * a power of two.
+	 */
+	public StringPool(final int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("String pool capacity must be positive.");
+		final int size = (capacity == 1) ? 1 : Integer.highestOneBit(capacity-1) << 1;
+		this.table = new AtomicReferenceArray<WeakReference<String>>(size);
+		this.mask = size-1;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.bytesSaved = new LongAdder();
+	}
+
+	/**
+	 * Retrieve the canonical instance of the given
+	 * string, pooling the given instance if there is
+	 * none.
+	 * @param value The <code>String</code> value.
+	 * @return The <code>String</code> canonical instance.
+	 * Or <code>null</code> if the value is
+	 * <code>null</code>.
+	 */
+	public String intern(final String value) {
+		if (value == null) return null;
+		final int hash = value.hashCode();
+		final int index = (hash ^ (hash >>> 16)) & this.mask;
+		final WeakReference<String> reference = this.table.get(index);
+		if (reference != null) {
+			final String pooled = reference.get();
+			if (pooled == value) return pooled;
+			else if (pooled != null && pooled.equals(value)) {
+				this.hits.increment();
+				this.bytesSaved.add(StringPool.StringOverhead + value.length());
+				return pooled;
+			}
+		}
+		this.table.set(index, new WeakReference<String>(value));
+		this.misses.increment();
+		return value;
+	}
+
+	/**
+	 * Retrieve the number of lookups that replaced a
+	 * distinct instance with the pooled one.
+	 * @return The <code>long</code> number of hits.
+	 */
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	/**
+	 * Retrieve the number of lookups that pooled the
+	 * given instance.
+	 * @return The <code>long</code> number of misses.
+	 */
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * Retrieve the estimated number of bytes saved by
+	 * replacing distinct instances with pooled ones.
+	 * The estimate does not account for instances that
+	 * would have been collected anyway.
+	 * @return The <code>long</code> estimated bytes.
+	 */
+	public long getBytesSaved() {
+		return this.bytesSaved.sum();
+	}
+}
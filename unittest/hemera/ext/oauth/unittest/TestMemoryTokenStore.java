@@ -0,0 +1,89 @@
+package hemera.ext.oauth.unittest;
+
+import hemera.ext.oauth.store.AbstractStoreConsumer;
+import hemera.ext.oauth.store.memory.MemoryTokenStore;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+import hemera.ext.oauth.token.AccessTokenPair;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMemoryTokenStore {
+
+	private static final String permissions = "data_write,data_read";
+	private static final String secret = "983de8bd221c056d7ab2b723f67a333c94d428e9a74cd0c25b30a868464f739f";
+	private static final int threads = 8;
+	private static final int iterations = 1000;
+
+	public static void main(String[] args) throws Exception {
+		final MemoryTokenStore store = new MemoryTokenStore();
+		final Consumer consumer = new Consumer("6e591afe5374410b", "localhost", "58af94d5c748d8365eb6bf24abde23ef", store);
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final String userid = "user" + t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < iterations; i++) {
+							final AbstractAuthorizationToken authToken = consumer.newAuthorizationToken(permissions, userid);
+							if (consumer.getValidAuthorizationToken(permissions, userid) == null) failures.incrementAndGet();
+							final AccessTokenPair pair = consumer.newAccessToken(secret, authToken);
+							authToken.invalidate();
+							final AccessTokenPair refreshed = consumer.refreshAccessToken(secret, pair.refreshToken);
+							if (pair.accessToken.isValid() || pair.refreshToken.isValid()) failures.incrementAndGet();
+							if (store.getAccessToken(refreshed.accessToken.value) != refreshed.accessToken) failures.incrementAndGet();
+							if (refreshed.refreshToken.getAssociatedAccessToken() != refreshed.accessToken) failures.incrementAndGet();
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+						failures.incrementAndGet();
+					} finally {
+						latch.countDown();
+					}
+				}
+			}).start();
+		}
+		latch.await();
+		System.out.println("Stored tokens: " + store.size());
+		System.out.println("Failures:      " + failures.get());
+	}
+
+	private static class Consumer extends AbstractStoreConsumer {
+
+		protected Consumer(String key, String domain, String encryptionKey, MemoryTokenStore store) {
+			super(key, domain, encryptionKey, store);
+		}
+
+		@Override
+		protected long getAccessTokenLifetime() {
+			return 10000;
+		}
+
+		@Override
+		protected long getRefreshTokenLifetime() {
+			return 10000;
+		}
+
+		@Override
+		protected long getAuthorizationTokenLifetime() {
+			return 10000;
+		}
+
+		@Override
+		public boolean hasUserAuthorizationPrivilege() {
+			return true;
+		}
+
+		@Override
+		public boolean hasUserAuthenticationPrivilege() {
+			return true;
+		}
+
+		@Override
+		public boolean hasResourceOwnerCredentialsFlowPrivilege() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package hemera.ext.oauth.unittest;
+
+import hemera.ext.oauth.store.memory.MemoryTokenStore;
+import hemera.ext.oauth.token.AbstractAuthorizationToken;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMemoryTokenStoreRevocation {
+
+	private static final String permissions = "data_write,data_read";
+	private static final String consumerKey = "6e591afe5374410b";
+	private static final int users = 2;
+	private static final int threads = 8;
+	private static final int iterations = 100000;
+
+	public static void main(String[] args) throws Exception {
+		final MemoryTokenStore store = new MemoryTokenStore();
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicInteger sequence = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			// Threads of the same user link and unlink the same
+			// reverse index entries, which are emptied often.
+			final String userid = "user" + (t % users);
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < iterations; i++) {
+							final String value = Integer.toString(sequence.incrementAndGet());
+							final long expiration = System.currentTimeMillis() + 100000;
+							final AbstractAuthorizationToken token = store.insertAuthorizationToken(value, consumerKey, permissions, userid, expiration);
+							if ((i & 1) == 0) store.revokeByUser(userid);
+							else store.revokeByConsumer(consumerKey);
+							if (token.isValid()) failures.incrementAndGet();
+							store.remove(value);
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+						failures.incrementAndGet();
+					} finally {
+						latch.countDown();
+					}
+				}
+			}).start();
+		}
+		latch.await();
+		System.out.println("Stored tokens: " + store.size());
+		System.out.println("Failures:      " + failures.get());
+	}
+}